@@ -1,5 +1,5 @@
 import request from './request'
-import type { Result, UserCoupon } from '../types'
+import type { Result, UserCoupon, CouponDistribution } from '../types'
 
 export function getUserCouponById(id: number): Promise<Result<UserCoupon>> {
   return request.get(`/user-coupons/get/${id}`)
@@ -41,6 +41,10 @@ export function listUserCouponsPage(pageNum: number, pageSize: number): Promise<
   return request.get('/user-coupons/listPage', { params: { pageNum, pageSize } })
 }
 
-export function distributeToAllUsers(couponId: number): Promise<Result<void>> {
+export function distributeToAllUsers(couponId: number): Promise<Result<CouponDistribution>> {
   return request.post('/user-coupons/distributeAll', null, { params: { couponId } })
 }
+
+export function getDistribution(id: number): Promise<Result<CouponDistribution>> {
+  return request.get(`/user-coupons/distribution/${id}`)
+}
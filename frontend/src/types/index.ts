@@ -126,6 +126,18 @@ export interface UserCoupon {
   deleted?: number
 }
 
+export interface CouponDistribution {
+  id: number
+  couponId: number
+  status: 'RUNNING' | 'DONE' | 'FAILED'
+  lastUserId: number
+  totalUsers: number
+  distributedCount: number
+  error?: string
+  createTime?: string
+  updateTime?: string
+}
+
 export interface CartItem {
   id?: number
   userId: number
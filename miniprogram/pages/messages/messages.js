@@ -31,7 +31,8 @@ Page({
     const msg = this.data.messages[index]
     if (msg && msg.isRead === 0) {
       try {
-        await api.markMessageAsRead(id)
+        const userInfo = getApp().globalData.userInfo
+        await api.markMessageAsRead(id, userInfo && userInfo.id)
         const key = 'messages[' + index + '].isRead'
         this.setData({ [key]: 1 })
       } catch (e) {
@@ -192,8 +192,8 @@ function getUnreadCount(userId) {
   return request({ url: '/messages/unread/' + userId, method: 'GET' })
 }
 
-function markMessageAsRead(id) {
-  return request({ url: '/messages/read/' + id, method: 'PUT' })
+function markMessageAsRead(id, userId) {
+  return request({ url: '/messages/read/' + id + (userId ? '?userId=' + userId : ''), method: 'PUT' })
 }
 
 function markAllMessagesAsRead(userId) {
@@ -200,7 +200,8 @@ CREATE TABLE IF NOT EXISTS `store_product` (
     `update_time` DATETIME       DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     `deleted`     INT            DEFAULT 0 COMMENT '逻辑删除：0-未删除，1-已删除',
     PRIMARY KEY (`id`),
-    KEY `idx_sp_store_id` (`store_id`),
+    KEY `idx_sp_store_time` (`store_id`, `create_time`, `id`),
+    KEY `idx_sp_create_time` (`create_time`, `id`),
     KEY `idx_sp_product_id` (`product_id`),
     UNIQUE KEY `uk_store_product` (`store_id`, `product_id`),
     CONSTRAINT `fk_sp_store` FOREIGN KEY (`store_id`) REFERENCES `store` (`id`),
@@ -222,9 +223,20 @@ CREATE TABLE IF NOT EXISTS `message` (
     `create_time` DATETIME     DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     `deleted`     INT          DEFAULT 0 COMMENT '逻辑删除：0-未删除，1-已删除',
     PRIMARY KEY (`id`),
-    KEY `idx_msg_user_id` (`user_id`)
+    KEY `idx_msg_user_id` (`user_id`),
+    KEY `idx_msg_create_time` (`create_time`, `id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci COMMENT='消息表';
 
+-- 广播消息已读表（广播只存一条 user_id 为空的消息，用户读过后才写入一行已读记录）
+CREATE TABLE IF NOT EXISTS `message_read` (
+    `id`          BIGINT   NOT NULL AUTO_INCREMENT COMMENT 'ID',
+    `message_id`  BIGINT   NOT NULL COMMENT '广播消息ID',
+    `user_id`     BIGINT   NOT NULL COMMENT '已读用户ID',
+    `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '阅读时间',
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_message_read_user` (`user_id`, `message_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci COMMENT='广播消息已读表';
+
 -- 订单表
 CREATE TABLE IF NOT EXISTS `order` (
     `user_id`           BIGINT         NOT NULL COMMENT '用户ID',
@@ -240,7 +252,8 @@ CREATE TABLE IF NOT EXISTS `order` (
     `deleted`           INT            DEFAULT 0 COMMENT '逻辑删除：0-未删除，1-已删除',
     PRIMARY KEY (`id`),
     KEY `idx_user_id` (`user_id`),
-    KEY `idx_store_id` (`store_id`),
+    KEY `idx_order_store_time` (`store_id`, `create_time`, `id`),
+    KEY `idx_order_create_time` (`create_time`, `id`),
     KEY `idx_product_id` (`product_id`),
     KEY `idx_user_coupon_id` (`user_coupon_id`),
     KEY `idx_order_status` (`status`),
@@ -304,7 +317,66 @@ CREATE TABLE IF NOT EXISTS `payment` (
     `deleted`         INT            DEFAULT 0 COMMENT '逻辑删除：0-未删除，1-已删除',
     PRIMARY KEY (`id`),
     KEY `idx_order_id` (`order_id`),
+    KEY `idx_payment_create_time` (`create_time`, `id`),
     UNIQUE KEY `uk_transaction_no` (`transaction_no`),
     CONSTRAINT `fk_payment_order` FOREIGN KEY (`order_id`) REFERENCES `order` (`id`),
     CONSTRAINT `chk_payment_amount` CHECK (`amount` > 0)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci COMMENT='订单支付表';
+
+-- 每日销量汇总表（按店铺+日期预聚合已支付/已完成订单，供销量统计接口使用）
+CREATE TABLE IF NOT EXISTS `sales_daily_rollup` (
+    `id`           BIGINT         NOT NULL AUTO_INCREMENT COMMENT '汇总ID',
+    `store_id`     BIGINT         NOT NULL DEFAULT 0 COMMENT '店铺ID（0表示无店铺订单）',
+    `sale_date`    DATE           NOT NULL COMMENT '销售日期（按订单创建日期）',
+    `order_count`  INT            NOT NULL DEFAULT 0 COMMENT '订单数',
+    `total_amount` DECIMAL(14,2)  NOT NULL DEFAULT 0 COMMENT '销售总金额',
+    `update_time`  DATETIME       DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_rollup_store_date` (`store_id`, `sale_date`),
+    KEY `idx_rollup_sale_date` (`sale_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci COMMENT='每日销量汇总表';
+
+-- 初始化汇总数据（之后由订单状态变更增量维护，每日凌晨全量校准）
+INSERT INTO `sales_daily_rollup` (`store_id`, `sale_date`, `order_count`, `total_amount`)
+SELECT COALESCE(`store_id`, 0), CAST(`create_time` AS DATE), COUNT(*), SUM(`total_amount`)
+FROM `order` WHERE `deleted` = 0 AND `status` IN (1, 2) AND `create_time` IS NOT NULL
+GROUP BY COALESCE(`store_id`, 0), CAST(`create_time` AS DATE);
+
+-- ============================================================
+-- 图片索引表（内容寻址存储：文件名为内容 SHA-256，位于 {hash[0:2]}/{hash[2:4]}/ 分片目录）
+-- 上传时按哈希去重，文件列表和处理状态查询走索引，不扫描上传目录
+-- ============================================================
+CREATE TABLE IF NOT EXISTS `image_file` (
+    `id`          BIGINT       NOT NULL AUTO_INCREMENT COMMENT '索引ID',
+    `hash`        CHAR(64)     NOT NULL COMMENT '图片内容SHA-256',
+    `extension`   VARCHAR(10)  NOT NULL COMMENT '原图扩展名（含点）',
+    `size`        BIGINT       NOT NULL DEFAULT 0 COMMENT '原图字节数',
+    `status`      VARCHAR(20)  NOT NULL DEFAULT 'PENDING' COMMENT '处理状态：PENDING/PROCESSING/DONE/FAILED',
+    `error`       VARCHAR(255) DEFAULT NULL COMMENT '处理失败原因',
+    `create_time` DATETIME     DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    `update_time` DATETIME     DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_image_hash` (`hash`),
+    KEY `idx_image_status` (`status`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci COMMENT='图片索引表';
+
+-- ============================================================
+-- 优惠券批量发放任务表（后台按用户ID游标分批发放，游标与发放记录在同一事务中推进）
+-- active_coupon_id 未完成时等于 coupon_id，唯一约束保证同一优惠券同时只有一个发放任务
+-- ============================================================
+CREATE TABLE IF NOT EXISTS `coupon_distribution` (
+    `id`                BIGINT       NOT NULL AUTO_INCREMENT COMMENT '任务ID',
+    `coupon_id`         BIGINT       NOT NULL COMMENT '优惠券面额ID',
+    `active_coupon_id`  BIGINT       DEFAULT NULL COMMENT '未完成时等于coupon_id，完成后置空',
+    `status`            VARCHAR(20)  NOT NULL DEFAULT 'RUNNING' COMMENT '任务状态：RUNNING/DONE/FAILED',
+    `last_user_id`      BIGINT       NOT NULL DEFAULT 0 COMMENT '已发放到的最大用户ID（游标）',
+    `total_users`       BIGINT       NOT NULL DEFAULT 0 COMMENT '任务开始时的用户总数',
+    `distributed_count` BIGINT       NOT NULL DEFAULT 0 COMMENT '已发放数量',
+    `error`             VARCHAR(255) DEFAULT NULL COMMENT '失败原因',
+    `create_time`       DATETIME     DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    `update_time`       DATETIME     DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_distribution_active_coupon` (`active_coupon_id`),
+    KEY `idx_distribution_status` (`status`),
+    CONSTRAINT `fk_distribution_coupon` FOREIGN KEY (`coupon_id`) REFERENCES `coupon` (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci COMMENT='优惠券批量发放任务表';
@@ -4,7 +4,7 @@ import java.lang.annotation.*;
 
 /**
  * 接口限流注解
- * 使用 Redis 实现滑动窗口限流，防止高并发下数据库崩溃
+ * 使用 Redis Lua 脚本原子完成判定（一次往返），防止高并发下数据库崩溃
  */
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
@@ -17,7 +17,7 @@ public @interface RateLimit {
     String key() default "";
 
     /**
-     * 时间窗口内允许的最大请求次数
+     * 时间窗口内允许的最大请求次数（令牌桶为窗口内的补充速率）
      */
     int maxRequests() default 10;
 
@@ -26,8 +26,37 @@ public @interface RateLimit {
      */
     int windowSeconds() default 1;
 
+    /**
+     * 限流算法
+     */
+    Algorithm algorithm() default Algorithm.SLIDING_WINDOW;
+
+    /**
+     * 令牌桶容量，即允许的瞬时突发请求数（0 表示等于 maxRequests）；滑动窗口忽略该值
+     */
+    int burst() default 0;
+
+    /**
+     * 按什么维度计数
+     */
+    KeyStrategy keyBy() default KeyStrategy.IP;
+
     /**
      * 限流提示信息
      */
     String message() default "请求过于频繁，请稍后再试";
+
+    enum Algorithm {
+        /** 滑动窗口日志：记录窗口内每次请求的时间，任意连续窗口内都不超过 maxRequests */
+        SLIDING_WINDOW,
+        /** 令牌桶：按 maxRequests/windowSeconds 的速率补充令牌，允许 burst 个请求的突发 */
+        TOKEN_BUCKET
+    }
+
+    enum KeyStrategy {
+        /** 按客户端 IP */
+        IP,
+        /** 按登录用户ID（Sa-Token），未登录时按 IP */
+        USER
+    }
 }
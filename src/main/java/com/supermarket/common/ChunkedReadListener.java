@@ -0,0 +1,65 @@
+package com.supermarket.common;
+
+import com.alibaba.excel.context.AnalysisContext;
+import com.alibaba.excel.exception.ExcelDataConvertException;
+import com.alibaba.excel.read.listener.ReadListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 分块读取 Excel：每攒满 chunkSize 行交给处理器一次，读取期间只在内存中保留一个分块
+ * 单元格格式转换失败的行不中断读取，以 (行号, 原因) 交给错误处理器
+ */
+public class ChunkedReadListener<T> implements ReadListener<T> {
+
+    /**
+     * 带 Excel 行号（从 1 开始，含表头行）的数据行
+     */
+    public record Row<T>(int rowNumber, T data) {
+    }
+
+    private final int chunkSize;
+    private final Consumer<List<Row<T>>> chunkHandler;
+    private final BiConsumer<Integer, String> errorHandler;
+    private List<Row<T>> buffer;
+
+    public ChunkedReadListener(int chunkSize, Consumer<List<Row<T>>> chunkHandler,
+                               BiConsumer<Integer, String> errorHandler) {
+        this.chunkSize = chunkSize;
+        this.chunkHandler = chunkHandler;
+        this.errorHandler = errorHandler;
+        this.buffer = new ArrayList<>(chunkSize);
+    }
+
+    @Override
+    public void invoke(T data, AnalysisContext context) {
+        buffer.add(new Row<>(context.readRowHolder().getRowIndex() + 1, data));
+        if (buffer.size() >= chunkSize) {
+            flush();
+        }
+    }
+
+    @Override
+    public void doAfterAllAnalysed(AnalysisContext context) {
+        flush();
+    }
+
+    @Override
+    public void onException(Exception exception, AnalysisContext context) throws Exception {
+        if (exception instanceof ExcelDataConvertException e) {
+            errorHandler.accept(e.getRowIndex() + 1, "第 " + (e.getColumnIndex() + 1) + " 列格式错误");
+            return;
+        }
+        throw exception;
+    }
+
+    private void flush() {
+        if (buffer.isEmpty()) return;
+        List<Row<T>> chunk = buffer;
+        buffer = new ArrayList<>(chunkSize);
+        chunkHandler.accept(chunk);
+    }
+}
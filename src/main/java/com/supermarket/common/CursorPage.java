@@ -0,0 +1,118 @@
+package com.supermarket.common;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 游标（键集）分页结果
+ * 按 (create_time DESC, id DESC) 排序，游标为上一页最后一条记录的 (createTime, id)，对调用方不透明；
+ * 查询走 (create_time, id) 复合索引直接定位，不做 OFFSET 扫描，也不发 COUNT(*)，翻页越深耗时不变
+ */
+@Data
+@Schema(description = "游标分页结果")
+public class CursorPage<T> {
+
+    public static final int DEFAULT_PAGE_SIZE = 10;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final String SEPARATOR = "|";
+
+    @Schema(description = "当前页数据")
+    private List<T> records = new ArrayList<>();
+
+    @Schema(description = "下一页游标（没有更多数据时为空）")
+    private String nextCursor;
+
+    @Schema(description = "是否还有下一页")
+    private boolean hasMore;
+
+    /**
+     * 替换当前页数据（如实体转 VO），保留游标信息
+     */
+    public <R> CursorPage<R> withRecords(List<R> newRecords) {
+        CursorPage<R> page = new CursorPage<>();
+        page.setRecords(newRecords);
+        page.setNextCursor(nextCursor);
+        page.setHasMore(hasMore);
+        return page;
+    }
+
+    /**
+     * 在查询条件上追加键集条件、排序和 LIMIT（多取一条用于判断是否还有下一页）
+     */
+    public static <T> void applyKeyset(LambdaQueryWrapper<T> wrapper, String cursor, int pageSize,
+                                       SFunction<T, LocalDateTime> createTimeColumn, SFunction<T, Long> idColumn) {
+        String[] parts = decode(cursor);
+        if (parts != null) {
+            LocalDateTime createTime = LocalDateTime.parse(parts[0]);
+            Long id = Long.valueOf(parts[1]);
+            wrapper.and(w -> w.lt(createTimeColumn, createTime)
+                    .or(o -> o.eq(createTimeColumn, createTime).lt(idColumn, id)));
+        }
+        wrapper.orderByDesc(createTimeColumn).orderByDesc(idColumn)
+               .last("LIMIT " + (normalizeSize(pageSize) + 1));
+    }
+
+    /**
+     * 由多取一条的查询结果构造分页结果
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int pageSize,
+                                       Function<T, LocalDateTime> createTimeGetter, Function<T, Long> idGetter) {
+        int size = normalizeSize(pageSize);
+        CursorPage<T> page = new CursorPage<>();
+        if (rows.size() > size) {
+            List<T> records = new ArrayList<>(rows.subList(0, size));
+            T last = records.get(size - 1);
+            page.setRecords(records);
+            page.setHasMore(true);
+            page.setNextCursor(encode(createTimeGetter.apply(last), idGetter.apply(last)));
+        } else {
+            page.setRecords(rows);
+        }
+        return page;
+    }
+
+    public static int normalizeSize(int pageSize) {
+        if (pageSize <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(pageSize, MAX_PAGE_SIZE);
+    }
+
+    public static String encode(LocalDateTime createTime, Long id) {
+        String raw = createTime + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标，为空表示第一页；格式非法时抛出 IllegalArgumentException
+     */
+    private static String[] decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            int idx = raw.lastIndexOf(SEPARATOR);
+            if (idx <= 0) {
+                throw new IllegalArgumentException("无效的分页游标");
+            }
+            String[] parts = {raw.substring(0, idx), raw.substring(idx + 1)};
+            LocalDateTime.parse(parts[0]);
+            Long.parseLong(parts[1]);
+            return parts;
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的分页游标");
+        }
+    }
+}
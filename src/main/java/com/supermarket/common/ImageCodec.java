@@ -0,0 +1,124 @@
+package com.supermarket.common;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+
+/**
+ * 图片缩放与编码工具（基于 ImageIO）
+ * 输出格式按 MIME 类型查找 ImageIO 编码器，classpath 中有 WebP/AVIF 插件时即可直接使用
+ */
+public final class ImageCodec {
+
+    public static final String JPEG = "image/jpeg";
+
+    private ImageCodec() {
+    }
+
+    /**
+     * 是否有该 MIME 类型的编码器
+     */
+    public static boolean canWrite(String mimeType) {
+        return ImageIO.getImageWritersByMIMEType(mimeType).hasNext();
+    }
+
+    /**
+     * 只读取文件头获取图片宽度，不解码像素
+     * @return 无法识别时返回 -1
+     */
+    public static int readWidth(Path path) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(path.toFile())) {
+            if (in == null) return -1;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return -1;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return reader.getWidth(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 等比缩小到不超过给定宽高，原图已足够小时原样返回
+     */
+    public static BufferedImage resize(BufferedImage original, int maxWidth, int maxHeight) {
+        int width = original.getWidth();
+        int height = original.getHeight();
+
+        if (width <= maxWidth && height <= maxHeight) {
+            return original;
+        }
+
+        double ratio = Math.min((double) maxWidth / width, (double) maxHeight / height);
+        int newWidth = Math.max(1, (int) (width * ratio));
+        int newHeight = Math.max(1, (int) (height * ratio));
+
+        BufferedImage resized = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = resized.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(original, 0, 0, newWidth, newHeight, null);
+        g.dispose();
+        return resized;
+    }
+
+    /**
+     * 先写临时文件再原子改名，读取方不会读到写了一半的图片
+     */
+    public static void writeAtomically(BufferedImage image, Path path, String mimeType, float quality) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            write(image, tmp, mimeType, quality);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void write(BufferedImage image, Path path, String mimeType, float quality) throws IOException {
+        // Ensure no alpha channel
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        g.drawImage(image, 0, 0, Color.WHITE, null);
+        g.dispose();
+
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByMIMEType(mimeType);
+        if (!writers.hasNext()) {
+            if (!JPEG.equals(mimeType)) {
+                throw new IOException("不支持的图片格式：" + mimeType);
+            }
+            ImageIO.write(rgb, "jpg", path.toFile());
+            return;
+        }
+        ImageWriter writer = writers.next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (param.canWriteCompressed()) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            String[] types = param.getCompressionTypes();
+            if (types != null && param.getCompressionType() == null) {
+                param.setCompressionType(types[0]);
+            }
+            param.setCompressionQuality(quality);
+        }
+
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(path.toFile())) {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(rgb, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
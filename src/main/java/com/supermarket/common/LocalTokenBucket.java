@@ -0,0 +1,58 @@
+package com.supermarket.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内无锁令牌桶（GCRA 算法）：整个状态是一个“理论到达时间”，每次判定只做一次 CAS
+ * 另记录一个禁止截止时间，由上游（Redis 限流）拒绝时同步过来，在此之前的请求直接本地拒绝
+ */
+public class LocalTokenBucket {
+
+    /** 每个请求占用的时间（纳秒） */
+    private final long intervalNanos;
+    /** 允许超前的时间，即容量 - 1 个请求 */
+    private final long toleranceNanos;
+
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong blockedUntil = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * @param permits       周期内补充的请求数
+     * @param periodNanos   补充周期
+     * @param capacity      允许的突发请求数
+     */
+    public LocalTokenBucket(int permits, long periodNanos, int capacity) {
+        this.intervalNanos = Math.max(1, periodNanos / Math.max(1, permits));
+        this.toleranceNanos = intervalNanos * (Math.max(1, capacity) - 1);
+    }
+
+    /**
+     * @return 0 表示放行，否则为需等待的纳秒数
+     */
+    public long tryAcquire(long nowNanos) {
+        long blocked = blockedUntil.get();
+        if (blocked != Long.MIN_VALUE && blocked - nowNanos > 0) {
+            return blocked - nowNanos;
+        }
+        while (true) {
+            long tat = theoreticalArrival.get();
+            long base = tat == Long.MIN_VALUE || tat - nowNanos < 0 ? nowNanos : tat;
+            long next = base + intervalNanos;
+            long ahead = next - nowNanos - intervalNanos;
+            if (ahead > toleranceNanos) {
+                return ahead - toleranceNanos;
+            }
+            if (theoreticalArrival.compareAndSet(tat, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 上游已拒绝：到截止时间前全部本地拒绝
+     */
+    public void blockUntil(long untilNanos) {
+        blockedUntil.accumulateAndGet(untilNanos,
+                (current, update) -> current == Long.MIN_VALUE || update - current > 0 ? update : current);
+    }
+}
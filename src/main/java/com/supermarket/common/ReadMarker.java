@@ -0,0 +1,35 @@
+package com.supermarket.common;
+
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.time.Duration;
+
+/**
+ * 缓存读取标记：读取时在 Redis 写入一个与缓存同有效期的标记，标记仍在说明最近一个有效期内有人读过
+ * 提前重建只处理被读过的缓存，无人读取的缓存自然过期，而不是每次重建续期后一直被重建下去
+ * 同一节点在间隔内只写一次标记，避免每次读取都多一次 Redis 写
+ */
+public class ReadMarker {
+
+    private final String key;
+    private final Duration ttl;
+    private final long intervalMillis;
+    private volatile long markedAt;
+
+    public ReadMarker(String key, Duration ttl, Duration interval) {
+        this.key = key;
+        this.ttl = ttl;
+        this.intervalMillis = interval.toMillis();
+    }
+
+    public void mark(RedisTemplate<String, Object> redisTemplate) {
+        long now = System.currentTimeMillis();
+        if (redisTemplate == null || now - markedAt < intervalMillis) return;
+        markedAt = now;
+        redisTemplate.opsForValue().set(key, 1, ttl);
+    }
+
+    public boolean wasRead(RedisTemplate<String, Object> redisTemplate) {
+        return redisTemplate != null && Boolean.TRUE.equals(redisTemplate.hasKey(key));
+    }
+}
@@ -0,0 +1,20 @@
+package com.supermarket.common;
+
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.List;
+
+/**
+ * Lua 脚本工具：返回数组的脚本只能以 List.class 声明结果类型，元素类型在这里统一转换一次
+ */
+public final class RedisScripts {
+
+    private RedisScripts() {
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <E> RedisScript<List<E>> listScript(String script) {
+        return new DefaultRedisScript<>(script, (Class) List.class);
+    }
+}
@@ -12,4 +12,9 @@ public class GlobalExceptionHandler {
     public Result<Void> handleNotLogin(NotLoginException e) {
         return Result.error(401, "未登录，请先登录");
     }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public Result<Void> handleIllegalArgument(IllegalArgumentException e) {
+        return Result.badRequest(e.getMessage());
+    }
 }
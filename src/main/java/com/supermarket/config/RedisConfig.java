@@ -1,17 +1,27 @@
 package com.supermarket.config;
 
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.data.redis.listener.PatternTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.listener.adapter.MessageListenerAdapter;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import com.supermarket.listener.CacheInvalidationListener;
+import com.supermarket.listener.LockReleaseListener;
 import com.supermarket.listener.OrderExpireListener;
+import com.supermarket.listener.WebSocketRelayListener;
+import com.supermarket.service.impl.DistributedLockServiceImpl;
+import com.supermarket.service.impl.LocalCacheServiceImpl;
+import com.supermarket.websocket.NotificationWebSocketHandler;
+
+import java.util.List;
 
 @Configuration
 @ConditionalOnBean(RedisConnectionFactory.class)
@@ -22,9 +32,12 @@ public class RedisConfig {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(factory);
         template.setKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(new GenericJackson2JsonRedisSerializer());
+        // Entities carry LocalDateTime fields, which need the JSR-310 module
+        GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer()
+                .configure(mapper -> mapper.registerModule(new JavaTimeModule()));
+        template.setValueSerializer(jsonSerializer);
         template.setHashKeySerializer(new StringRedisSerializer());
-        template.setHashValueSerializer(new GenericJackson2JsonRedisSerializer());
+        template.setHashValueSerializer(jsonSerializer);
         return template;
     }
 
@@ -34,18 +47,32 @@ public class RedisConfig {
     }
 
     /**
-     * Redis Key 过期事件监听容器
+     * Redis 消息监听容器
      * 监听 __keyevent@*__:expired 频道，用于订单超时自动取消
      * 需要 Redis 配置: notify-keyspace-events Ex
+     * 监听 cache:invalidate 频道，用于多节点本地缓存失效
+     * 监听 lock:released 频道，用于唤醒等待分布式锁的线程
+     * 监听 ws:broadcast 和本节点的 ws:node:{nodeId} 频道，用于多节点 WebSocket 推送
      */
     @Bean
     public RedisMessageListenerContainer redisMessageListenerContainer(
             RedisConnectionFactory factory,
-            MessageListenerAdapter orderExpireListenerAdapter) {
+            MessageListenerAdapter orderExpireListenerAdapter,
+            CacheInvalidationListener cacheInvalidationListener,
+            LockReleaseListener lockReleaseListener,
+            WebSocketRelayListener webSocketRelayListener,
+            NotificationWebSocketHandler notificationWebSocketHandler) {
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(factory);
         container.addMessageListener(orderExpireListenerAdapter,
                 new PatternTopic("__keyevent@*__:expired"));
+        container.addMessageListener(cacheInvalidationListener,
+                new ChannelTopic(LocalCacheServiceImpl.INVALIDATION_CHANNEL));
+        container.addMessageListener(lockReleaseListener,
+                new ChannelTopic(DistributedLockServiceImpl.RELEASE_CHANNEL));
+        container.addMessageListener(webSocketRelayListener, List.of(
+                new ChannelTopic(NotificationWebSocketHandler.BROADCAST_CHANNEL),
+                new ChannelTopic(notificationWebSocketHandler.getNodeChannel())));
         return container;
     }
 }
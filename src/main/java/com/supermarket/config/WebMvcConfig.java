@@ -2,17 +2,22 @@ package com.supermarket.config;
 
 import com.supermarket.interceptor.HttpCacheInterceptor;
 import com.supermarket.interceptor.RateLimitInterceptor;
+import com.supermarket.service.ImageService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.CacheControl;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.PathResourceResolver;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.concurrent.TimeUnit;
 
 @Configuration
 public class WebMvcConfig implements WebMvcConfigurer {
@@ -26,6 +31,9 @@ public class WebMvcConfig implements WebMvcConfigurer {
     @Autowired
     private HttpCacheInterceptor httpCacheInterceptor;
 
+    @Autowired
+    private ImageService imageService;
+
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(rateLimitInterceptor)
@@ -38,10 +46,26 @@ public class WebMvcConfig implements WebMvcConfigurer {
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         // Images are served via /api/file/{filename} controller endpoint
         // This static handler is kept as fallback for /file/** direct access with CDN-friendly cache
+        // Cache-Control is set by HttpCacheInterceptor (no-cache while an upload is still being processed)
         String absolutePath = Paths.get(uploadDir).toAbsolutePath().toUri().toString();
         registry.addResourceHandler("/file/**")
                 .addResourceLocations(absolutePath)
-                .setCacheControl(CacheControl.maxAge(7, TimeUnit.DAYS).cachePublic());
+                // Stored names are UUID based and never rewritten, so the name is a strong validator
+                .setEtagGenerator(Resource::getFilename)
+                .resourceChain(false)
+                .addResolver(new PathResourceResolver() {
+                    @Override
+                    protected Resource getResource(String resourcePath, Resource location) throws IOException {
+                        Resource resource = super.getResource(resourcePath, location);
+                        if (resource != null) return resource;
+                        // Content-addressed uploads live in hash shard directories behind flat URLs
+                        Path stored = imageService.locate(resourcePath);
+                        if (stored != null && Files.isRegularFile(stored)) return new FileSystemResource(stored);
+                        // Processed image not generated yet: serve the raw upload
+                        Path original = imageService.resolvePendingOriginal(resourcePath);
+                        return original != null ? new FileSystemResource(original) : null;
+                    }
+                });
     }
 
     @Override
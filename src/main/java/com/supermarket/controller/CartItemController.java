@@ -5,8 +5,7 @@ import com.supermarket.entity.CartItem;
 import com.supermarket.entity.Product;
 import com.supermarket.entity.User;
 import com.supermarket.service.CartItemService;
-import com.supermarket.service.ProductService;
-import com.supermarket.service.UserService;
+import com.supermarket.service.EntityLookupService;
 import com.supermarket.vo.CartItemVO;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import io.swagger.v3.oas.annotations.Operation;
@@ -27,8 +26,7 @@ import java.util.stream.Collectors;
 public class CartItemController {
 
     private final CartItemService cartItemService;
-    private final UserService userService;
-    private final ProductService productService;
+    private final EntityLookupService entityLookupService;
 
     private CartItemVO toVO(CartItem item, Map<Long, User> userMap, Map<Long, Product> productMap) {
         CartItemVO vo = new CartItemVO();
@@ -48,10 +46,8 @@ public class CartItemController {
     }
 
     private List<CartItemVO> toVOList(List<CartItem> items) {
-        Map<Long, User> userMap = userService.listAll().stream()
-                .collect(Collectors.toMap(User::getId, u -> u, (a, b) -> a));
-        Map<Long, Product> productMap = productService.listAll().stream()
-                .collect(Collectors.toMap(Product::getId, p -> p, (a, b) -> a));
+        Map<Long, User> userMap = entityLookupService.getUserMap(items, CartItem::getUserId);
+        Map<Long, Product> productMap = entityLookupService.getProductMap(items, CartItem::getProductId);
         return items.stream().map(item -> toVO(item, userMap, productMap)).collect(Collectors.toList());
     }
 
@@ -86,10 +82,8 @@ public class CartItemController {
             @Parameter(description = "页码（默认1）") @RequestParam(defaultValue = "1") Integer pageNum,
             @Parameter(description = "每页数量（默认10）") @RequestParam(defaultValue = "10") Integer pageSize) {
         IPage<CartItem> page = cartItemService.listPage(pageNum, pageSize);
-        Map<Long, User> userMap = userService.listAll().stream()
-                .collect(Collectors.toMap(User::getId, u -> u, (a, b) -> a));
-        Map<Long, Product> productMap = productService.listAll().stream()
-                .collect(Collectors.toMap(Product::getId, p -> p, (a, b) -> a));
+        Map<Long, User> userMap = entityLookupService.getUserMap(page.getRecords(), CartItem::getUserId);
+        Map<Long, Product> productMap = entityLookupService.getProductMap(page.getRecords(), CartItem::getProductId);
         IPage<CartItemVO> voPage = page.convert(item -> toVO(item, userMap, productMap));
         return Result.success(voPage);
     }
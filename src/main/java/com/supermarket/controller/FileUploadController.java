@@ -1,27 +1,21 @@
 package com.supermarket.controller;
 
+import com.supermarket.common.FileSender;
 import com.supermarket.common.Result;
+import com.supermarket.service.ImageService;
+import com.supermarket.service.ImageVariantService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.IIOImage;
-import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.ImageOutputStream;
-import java.awt.*;
-import java.awt.image.BufferedImage;
-import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -29,15 +23,15 @@ import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/file")
+@RequiredArgsConstructor
 @Tag(name = "文件管理", description = "文件上传与下载接口")
 public class FileUploadController {
 
@@ -50,12 +44,13 @@ public class FileUploadController {
             "webp", new byte[]{0x52, 0x49, 0x46, 0x46}
     );
 
-    private static final int MAX_IMAGE_WIDTH = 1920;
-    private static final int MAX_IMAGE_HEIGHT = 1920;
-    private static final float JPEG_QUALITY = 0.8f;
-    private static final int THUMBNAIL_SIZE = 200;
     private static final long MAX_FILE_SIZE = 10 * 1024 * 1024; // 10MB
 
+    private static final int MAX_LIST_SIZE = 1000;
+
+    /** 可按宽度生成变体的格式（GIF 保留动画，不缩放） */
+    private static final Set<String> RESIZABLE_EXTENSIONS = Set.of(".jpg", ".jpeg", ".png", ".webp");
+
     private static final Map<String, String> MIME_TYPES = Map.of(
             ".jpg", "image/jpeg",
             ".jpeg", "image/jpeg",
@@ -64,25 +59,12 @@ public class FileUploadController {
             ".webp", "image/webp"
     );
 
-    @Value("${file.upload-dir:file}")
-    private String uploadDir;
-
-    @Value("${cdn.base-url:}")
-    private String cdnBaseUrl;
-
-    private Path uploadPath;
-
-    @PostConstruct
-    public void init() throws IOException {
-        uploadPath = Paths.get(uploadDir).toAbsolutePath().normalize();
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-        }
-    }
+    private final ImageService imageService;
+    private final ImageVariantService imageVariantService;
 
     @PostMapping("/upload")
-    @Operation(summary = "上传图片（自动压缩）", description = "上传图片文件，自动压缩并生成缩略图，返回图片访问URL")
-    public Result<Map<String, String>> uploadImage(@RequestParam("file") MultipartFile file) {
+    @Operation(summary = "上传图片（后台压缩）", description = "保存原图后立即返回图片ID和访问URL，压缩和多尺寸缩略图在后台生成，可通过 /status/{id} 查询进度")
+    public Result<Map<String, Object>> uploadImage(@RequestParam("file") MultipartFile file) {
         if (file.isEmpty()) {
             return Result.error("请选择要上传的文件");
         }
@@ -105,183 +87,109 @@ public class FileUploadController {
             return Result.error("文件内容不是有效的图片格式");
         }
 
-        try {
-            String baseName = UUID.randomUUID().toString().replace("-", "");
-
-            // Read original image for compression
-            BufferedImage originalImage = ImageIO.read(file.getInputStream());
-            String compressedFilename;
-            String thumbnailFilename = null;
-
-            if (originalImage != null && !extension.equals(".gif")) {
-                // Compress: resize if too large, reduce JPEG quality
-                BufferedImage compressed = resizeImage(originalImage, MAX_IMAGE_WIDTH, MAX_IMAGE_HEIGHT);
-                compressedFilename = baseName + ".jpg";
-                Path compressedPath = uploadPath.resolve(compressedFilename).normalize();
-                if (!compressedPath.startsWith(uploadPath)) {
-                    return Result.error("非法文件路径");
-                }
-                writeCompressedJpeg(compressed, compressedPath, JPEG_QUALITY);
-
-                // Generate thumbnail
-                BufferedImage thumb = resizeImage(originalImage, THUMBNAIL_SIZE, THUMBNAIL_SIZE);
-                thumbnailFilename = baseName + "_thumb.jpg";
-                Path thumbPath = uploadPath.resolve(thumbnailFilename).normalize();
-                writeCompressedJpeg(thumb, thumbPath, 0.7f);
-            } else {
-                // GIF or unreadable: save as-is
-                compressedFilename = baseName + extension;
-                Path filePath = uploadPath.resolve(compressedFilename).normalize();
-                if (!filePath.startsWith(uploadPath)) {
-                    return Result.error("非法文件路径");
-                }
-                file.transferTo(filePath.toFile());
-            }
-
-            String imageUrl = "/file/" + compressedFilename;
-            String fullUrl = cdnBaseUrl.isEmpty() ? imageUrl : cdnBaseUrl + imageUrl;
-
-            Map<String, String> result = new LinkedHashMap<>();
-            result.put("url", fullUrl);
-            result.put("path", imageUrl);
-            if (thumbnailFilename != null) {
-                String thumbUrl = "/file/" + thumbnailFilename;
-                result.put("thumbnail", cdnBaseUrl.isEmpty() ? thumbUrl : cdnBaseUrl + thumbUrl);
-            }
-            return Result.success(result);
+        try (InputStream in = file.getInputStream()) {
+            return Result.success(imageService.upload(in, extension));
+        } catch (RejectedExecutionException e) {
+            return Result.error(503, "图片处理繁忙，请稍后重试");
         } catch (IOException e) {
             return Result.error("文件上传失败：" + e.getMessage());
         }
     }
 
-    private BufferedImage resizeImage(BufferedImage original, int maxWidth, int maxHeight) {
-        int width = original.getWidth();
-        int height = original.getHeight();
-
-        if (width <= maxWidth && height <= maxHeight) {
-            return original;
-        }
-
-        double ratio = Math.min((double) maxWidth / width, (double) maxHeight / height);
-        int newWidth = (int) (width * ratio);
-        int newHeight = (int) (height * ratio);
-
-        BufferedImage resized = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g = resized.createGraphics();
-        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g.drawImage(original, 0, 0, newWidth, newHeight, null);
-        g.dispose();
-        return resized;
+    @GetMapping("/status/{id}")
+    @Operation(summary = "查询图片处理状态", description = "PENDING/PROCESSING/DONE/FAILED，完成后返回压缩图和缩略图地址")
+    public Result<Map<String, Object>> getImageStatus(@Parameter(description = "图片ID") @PathVariable String id) {
+        Map<String, Object> status = imageService.getStatus(id);
+        return status != null ? Result.success(status) : Result.error(404, "图片不存在");
     }
 
-    private void writeCompressedJpeg(BufferedImage image, Path path, float quality) throws IOException {
-        // Ensure no alpha channel
-        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
-        Graphics2D g = rgb.createGraphics();
-        g.drawImage(image, 0, 0, Color.WHITE, null);
-        g.dispose();
-
-        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
-        if (!writers.hasNext()) {
-            ImageIO.write(rgb, "jpg", path.toFile());
+    @GetMapping("/{filename}")
+    @Operation(summary = "预览图片", description = "根据文件名预览图片（带HTTP缓存头，支持 ETag/304 和 Range）；"
+            + "传 w 时返回按宽度档位缩放的变体，格式按 Accept 头协商")
+    public void previewFile(@Parameter(description = "文件名") @PathVariable String filename,
+                            @Parameter(description = "期望宽度（像素）") @RequestParam(required = false) Integer w,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path filePath = resolveFile(filename, response);
+        if (filePath == null) {
             return;
         }
-        ImageWriter writer = writers.next();
-        ImageWriteParam param = writer.getDefaultWriteParam();
-        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-        param.setCompressionQuality(quality);
-
-        try (ImageOutputStream ios = ImageIO.createImageOutputStream(path.toFile())) {
-            writer.setOutput(ios);
-            writer.write(null, new IIOImage(rgb, null, null), param);
-        } finally {
-            writer.dispose();
+        if (!Files.isRegularFile(filePath)) {
+            previewPendingOriginal(filename, request, response);
+            return;
+        }
+        String contentType = getContentType(filename);
+        if (w != null && w > 0 && RESIZABLE_EXTENSIONS.contains(extensionOf(filename))) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            try {
+                ImageVariantService.Variant variant =
+                        imageVariantService.resolve(filePath, w, request.getHeader(HttpHeaders.ACCEPT));
+                if (variant.contentType() != null) {
+                    filePath = variant.path();
+                    contentType = variant.contentType();
+                }
+            } catch (IOException e) {
+                log.warn("生成图片变体失败，返回原尺寸: {}, {}", filename, e.getMessage());
+            }
         }
+        // HTTP Cache: images are immutable (hash/UUID filenames), cache for 7 days
+        FileSender.send(request, response, filePath, contentType,
+                "inline; filename=\"" + filename + "\"",
+                CacheControl.maxAge(7, TimeUnit.DAYS).cachePublic());
     }
 
-    @GetMapping("/{filename}")
-    @Operation(summary = "预览图片", description = "根据文件名预览图片（带HTTP缓存头）")
-    public ResponseEntity<Resource> previewFile(
-            @Parameter(description = "文件名") @PathVariable String filename) {
-        if (!isValidFilename(filename)) {
-            return ResponseEntity.badRequest().build();
+    /**
+     * 压缩图或缩略图尚未生成（或原图无法解码）时先返回原图，不缓存，处理完成后客户端重新请求即可拿到压缩版本
+     */
+    private void previewPendingOriginal(String filename, HttpServletRequest request,
+                                        HttpServletResponse response) throws IOException {
+        Path original = imageService.resolvePendingOriginal(filename);
+        if (original == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
-        try {
-            Path filePath = uploadPath.resolve(filename).normalize();
-
-            if (!filePath.startsWith(uploadPath)) {
-                return ResponseEntity.badRequest().build();
-            }
-
-            if (!Files.exists(filePath) || !Files.isRegularFile(filePath)) {
-                return ResponseEntity.notFound().build();
-            }
-
-            Resource resource = new UrlResource(filePath.toUri());
-            String contentType = getContentType(filename);
+        FileSender.send(request, response, original, getContentType(original.getFileName().toString()),
+                "inline; filename=\"" + filename + "\"", CacheControl.noCache());
+    }
 
-            // HTTP Cache: images are immutable (UUID filenames), cache for 7 days
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .cacheControl(CacheControl.maxAge(7, TimeUnit.DAYS).cachePublic())
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"")
-                    .body(resource);
-        } catch (IOException e) {
-            return ResponseEntity.internalServerError().build();
+    @GetMapping("/download/{filename}")
+    @Operation(summary = "下载文件", description = "根据文件名下载已上传的文件（支持断点续传）")
+    public void downloadFile(@Parameter(description = "文件名") @PathVariable String filename,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path filePath = resolveFile(filename, response);
+        if (filePath == null) {
+            return;
+        }
+        if (!Files.isRegularFile(filePath)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
+        String encodedFilename = URLEncoder.encode(filename, StandardCharsets.UTF_8).replace("+", "%20");
+        FileSender.send(request, response, filePath, getContentType(filename),
+                "attachment; filename=\"" + encodedFilename + "\"; filename*=UTF-8''" + encodedFilename,
+                CacheControl.maxAge(7, TimeUnit.DAYS).cachePublic());
     }
 
-    @GetMapping("/download/{filename}")
-    @Operation(summary = "下载文件", description = "根据文件名下载已上传的文件")
-    public ResponseEntity<Resource> downloadFile(
-            @Parameter(description = "文件名") @PathVariable String filename) {
+    /**
+     * 校验文件名并解析为上传目录下的路径，不合法时直接返回 400
+     */
+    private Path resolveFile(String filename, HttpServletResponse response) throws IOException {
         if (!isValidFilename(filename)) {
-            return ResponseEntity.badRequest().build();
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return null;
         }
-        try {
-            Path filePath = uploadPath.resolve(filename).normalize();
-
-            if (!filePath.startsWith(uploadPath)) {
-                return ResponseEntity.badRequest().build();
-            }
-
-            if (!Files.exists(filePath) || !Files.isRegularFile(filePath)) {
-                return ResponseEntity.notFound().build();
-            }
-
-            Resource resource = new UrlResource(filePath.toUri());
-            String contentType = getContentType(filename);
-
-            String encodedFilename = URLEncoder.encode(filename, StandardCharsets.UTF_8).replace("+", "%20");
-
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION,
-                            "attachment; filename=\"" + encodedFilename + "\"; filename*=UTF-8''" + encodedFilename)
-                    .body(resource);
-        } catch (IOException e) {
-            return ResponseEntity.internalServerError().build();
+        Path filePath = imageService.locate(filename);
+        if (filePath == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return null;
         }
+        return filePath;
     }
 
     @GetMapping("/list")
-    @Operation(summary = "获取文件列表", description = "获取已上传的所有文件名列表")
-    public Result<List<String>> listFiles() {
-        try {
-            if (!Files.exists(uploadPath)) {
-                return Result.success(List.of());
-            }
-            try (Stream<Path> paths = Files.list(uploadPath)) {
-                List<String> filenames = paths
-                        .filter(Files::isRegularFile)
-                        .map(p -> p.getFileName().toString())
-                        .sorted()
-                        .collect(Collectors.toList());
-                return Result.success(filenames);
-            }
-        } catch (IOException e) {
-            return Result.error("获取文件列表失败：" + e.getMessage());
-        }
+    @Operation(summary = "获取文件列表", description = "从图片索引按上传时间倒序获取图片文件名（不扫描上传目录）")
+    public Result<List<String>> listFiles(
+            @Parameter(description = "最多返回条数") @RequestParam(defaultValue = "1000") int limit) {
+        return Result.success(imageService.listFileNames(Math.min(limit, MAX_LIST_SIZE)));
     }
 
     /**
@@ -289,11 +197,12 @@ public class FileUploadController {
      * Provides reliable MIME type detection across all OS (probeContentType returns null on some platforms).
      */
     private String getContentType(String filename) {
-        String ext = filename.substring(filename.lastIndexOf(".")).toLowerCase();
+        String ext = extensionOf(filename);
         String mime = MIME_TYPES.get(ext);
         if (mime != null) return mime;
         try {
-            Path filePath = uploadPath.resolve(filename).normalize();
+            Path filePath = imageService.locate(filename);
+            if (filePath == null) return "application/octet-stream";
             String detected = Files.probeContentType(filePath);
             if (detected != null) return detected;
         } catch (IOException ignored) {
@@ -301,6 +210,10 @@ public class FileUploadController {
         return "application/octet-stream";
     }
 
+    private static String extensionOf(String filename) {
+        return filename.substring(filename.lastIndexOf(".")).toLowerCase();
+    }
+
     private boolean isValidImageContent(MultipartFile file) {
         try (InputStream is = file.getInputStream()) {
             byte[] header = new byte[12];
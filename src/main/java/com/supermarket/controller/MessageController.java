@@ -1,5 +1,6 @@
 package com.supermarket.controller;
 
+import com.supermarket.common.CursorPage;
 import com.supermarket.common.Result;
 import com.supermarket.entity.Message;
 import com.supermarket.service.MessageService;
@@ -65,8 +66,9 @@ public class MessageController {
 
     @Operation(summary = "标记消息为已读")
     @PutMapping("/read/{id}")
-    public Result<Void> markAsRead(@Parameter(description = "消息ID") @PathVariable Long id) {
-        return messageService.markAsRead(id) ? Result.success() : Result.error("操作失败");
+    public Result<Void> markAsRead(@Parameter(description = "消息ID") @PathVariable Long id,
+                                   @Parameter(description = "用户ID（标记广播消息时必填）") @RequestParam(required = false) Long userId) {
+        return messageService.markAsRead(id, userId) ? Result.success() : Result.error("操作失败");
     }
 
     @Operation(summary = "标记用户所有消息为已读")
@@ -83,6 +85,14 @@ public class MessageController {
         return Result.success(messageService.listPage(pageNum, pageSize));
     }
 
+    @Operation(summary = "游标分页查询消息列表（不统计总数，适合深度翻页）")
+    @GetMapping("/listByCursor")
+    public Result<CursorPage<Message>> listByCursor(
+            @Parameter(description = "上一页返回的游标（第一页不传）") @RequestParam(required = false) String cursor,
+            @Parameter(description = "每页数量") @RequestParam(defaultValue = "10") Integer pageSize) {
+        return Result.success(messageService.listByCursor(cursor, pageSize));
+    }
+
     @Operation(summary = "查询所有消息")
     @GetMapping("/list")
     public Result<List<Message>> listAll() {
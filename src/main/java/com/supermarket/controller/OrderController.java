@@ -1,6 +1,7 @@
 package com.supermarket.controller;
 
 import com.supermarket.annotation.RateLimit;
+import com.supermarket.common.CursorPage;
 import com.supermarket.common.Result;
 import com.supermarket.dto.MultiItemOrderCreateDTO;
 import com.supermarket.dto.OrderCreateDTO;
@@ -9,10 +10,8 @@ import com.supermarket.entity.Product;
 import com.supermarket.entity.Store;
 import com.supermarket.entity.User;
 import com.supermarket.enums.OrderStatus;
+import com.supermarket.service.EntityLookupService;
 import com.supermarket.service.OrderService;
-import com.supermarket.service.ProductService;
-import com.supermarket.service.StoreService;
-import com.supermarket.service.UserService;
 import com.supermarket.vo.OrderVO;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import io.swagger.v3.oas.annotations.Operation;
@@ -34,9 +33,7 @@ import java.util.stream.Collectors;
 public class OrderController {
 
     private final OrderService orderService;
-    private final UserService userService;
-    private final StoreService storeService;
-    private final ProductService productService;
+    private final EntityLookupService entityLookupService;
 
     private OrderVO toVO(Order order, Map<Long, User> userMap, Map<Long, Store> storeMap, Map<Long, Product> productMap) {
         OrderVO vo = new OrderVO();
@@ -60,12 +57,9 @@ public class OrderController {
     }
 
     private List<OrderVO> toVOList(List<Order> orders) {
-        Map<Long, User> userMap = userService.listAll().stream()
-                .collect(Collectors.toMap(User::getId, u -> u, (a, b) -> a));
-        Map<Long, Store> storeMap = storeService.listAll().stream()
-                .collect(Collectors.toMap(Store::getId, s -> s, (a, b) -> a));
-        Map<Long, Product> productMap = productService.listAll().stream()
-                .collect(Collectors.toMap(Product::getId, p -> p, (a, b) -> a));
+        Map<Long, User> userMap = entityLookupService.getUserMap(orders, Order::getUserId);
+        Map<Long, Store> storeMap = entityLookupService.getStoreMap(orders, Order::getStoreId);
+        Map<Long, Product> productMap = entityLookupService.getProductMap(orders, Order::getProductId);
         return orders.stream().map(o -> toVO(o, userMap, storeMap, productMap)).collect(Collectors.toList());
     }
 
@@ -124,19 +118,27 @@ public class OrderController {
         } else {
             page = orderService.listPage(pageNum, pageSize);
         }
-        Map<Long, User> userMap = userService.listAll().stream()
-                .collect(Collectors.toMap(User::getId, u -> u, (a, b) -> a));
-        Map<Long, Store> storeMap = storeService.listAll().stream()
-                .collect(Collectors.toMap(Store::getId, s -> s, (a, b) -> a));
-        Map<Long, Product> productMap = productService.listAll().stream()
-                .collect(Collectors.toMap(Product::getId, p -> p, (a, b) -> a));
+        Map<Long, User> userMap = entityLookupService.getUserMap(page.getRecords(), Order::getUserId);
+        Map<Long, Store> storeMap = entityLookupService.getStoreMap(page.getRecords(), Order::getStoreId);
+        Map<Long, Product> productMap = entityLookupService.getProductMap(page.getRecords(), Order::getProductId);
         IPage<OrderVO> voPage = page.convert(o -> toVO(o, userMap, storeMap, productMap));
         return Result.success(voPage);
     }
 
+    @Operation(summary = "游标分页查询订单列表（不统计总数，适合深度翻页）")
+    @GetMapping("/listByCursor")
+    public Result<CursorPage<OrderVO>> listByCursor(
+            @Parameter(description = "店铺ID（可选，为空查全部）") @RequestParam(required = false) Long storeId,
+            @Parameter(description = "上一页返回的游标（第一页不传）") @RequestParam(required = false) String cursor,
+            @Parameter(description = "每页数量（默认10，最大100）") @RequestParam(defaultValue = "10") Integer pageSize) {
+        CursorPage<Order> page = orderService.listByCursor(storeId, cursor, pageSize);
+        return Result.success(page.withRecords(toVOList(page.getRecords())));
+    }
+
     @Operation(summary = "添加订单（自动计算员工折扣价和总金额）")
     @PostMapping("/add")
-    @RateLimit(key = "order:add", maxRequests = 5, windowSeconds = 1, message = "下单过于频繁，请稍后再试")
+    @RateLimit(key = "order:add", maxRequests = 5, windowSeconds = 1, burst = 10,
+            algorithm = RateLimit.Algorithm.TOKEN_BUCKET, keyBy = RateLimit.KeyStrategy.USER, message = "下单过于频繁，请稍后再试")
     public Result<Order> addOrder(@RequestBody OrderCreateDTO dto) {
         if (dto.getUserId() == null) {
             return Result.badRequest("用户ID不能为空");
@@ -157,7 +159,8 @@ public class OrderController {
 
     @Operation(summary = "添加多商品订单（一个订单包含多个商品）")
     @PostMapping("/addMultiItem")
-    @RateLimit(key = "order:addMulti", maxRequests = 5, windowSeconds = 1, message = "下单过于频繁，请稍后再试")
+    @RateLimit(key = "order:addMulti", maxRequests = 5, windowSeconds = 1, burst = 10,
+            algorithm = RateLimit.Algorithm.TOKEN_BUCKET, keyBy = RateLimit.KeyStrategy.USER, message = "下单过于频繁，请稍后再试")
     public Result<Order> addMultiItemOrder(@RequestBody MultiItemOrderCreateDTO dto) {
         if (dto.getUserId() == null) {
             return Result.badRequest("用户ID不能为空");
@@ -3,8 +3,8 @@ package com.supermarket.controller;
 import com.supermarket.common.Result;
 import com.supermarket.entity.OrderItem;
 import com.supermarket.entity.Product;
+import com.supermarket.service.EntityLookupService;
 import com.supermarket.service.OrderItemService;
-import com.supermarket.service.ProductService;
 import com.supermarket.vo.OrderItemVO;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import io.swagger.v3.oas.annotations.Operation;
@@ -25,7 +25,7 @@ import java.util.stream.Collectors;
 public class OrderItemController {
 
     private final OrderItemService orderItemService;
-    private final ProductService productService;
+    private final EntityLookupService entityLookupService;
 
     private OrderItemVO toVO(OrderItem item, Map<Long, Product> productMap) {
         OrderItemVO vo = new OrderItemVO();
@@ -41,8 +41,7 @@ public class OrderItemController {
     }
 
     private List<OrderItemVO> toVOList(List<OrderItem> items) {
-        Map<Long, Product> productMap = productService.listAll().stream()
-                .collect(Collectors.toMap(Product::getId, p -> p, (a, b) -> a));
+        Map<Long, Product> productMap = entityLookupService.getProductMap(items, OrderItem::getProductId);
         return items.stream().map(item -> toVO(item, productMap)).collect(Collectors.toList());
     }
 
@@ -77,8 +76,7 @@ public class OrderItemController {
             @Parameter(description = "页码（默认1）") @RequestParam(defaultValue = "1") Integer pageNum,
             @Parameter(description = "每页数量（默认10）") @RequestParam(defaultValue = "10") Integer pageSize) {
         IPage<OrderItem> page = orderItemService.listPage(pageNum, pageSize);
-        Map<Long, Product> productMap = productService.listAll().stream()
-                .collect(Collectors.toMap(Product::getId, p -> p, (a, b) -> a));
+        Map<Long, Product> productMap = entityLookupService.getProductMap(page.getRecords(), OrderItem::getProductId);
         IPage<OrderItemVO> voPage = page.convert(item -> toVO(item, productMap));
         return Result.success(voPage);
     }
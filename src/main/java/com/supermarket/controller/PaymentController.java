@@ -1,5 +1,6 @@
 package com.supermarket.controller;
 
+import com.supermarket.common.CursorPage;
 import com.supermarket.common.Result;
 import com.supermarket.entity.Payment;
 import com.supermarket.enums.PaymentStatus;
@@ -69,6 +70,14 @@ public class PaymentController {
         return Result.success(paymentService.listPage(pageNum, pageSize));
     }
 
+    @Operation(summary = "游标分页查询支付记录（不统计总数，适合深度翻页）")
+    @GetMapping("/listByCursor")
+    public Result<CursorPage<Payment>> listByCursor(
+            @Parameter(description = "上一页返回的游标（第一页不传）") @RequestParam(required = false) String cursor,
+            @Parameter(description = "每页数量（默认10，最大100）") @RequestParam(defaultValue = "10") Integer pageSize) {
+        return Result.success(paymentService.listByCursor(cursor, pageSize));
+    }
+
     @Operation(summary = "添加支付记录")
     @PostMapping("/add")
     public Result<Void> addPayment(@RequestBody Payment payment) {
@@ -6,6 +6,7 @@ import com.supermarket.entity.Category;
 import com.supermarket.entity.Order;
 import com.supermarket.entity.OrderItem;
 import com.supermarket.entity.Product;
+import com.supermarket.entity.SalesDailyRollup;
 import com.supermarket.entity.User;
 import com.supermarket.enums.OrderStatus;
 import com.supermarket.entity.StoreProduct;
@@ -13,6 +14,7 @@ import com.supermarket.service.OrderService;
 import com.supermarket.service.OrderItemService;
 import com.supermarket.service.ProductService;
 import com.supermarket.service.CategoryService;
+import com.supermarket.service.SalesRollupService;
 import com.supermarket.service.StoreProductService;
 import com.supermarket.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -40,6 +42,7 @@ public class SalesController {
     private final CategoryService categoryService;
     private final StoreProductService storeProductService;
     private final UserService userService;
+    private final SalesRollupService salesRollupService;
 
     @Operation(summary = "获取销量总览（按天统计）")
     @GetMapping("/summary/daily")
@@ -47,8 +50,6 @@ public class SalesController {
             @Parameter(description = "年份") @RequestParam Integer year,
             @Parameter(description = "月份") @RequestParam Integer month,
             @Parameter(description = "店铺ID（可选，为空查全部）") @RequestParam(required = false) Long storeId) {
-        List<Order> orders = getCompletedOrders(storeId);
-
         // Get days in month
         java.time.YearMonth yearMonth = java.time.YearMonth.of(year, month);
         int daysInMonth = yearMonth.lengthOfMonth();
@@ -60,14 +61,10 @@ public class SalesController {
             dailyCountMap.put(i, 0);
         }
 
-        for (Order order : orders) {
-            if (order.getCreateTime() != null
-                    && order.getCreateTime().getYear() == year
-                    && order.getCreateTime().getMonthValue() == month) {
-                int day = order.getCreateTime().getDayOfMonth();
-                dailyMap.merge(day, order.getTotalAmount() != null ? order.getTotalAmount() : BigDecimal.ZERO, BigDecimal::add);
-                dailyCountMap.merge(day, 1, Integer::sum);
-            }
+        for (SalesDailyRollup row : salesRollupService.getDailyTotals(storeId, yearMonth.atDay(1), yearMonth.atEndOfMonth())) {
+            int day = row.getSaleDate().getDayOfMonth();
+            dailyMap.merge(day, amountOf(row), BigDecimal::add);
+            dailyCountMap.merge(day, countOf(row), Integer::sum);
         }
 
         List<Map<String, Object>> result = new ArrayList<>();
@@ -88,7 +85,6 @@ public class SalesController {
             @Parameter(description = "年份（默认当前年）") @RequestParam(required = false) Integer year,
             @Parameter(description = "店铺ID（可选，为空查全部）") @RequestParam(required = false) Long storeId) {
         int targetYear = year != null ? year : LocalDateTime.now().getYear();
-        List<Order> orders = getCompletedOrders(storeId);
 
         Map<Integer, BigDecimal> monthlyMap = new TreeMap<>();
         Map<Integer, Integer> monthlyCountMap = new TreeMap<>();
@@ -97,12 +93,10 @@ public class SalesController {
             monthlyCountMap.put(i, 0);
         }
 
-        for (Order order : orders) {
-            if (order.getCreateTime() != null && order.getCreateTime().getYear() == targetYear) {
-                int month = order.getCreateTime().getMonthValue();
-                monthlyMap.merge(month, order.getTotalAmount() != null ? order.getTotalAmount() : BigDecimal.ZERO, BigDecimal::add);
-                monthlyCountMap.merge(month, 1, Integer::sum);
-            }
+        for (SalesDailyRollup row : salesRollupService.getDailyTotals(storeId, LocalDate.of(targetYear, 1, 1), LocalDate.of(targetYear, 12, 31))) {
+            int month = row.getSaleDate().getMonthValue();
+            monthlyMap.merge(month, amountOf(row), BigDecimal::add);
+            monthlyCountMap.merge(month, countOf(row), Integer::sum);
         }
 
         List<Map<String, Object>> result = new ArrayList<>();
@@ -121,17 +115,13 @@ public class SalesController {
     @GetMapping("/summary/yearly")
     public Result<List<Map<String, Object>>> getYearlySales(
             @Parameter(description = "店铺ID（可选，为空查全部）") @RequestParam(required = false) Long storeId) {
-        List<Order> orders = getCompletedOrders(storeId);
-
         Map<Integer, BigDecimal> yearlyMap = new TreeMap<>();
         Map<Integer, Integer> yearlyCountMap = new TreeMap<>();
 
-        for (Order order : orders) {
-            if (order.getCreateTime() != null) {
-                int yr = order.getCreateTime().getYear();
-                yearlyMap.merge(yr, order.getTotalAmount() != null ? order.getTotalAmount() : BigDecimal.ZERO, BigDecimal::add);
-                yearlyCountMap.merge(yr, 1, Integer::sum);
-            }
+        for (SalesDailyRollup row : salesRollupService.getDailyTotals(storeId, null, null)) {
+            int yr = row.getSaleDate().getYear();
+            yearlyMap.merge(yr, amountOf(row), BigDecimal::add);
+            yearlyCountMap.merge(yr, countOf(row), Integer::sum);
         }
 
         List<Map<String, Object>> result = new ArrayList<>();
@@ -193,18 +183,28 @@ public class SalesController {
     @GetMapping("/total")
     public Result<Map<String, Object>> getTotalSales(
             @Parameter(description = "店铺ID（可选，为空查全部）") @RequestParam(required = false) Long storeId) {
-        List<Order> orders = getCompletedOrders(storeId);
-
-        BigDecimal totalAmount = orders.stream()
-                .map(o -> o.getTotalAmount() != null ? o.getTotalAmount() : BigDecimal.ZERO)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        SalesDailyRollup total = salesRollupService.getGrandTotal(storeId);
 
         Map<String, Object> result = new LinkedHashMap<>();
-        result.put("totalAmount", totalAmount);
-        result.put("orderCount", orders.size());
+        result.put("totalAmount", amountOf(total));
+        result.put("orderCount", countOf(total));
         return Result.success(result);
     }
 
+    @Operation(summary = "从订单表重建销量汇总表（管理员校准用）")
+    @PostMapping("/rollup/rebuild")
+    public Result<Integer> rebuildRollup() {
+        return Result.success(salesRollupService.rebuild());
+    }
+
+    private BigDecimal amountOf(SalesDailyRollup row) {
+        return row != null && row.getTotalAmount() != null ? row.getTotalAmount() : BigDecimal.ZERO;
+    }
+
+    private int countOf(SalesDailyRollup row) {
+        return row != null && row.getOrderCount() != null ? row.getOrderCount() : 0;
+    }
+
     private List<Order> getCompletedOrders(Long storeId) {
         LambdaQueryWrapper<Order> wrapper = new LambdaQueryWrapper<>();
         wrapper.in(Order::getStatus, OrderStatus.PAID, OrderStatus.COMPLETED);
@@ -219,25 +219,20 @@ public class SalesController {
     @GetMapping("/trend/weekly")
     public Result<List<Map<String, Object>>> getWeeklySalesTrend(
             @Parameter(description = "店铺ID（可选）") @RequestParam(required = false) Long storeId) {
-        List<Order> orders = getCompletedOrders(storeId);
         LocalDate today = LocalDate.now();
+        Map<LocalDate, SalesDailyRollup> rollupByDate = salesRollupService.getDailyTotals(storeId, today.minusDays(6), today)
+                .stream()
+                .collect(Collectors.toMap(SalesDailyRollup::getSaleDate, r -> r, (a, b) -> a));
 
         List<Map<String, Object>> result = new ArrayList<>();
         for (int i = 6; i >= 0; i--) {
             LocalDate date = today.minusDays(i);
-            BigDecimal dayTotal = BigDecimal.ZERO;
-            int dayCount = 0;
-            for (Order order : orders) {
-                if (order.getCreateTime() != null && order.getCreateTime().toLocalDate().equals(date)) {
-                    dayTotal = dayTotal.add(order.getTotalAmount() != null ? order.getTotalAmount() : BigDecimal.ZERO);
-                    dayCount++;
-                }
-            }
+            SalesDailyRollup row = rollupByDate.get(date);
             Map<String, Object> item = new LinkedHashMap<>();
             item.put("date", date.toString());
             item.put("label", (date.getMonthValue()) + "/" + date.getDayOfMonth());
-            item.put("totalAmount", dayTotal);
-            item.put("orderCount", dayCount);
+            item.put("totalAmount", amountOf(row));
+            item.put("orderCount", countOf(row));
             result.add(item);
         }
         return Result.success(result);
@@ -1,12 +1,13 @@
 package com.supermarket.controller;
 
+import com.supermarket.common.CursorPage;
 import com.supermarket.common.Result;
 import com.supermarket.entity.Product;
 import com.supermarket.entity.Store;
 import com.supermarket.entity.StoreProduct;
-import com.supermarket.service.ProductService;
+import com.supermarket.service.EntityLookupService;
+import com.supermarket.service.HotStockService;
 import com.supermarket.service.StoreProductService;
-import com.supermarket.service.StoreService;
 import com.supermarket.vo.StoreProductVO;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import io.swagger.v3.oas.annotations.Operation;
@@ -27,8 +28,8 @@ import java.util.stream.Collectors;
 public class StoreProductController {
 
     private final StoreProductService storeProductService;
-    private final StoreService storeService;
-    private final ProductService productService;
+    private final HotStockService hotStockService;
+    private final EntityLookupService entityLookupService;
 
     private StoreProductVO toVO(StoreProduct sp, Map<Long, Store> storeMap, Map<Long, Product> productMap) {
         StoreProductVO vo = new StoreProductVO();
@@ -45,10 +46,8 @@ public class StoreProductController {
     }
 
     private List<StoreProductVO> toVOList(List<StoreProduct> list) {
-        Map<Long, Store> storeMap = storeService.listAll().stream()
-                .collect(Collectors.toMap(Store::getId, s -> s, (a, b) -> a));
-        Map<Long, Product> productMap = productService.listAll().stream()
-                .collect(Collectors.toMap(Product::getId, p -> p, (a, b) -> a));
+        Map<Long, Store> storeMap = entityLookupService.getStoreMap(list, StoreProduct::getStoreId);
+        Map<Long, Product> productMap = entityLookupService.getProductMap(list, StoreProduct::getProductId);
         return list.stream().map(sp -> toVO(sp, storeMap, productMap)).collect(Collectors.toList());
     }
 
@@ -92,14 +91,22 @@ public class StoreProductController {
         } else {
             page = storeProductService.listPage(pageNum, pageSize);
         }
-        Map<Long, Store> storeMap = storeService.listAll().stream()
-                .collect(Collectors.toMap(Store::getId, s -> s, (a, b) -> a));
-        Map<Long, Product> productMap = productService.listAll().stream()
-                .collect(Collectors.toMap(Product::getId, p -> p, (a, b) -> a));
+        Map<Long, Store> storeMap = entityLookupService.getStoreMap(page.getRecords(), StoreProduct::getStoreId);
+        Map<Long, Product> productMap = entityLookupService.getProductMap(page.getRecords(), StoreProduct::getProductId);
         IPage<StoreProductVO> voPage = page.convert(sp -> toVO(sp, storeMap, productMap));
         return Result.success(voPage);
     }
 
+    @Operation(summary = "游标分页查询店铺商品（不统计总数，适合深度翻页）")
+    @GetMapping("/listByCursor")
+    public Result<CursorPage<StoreProductVO>> listByCursor(
+            @Parameter(description = "店铺ID（可选）") @RequestParam(required = false) Long storeId,
+            @Parameter(description = "上一页返回的游标（第一页不传）") @RequestParam(required = false) String cursor,
+            @Parameter(description = "每页数量（默认10，最大100）") @RequestParam(defaultValue = "10") Integer pageSize) {
+        CursorPage<StoreProduct> page = storeProductService.listByCursor(storeId, cursor, pageSize);
+        return Result.success(page.withRecords(toVOList(page.getRecords())));
+    }
+
     @Operation(summary = "添加店铺商品")
     @PostMapping("/add")
     public Result<Void> addStoreProduct(@RequestBody StoreProduct storeProduct) {
@@ -192,4 +199,27 @@ public class StoreProductController {
         return storeProductService.deleteBatchStoreProducts(ids) ? Result.success() : Result.error("批量删除失败");
     }
 
+    @Operation(summary = "开启热点库存（秒杀/促销商品库存预热到 Redis）")
+    @PostMapping("/hot/enable")
+    public Result<Void> enableHotSku(
+            @Parameter(description = "店铺ID（为空表示总商品库存）") @RequestParam(required = false) Long storeId,
+            @Parameter(description = "商品ID") @RequestParam Long productId) {
+        return hotStockService.enableHotSku(storeId, productId)
+                ? Result.success() : Result.error("开启失败（Redis 不可用或商品不存在）");
+    }
+
+    @Operation(summary = "关闭热点库存（回写扣减量后删除 Redis 计数器）")
+    @PostMapping("/hot/disable")
+    public Result<Void> disableHotSku(
+            @Parameter(description = "店铺ID（为空表示总商品库存）") @RequestParam(required = false) Long storeId,
+            @Parameter(description = "商品ID") @RequestParam Long productId) {
+        hotStockService.disableHotSku(storeId, productId);
+        return Result.success();
+    }
+
+    @Operation(summary = "查询热点库存商品")
+    @GetMapping("/hot/list")
+    public Result<List<Map<String, Object>>> listHotSkus() {
+        return Result.success(hotStockService.listHotSkus());
+    }
 }
@@ -2,12 +2,14 @@ package com.supermarket.controller;
 
 import com.supermarket.common.Result;
 import com.supermarket.entity.Coupon;
+import com.supermarket.entity.CouponDistribution;
 import com.supermarket.entity.UserCoupon;
 import com.supermarket.enums.CouponStatus;
 import com.supermarket.entity.User;
+import com.supermarket.service.CouponDistributionService;
 import com.supermarket.service.CouponService;
+import com.supermarket.service.EntityLookupService;
 import com.supermarket.service.UserCouponService;
-import com.supermarket.service.UserService;
 import com.supermarket.vo.UserCouponVO;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import io.swagger.v3.oas.annotations.Operation;
@@ -30,7 +32,8 @@ public class UserCouponController {
 
     private final UserCouponService userCouponService;
     private final CouponService couponService;
-    private final UserService userService;
+    private final CouponDistributionService couponDistributionService;
+    private final EntityLookupService entityLookupService;
 
     private UserCouponVO toVO(UserCoupon uc, Map<Long, User> userMap, Map<Long, Coupon> couponMap) {
         UserCouponVO vo = new UserCouponVO();
@@ -47,10 +50,8 @@ public class UserCouponController {
     }
 
     private List<UserCouponVO> toVOList(List<UserCoupon> list) {
-        Map<Long, User> userMap = userService.listAll().stream()
-                .collect(Collectors.toMap(User::getId, u -> u, (a, b) -> a));
-        Map<Long, Coupon> couponMap = couponService.listAll().stream()
-                .collect(Collectors.toMap(Coupon::getId, c -> c, (a, b) -> a));
+        Map<Long, User> userMap = entityLookupService.getUserMap(list, UserCoupon::getUserId);
+        Map<Long, Coupon> couponMap = entityLookupService.getCouponMap(list, UserCoupon::getCouponId);
         return list.stream().map(uc -> toVO(uc, userMap, couponMap)).collect(Collectors.toList());
     }
 
@@ -99,10 +100,8 @@ public class UserCouponController {
             @Parameter(description = "页码（默认1）") @RequestParam(defaultValue = "1") Integer pageNum,
             @Parameter(description = "每页数量（默认10）") @RequestParam(defaultValue = "10") Integer pageSize) {
         IPage<UserCoupon> page = userCouponService.listPage(pageNum, pageSize);
-        Map<Long, User> userMap = userService.listAll().stream()
-                .collect(Collectors.toMap(User::getId, u -> u, (a, b) -> a));
-        Map<Long, Coupon> couponMap = couponService.listAll().stream()
-                .collect(Collectors.toMap(Coupon::getId, c -> c, (a, b) -> a));
+        Map<Long, User> userMap = entityLookupService.getUserMap(page.getRecords(), UserCoupon::getUserId);
+        Map<Long, Coupon> couponMap = entityLookupService.getCouponMap(page.getRecords(), UserCoupon::getCouponId);
         IPage<UserCouponVO> voPage = page.convert(uc -> toVO(uc, userMap, couponMap));
         return Result.success(voPage);
     }
@@ -155,10 +154,9 @@ public class UserCouponController {
         return userCouponService.deleteUserCoupon(id) ? Result.success() : Result.error("删除用户优惠券失败");
     }
 
-    @Operation(summary = "一键发放优惠券给所有用户")
+    @Operation(summary = "一键发放优惠券给所有用户（后台分批发放，返回发放任务）")
     @PostMapping("/distributeAll")
-    @Transactional
-    public Result<Void> distributeToAllUsers(@RequestParam Long couponId) {
+    public Result<CouponDistribution> distributeToAllUsers(@RequestParam Long couponId) {
         if (couponId == null) {
             return Result.badRequest("优惠券面额ID不能为空");
         }
@@ -166,15 +164,14 @@ public class UserCouponController {
         if (coupon == null) {
             return Result.badRequest("优惠券不存在");
         }
-        List<User> users = userService.listAll();
-        for (User user : users) {
-            UserCoupon uc = new UserCoupon();
-            uc.setUserId(user.getId());
-            uc.setCouponId(couponId);
-            uc.setStatus(CouponStatus.AVAILABLE);
-            userCouponService.addUserCoupon(uc);
-        }
-        return Result.success();
+        return Result.success(couponDistributionService.start(couponId));
+    }
+
+    @Operation(summary = "查询优惠券发放任务进度")
+    @GetMapping("/distribution/{id}")
+    public Result<CouponDistribution> getDistribution(@Parameter(description = "发放任务ID") @PathVariable Long id) {
+        CouponDistribution job = couponDistributionService.getProgress(id);
+        return job != null ? Result.success(job) : Result.error("发放任务不存在");
     }
 
     @Operation(summary = "批量删除用户优惠券")
@@ -0,0 +1,46 @@
+package com.supermarket.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@TableName("coupon_distribution")
+@Schema(description = "优惠券批量发放任务实体（按用户ID游标分批发放，记录进度，可断点续发）")
+public class CouponDistribution {
+
+    @Schema(description = "任务ID")
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    @Schema(description = "优惠券面额ID")
+    private Long couponId;
+
+    @Schema(description = "未完成时等于优惠券面额ID（唯一），完成后置空；保证同一优惠券同时只有一个发放任务")
+    private Long activeCouponId;
+
+    @Schema(description = "任务状态：RUNNING、DONE、FAILED")
+    private String status;
+
+    @Schema(description = "已发放到的最大用户ID（游标），续发时从其后开始")
+    private Long lastUserId;
+
+    @Schema(description = "任务开始时的用户总数")
+    private Long totalUsers;
+
+    @Schema(description = "已发放数量")
+    private Long distributedCount;
+
+    @Schema(description = "失败原因")
+    private String error;
+
+    @Schema(description = "创建时间")
+    private LocalDateTime createTime;
+
+    @Schema(description = "更新时间")
+    private LocalDateTime updateTime;
+}
@@ -0,0 +1,40 @@
+package com.supermarket.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@TableName("image_file")
+@Schema(description = "图片索引实体（按内容 SHA-256 去重，文件位于哈希分片目录）")
+public class ImageFile {
+
+    @Schema(description = "索引ID")
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    @Schema(description = "图片内容 SHA-256（十六进制），同时作为图片ID和文件名")
+    private String hash;
+
+    @Schema(description = "原图扩展名（含点）")
+    private String extension;
+
+    @Schema(description = "原图字节数")
+    private Long size;
+
+    @Schema(description = "处理状态：PENDING、PROCESSING、DONE、FAILED")
+    private String status;
+
+    @Schema(description = "处理失败或无法解码的原因")
+    private String error;
+
+    @Schema(description = "创建时间")
+    private LocalDateTime createTime;
+
+    @Schema(description = "更新时间")
+    private LocalDateTime updateTime;
+}
@@ -0,0 +1,28 @@
+package com.supermarket.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@TableName("message_read")
+@Schema(description = "广播消息已读记录（用户读过广播后才写入）")
+public class MessageRead {
+
+    @Schema(description = "ID")
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    @Schema(description = "广播消息ID")
+    private Long messageId;
+
+    @Schema(description = "已读用户ID")
+    private Long userId;
+
+    @Schema(description = "阅读时间")
+    private LocalDateTime createTime;
+}
@@ -0,0 +1,36 @@
+package com.supermarket.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@TableName("sales_daily_rollup")
+@Schema(description = "每日销量汇总实体（按店铺+日期预聚合已支付/已完成订单）")
+public class SalesDailyRollup {
+
+    @Schema(description = "汇总ID")
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    @Schema(description = "店铺ID（0表示无店铺订单）")
+    private Long storeId;
+
+    @Schema(description = "销售日期（按订单创建日期）")
+    private LocalDate saleDate;
+
+    @Schema(description = "订单数")
+    private Integer orderCount;
+
+    @Schema(description = "销售总金额")
+    private BigDecimal totalAmount;
+
+    @Schema(description = "更新时间")
+    private LocalDateTime updateTime;
+}
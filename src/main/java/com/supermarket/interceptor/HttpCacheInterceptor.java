@@ -1,7 +1,9 @@
 package com.supermarket.interceptor;
 
+import com.supermarket.service.ImageService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 
@@ -12,6 +14,9 @@ import org.springframework.web.servlet.HandlerInterceptor;
 @Component
 public class HttpCacheInterceptor implements HandlerInterceptor {
 
+    @Autowired
+    private ImageService imageService;
+
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
         if (!"GET".equalsIgnoreCase(request.getMethod())) {
@@ -33,6 +38,19 @@ public class HttpCacheInterceptor implements HandlerInterceptor {
             return true;
         }
 
+        // 图片处理状态和文件列表会变化：不缓存
+        if (path.startsWith("/api/file/status/") || path.startsWith("/api/file/list")) {
+            response.setHeader("Cache-Control", "no-cache");
+            return true;
+        }
+
+        // 压缩图尚未生成时静态处理器返回的是原图，不能按不可变资源缓存
+        if (path.startsWith("/file/")
+                && imageService.resolvePendingOriginal(path.substring("/file/".length())) != null) {
+            response.setHeader("Cache-Control", "no-cache");
+            return true;
+        }
+
         // 静态文件（图片）：缓存7天（文件名含UUID，内容不变）
         if (path.startsWith("/file/") || path.startsWith("/api/file/")) {
             response.setHeader("Cache-Control", "public, max-age=604800, immutable");
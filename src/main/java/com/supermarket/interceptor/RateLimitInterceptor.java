@@ -1,30 +1,29 @@
 package com.supermarket.interceptor;
 
+import cn.dev33.satoken.stp.StpUtil;
 import com.supermarket.annotation.RateLimit;
 import com.supermarket.common.Result;
+import com.supermarket.service.RateLimitService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.HandlerInterceptor;
 
-import java.util.concurrent.TimeUnit;
-
 /**
  * Redis 限流拦截器
- * 基于滑动窗口计数器实现接口限流
+ * 按 @RateLimit 配置的算法（滑动窗口日志 / 令牌桶）和计数维度（IP / 用户）限流，判定由 RateLimitService 一次 Lua 调用完成
  * 防止高并发下数据库崩溃
  */
 @Slf4j
 @Component
 public class RateLimitInterceptor implements HandlerInterceptor {
 
-    @Autowired(required = false)
-    private RedisTemplate<String, Object> redisTemplate;
+    @Autowired
+    private RateLimitService rateLimitService;
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
@@ -40,22 +39,18 @@ public class RateLimitInterceptor implements HandlerInterceptor {
             return true;
         }
 
-        // Without Redis, skip rate limiting
-        if (redisTemplate == null) {
-            return true;
-        }
-
-        String key = buildKey(rateLimit, request, handlerMethod);
-        String countKey = "rate_limit:" + key;
+        String name = buildName(rateLimit, handlerMethod);
+        String clientId = resolveClientId(rateLimit, request);
+        RateLimitService.Decision decision = rateLimitService.tryAcquire(name, clientId, rateLimit);
 
-        Long currentCount = redisTemplate.opsForValue().increment(countKey);
-        if (currentCount != null && currentCount == 1) {
-            // First request in window, set expiration
-            redisTemplate.expire(countKey, rateLimit.windowSeconds(), TimeUnit.SECONDS);
+        if (decision.remaining() != Long.MAX_VALUE) {
+            response.setHeader("X-RateLimit-Limit", String.valueOf(rateLimit.maxRequests()));
+            response.setHeader("X-RateLimit-Remaining", String.valueOf(decision.remaining()));
         }
-
-        if (currentCount != null && currentCount > rateLimit.maxRequests()) {
-            log.warn("接口限流触发: key={}, count={}, limit={}", key, currentCount, rateLimit.maxRequests());
+        if (!decision.allowed()) {
+            log.warn("接口限流触发: name={}, client={}, limit={}/{}s", name, clientId,
+                    rateLimit.maxRequests(), rateLimit.windowSeconds());
+            response.setHeader("Retry-After", String.valueOf(Math.max(1, (decision.retryAfterMillis() + 999) / 1000)));
             response.setContentType("application/json;charset=UTF-8");
             response.setStatus(429);
             response.getWriter().write(objectMapper.writeValueAsString(Result.error(rateLimit.message())));
@@ -65,13 +60,24 @@ public class RateLimitInterceptor implements HandlerInterceptor {
         return true;
     }
 
-    private String buildKey(RateLimit rateLimit, HttpServletRequest request, HandlerMethod handlerMethod) {
+    private String buildName(RateLimit rateLimit, HandlerMethod handlerMethod) {
         String key = rateLimit.key();
         if (key.isEmpty()) {
             key = handlerMethod.getMethod().getDeclaringClass().getSimpleName() + ":" + handlerMethod.getMethod().getName();
         }
-        // Per-IP rate limiting
-        String ip = request.getRemoteAddr();
-        return key + ":" + ip;
+        return key;
+    }
+
+    private String resolveClientId(RateLimit rateLimit, HttpServletRequest request) {
+        if (rateLimit.keyBy() == RateLimit.KeyStrategy.USER) {
+            try {
+                if (StpUtil.isLogin()) {
+                    return "user:" + StpUtil.getLoginIdAsString();
+                }
+            } catch (RuntimeException e) {
+                // No Sa-Token context for this request: fall back to IP
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
     }
 }
@@ -0,0 +1,36 @@
+package com.supermarket.listener;
+
+import com.supermarket.service.LocalCacheService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 本地缓存失效监听器
+ * 监听 cache:invalidate 频道，其他节点修改商品/分类后失效本节点的一级缓存
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnBean(RedisConnectionFactory.class)
+public class CacheInvalidationListener implements MessageListener {
+
+    private final LocalCacheService localCacheService;
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int sep = body.indexOf(':');
+        if (sep <= 0) {
+            log.warn("无效的缓存失效消息: {}", body);
+            return;
+        }
+        localCacheService.evictLocal(body.substring(0, sep), body.substring(sep + 1));
+    }
+}
@@ -0,0 +1,28 @@
+package com.supermarket.listener;
+
+import com.supermarket.service.DistributedLockService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 分布式锁释放监听器
+ * 监听 lock:released 频道，锁被释放后立即唤醒本节点等待该锁的线程，不必等到下一次退避重试
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnBean(RedisConnectionFactory.class)
+public class LockReleaseListener implements MessageListener {
+
+    private final DistributedLockService distributedLockService;
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        distributedLockService.onReleased(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,41 @@
+package com.supermarket.listener;
+
+import com.supermarket.websocket.NotificationWebSocketHandler;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * WebSocket 推送转发监听器
+ * 监听 ws:broadcast 频道推送本节点所有会话，监听本节点的 ws:node:{nodeId} 频道推送给连在本节点的指定用户
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnBean(RedisConnectionFactory.class)
+public class WebSocketRelayListener implements MessageListener {
+
+    private final NotificationWebSocketHandler webSocketHandler;
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (NotificationWebSocketHandler.BROADCAST_CHANNEL.equals(channel)) {
+            webSocketHandler.broadcastLocal(body);
+            return;
+        }
+        int sep = body.indexOf('\n');
+        if (sep <= 0) {
+            log.warn("无效的推送转发消息: {}", body);
+            return;
+        }
+        webSocketHandler.deliverLocal(body.substring(0, sep), body.substring(sep + 1));
+    }
+}
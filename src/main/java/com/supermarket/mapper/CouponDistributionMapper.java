@@ -0,0 +1,20 @@
+package com.supermarket.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.supermarket.entity.CouponDistribution;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+@Mapper
+public interface CouponDistributionMapper extends BaseMapper<CouponDistribution> {
+
+    /**
+     * 推进游标并累加已发放数量；游标已被其他执行者推进时返回 0，调用方应回滚本批次
+     */
+    @Update("UPDATE coupon_distribution SET last_user_id = #{toUserId}, "
+            + "distributed_count = distributed_count + #{count}, update_time = CURRENT_TIMESTAMP "
+            + "WHERE id = #{id} AND last_user_id = #{fromUserId} AND status = 'RUNNING'")
+    int advance(@Param("id") Long id, @Param("fromUserId") long fromUserId,
+                @Param("toUserId") long toUserId, @Param("count") int count);
+}
@@ -0,0 +1,9 @@
+package com.supermarket.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.supermarket.entity.ImageFile;
+import org.apache.ibatis.annotations.Mapper;
+
+@Mapper
+public interface ImageFileMapper extends BaseMapper<ImageFile> {
+}
@@ -2,8 +2,37 @@ package com.supermarket.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.supermarket.entity.Message;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 @Mapper
 public interface MessageMapper extends BaseMapper<Message> {
+
+    /**
+     * 用户未读数 = 未读个人消息 + since 之后发布且没有已读记录的广播
+     */
+    @Select("<script>"
+            + "SELECT COUNT(*) FROM message m WHERE m.deleted = 0 AND ("
+            + "(m.user_id = #{userId} AND m.is_read = 0) OR (m.user_id IS NULL"
+            + "<if test='since != null'> AND m.create_time &gt;= #{since}</if>"
+            + " AND NOT EXISTS (SELECT 1 FROM message_read r WHERE r.message_id = m.id AND r.user_id = #{userId})))"
+            + "</script>")
+    int countUnread(@Param("userId") Long userId, @Param("since") LocalDateTime since);
+
+    /**
+     * 一条多行 INSERT 给一批用户各写入一条相同内容的个人消息
+     */
+    @Insert("<script>"
+            + "INSERT INTO message (user_id, title, content, type, is_read) VALUES "
+            + "<foreach collection='userIds' item='userId' separator=','>"
+            + "(#{userId}, #{title}, #{content}, #{type}, 0)"
+            + "</foreach>"
+            + "</script>")
+    int insertForUsers(@Param("title") String title, @Param("content") String content, @Param("type") String type,
+                       @Param("userIds") List<Long> userIds);
 }
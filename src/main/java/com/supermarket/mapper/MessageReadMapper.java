@@ -0,0 +1,24 @@
+package com.supermarket.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.supermarket.entity.MessageRead;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+
+@Mapper
+public interface MessageReadMapper extends BaseMapper<MessageRead> {
+
+    /**
+     * 一条 INSERT ... SELECT 把用户所有未读的广播（since 之后发布）标记为已读
+     */
+    @Insert("<script>"
+            + "INSERT INTO message_read (message_id, user_id) "
+            + "SELECT m.id, #{userId} FROM message m WHERE m.user_id IS NULL AND m.deleted = 0"
+            + "<if test='since != null'> AND m.create_time &gt;= #{since}</if>"
+            + " AND NOT EXISTS (SELECT 1 FROM message_read r WHERE r.message_id = m.id AND r.user_id = #{userId})"
+            + "</script>")
+    int insertUnreadBroadcasts(@Param("userId") Long userId, @Param("since") LocalDateTime since);
+}
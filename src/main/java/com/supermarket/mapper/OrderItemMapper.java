@@ -2,8 +2,25 @@ package com.supermarket.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.supermarket.entity.OrderItem;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 @Mapper
 public interface OrderItemMapper extends BaseMapper<OrderItem> {
+
+    /**
+     * 一条多行 INSERT 写入订单的全部明细，回填自增ID
+     */
+    @Insert("<script>"
+            + "INSERT INTO order_items (order_id, product_id, quantity, price_at_purchase, subtotal) VALUES "
+            + "<foreach collection='items' item='item' separator=','>"
+            + "(#{item.orderId}, #{item.productId}, #{item.quantity}, #{item.priceAtPurchase}, #{item.subtotal})"
+            + "</foreach>"
+            + "</script>")
+    @Options(useGeneratedKeys = true, keyProperty = "items.id", keyColumn = "id")
+    int insertBatch(@Param("items") List<OrderItem> items);
 }
@@ -3,7 +3,52 @@ package com.supermarket.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.supermarket.entity.Product;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Collection;
+import java.util.Map;
 
 @Mapper
 public interface ProductMapper extends BaseMapper<Product> {
+
+    /**
+     * 条件扣减库存（库存充足时才扣减），返回受影响行数：1-成功，0-库存不足或商品不存在
+     */
+    @Update("UPDATE product SET stock = stock - #{quantity}, update_time = CURRENT_TIMESTAMP "
+            + "WHERE id = #{id} AND stock >= #{quantity} AND deleted = 0")
+    int deductStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    /**
+     * 按增量调整库存（正数回补，负数扣减，不低于0），用于取消订单回补和热点库存异步回写
+     */
+    @Update("UPDATE product SET stock = GREATEST(stock + #{delta}, 0), update_time = CURRENT_TIMESTAMP "
+            + "WHERE id = #{id} AND deleted = 0")
+    int adjustStock(@Param("id") Long id, @Param("delta") int delta);
+
+    /**
+     * 一条 UPDATE 按商品批量条件扣减库存（key 为商品ID，value 为扣减数量）
+     * 返回受影响行数，小于商品数说明有商品库存不足或不存在，调用方应回滚事务
+     */
+    @Update("<script>"
+            + "UPDATE product SET stock = stock - CASE id "
+            + "<foreach collection='quantities' index='id' item='qty' separator=' '>WHEN #{id} THEN #{qty}</foreach>"
+            + " END, update_time = CURRENT_TIMESTAMP WHERE deleted = 0 AND id IN "
+            + "<foreach collection='quantities' index='id' open='(' separator=',' close=')'>#{id}</foreach>"
+            + " AND stock &gt;= CASE id "
+            + "<foreach collection='quantities' index='id' item='qty' separator=' '>WHEN #{id} THEN #{qty}</foreach>"
+            + " END"
+            + "</script>")
+    int deductStockBatch(@Param("quantities") Map<Long, Integer> quantities);
+
+    /**
+     * 按店铺库存汇总重写总商品库存（一条 UPDATE，每个商品取其所有店铺库存之和）
+     */
+    @Update("<script>"
+            + "UPDATE product p SET stock = (SELECT COALESCE(SUM(sp.store_stock), 0) FROM store_product sp "
+            + "WHERE sp.product_id = p.id AND sp.deleted = 0), update_time = CURRENT_TIMESTAMP "
+            + "WHERE p.deleted = 0 AND p.id IN "
+            + "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>"
+            + "</script>")
+    int resyncStockFromStores(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,61 @@
+package com.supermarket.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.supermarket.entity.SalesDailyRollup;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Mapper
+public interface SalesDailyRollupMapper extends BaseMapper<SalesDailyRollup> {
+
+    /**
+     * 增量累加某店铺某日的销量（不存在则插入）
+     */
+    @Insert("INSERT INTO sales_daily_rollup (store_id, sale_date, order_count, total_amount, update_time) "
+            + "VALUES (#{storeId}, #{saleDate}, #{countDelta}, #{amountDelta}, CURRENT_TIMESTAMP) "
+            + "ON DUPLICATE KEY UPDATE order_count = order_count + #{countDelta}, "
+            + "total_amount = total_amount + #{amountDelta}, update_time = CURRENT_TIMESTAMP")
+    int upsertDelta(@Param("storeId") Long storeId, @Param("saleDate") LocalDate saleDate,
+                    @Param("countDelta") int countDelta, @Param("amountDelta") BigDecimal amountDelta);
+
+    @Delete("DELETE FROM sales_daily_rollup")
+    int deleteAll();
+
+    /**
+     * 从订单表全量重建汇总（仅统计未删除的已支付/已完成订单）
+     */
+    @Insert("INSERT INTO sales_daily_rollup (store_id, sale_date, order_count, total_amount, update_time) "
+            + "SELECT COALESCE(store_id, 0), CAST(create_time AS DATE), COUNT(*), SUM(total_amount), CURRENT_TIMESTAMP "
+            + "FROM `order` WHERE deleted = 0 AND status IN (1, 2) AND create_time IS NOT NULL "
+            + "GROUP BY COALESCE(store_id, 0), CAST(create_time AS DATE)")
+    int rebuildFromOrders();
+
+    /**
+     * 按日期汇总（storeId 为空时合并所有店铺，日期范围可选）
+     */
+    @Select("<script>"
+            + "SELECT sale_date, SUM(order_count) AS order_count, SUM(total_amount) AS total_amount "
+            + "FROM sales_daily_rollup <where>"
+            + "<if test='storeId != null'> AND store_id = #{storeId}</if>"
+            + "<if test='from != null'> AND sale_date &gt;= #{from}</if>"
+            + "<if test='to != null'> AND sale_date &lt;= #{to}</if>"
+            + "</where> GROUP BY sale_date ORDER BY sale_date"
+            + "</script>")
+    List<SalesDailyRollup> selectDailyTotals(@Param("storeId") Long storeId,
+                                             @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Select("<script>"
+            + "SELECT COALESCE(SUM(order_count), 0) AS order_count, COALESCE(SUM(total_amount), 0) AS total_amount "
+            + "FROM sales_daily_rollup <where>"
+            + "<if test='storeId != null'> AND store_id = #{storeId}</if>"
+            + "</where>"
+            + "</script>")
+    SalesDailyRollup selectGrandTotal(@Param("storeId") Long storeId);
+}
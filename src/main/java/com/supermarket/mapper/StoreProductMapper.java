@@ -3,7 +3,62 @@ package com.supermarket.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.supermarket.entity.StoreProduct;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface StoreProductMapper extends BaseMapper<StoreProduct> {
+
+    /**
+     * 条件扣减店铺库存（库存充足时才扣减），返回受影响行数：1-成功，0-库存不足或店铺未上架该商品
+     */
+    @Update("UPDATE store_product SET store_stock = store_stock - #{quantity}, update_time = CURRENT_TIMESTAMP "
+            + "WHERE store_id = #{storeId} AND product_id = #{productId} AND store_stock >= #{quantity} AND deleted = 0")
+    int deductStoreStock(@Param("storeId") Long storeId, @Param("productId") Long productId,
+                         @Param("quantity") int quantity);
+
+    /**
+     * 按增量调整店铺库存（正数回补，负数扣减，不低于0）
+     */
+    @Update("UPDATE store_product SET store_stock = GREATEST(store_stock + #{delta}, 0), update_time = CURRENT_TIMESTAMP "
+            + "WHERE store_id = #{storeId} AND product_id = #{productId} AND deleted = 0")
+    int adjustStoreStock(@Param("storeId") Long storeId, @Param("productId") Long productId,
+                         @Param("delta") int delta);
+
+    /**
+     * 一条 UPDATE 批量条件扣减同一店铺多个商品的库存（key 为商品ID，value 为扣减数量）
+     * 返回受影响行数，小于店铺已上架的商品数说明有商品库存不足
+     */
+    @Update("<script>"
+            + "UPDATE store_product SET store_stock = store_stock - CASE product_id "
+            + "<foreach collection='quantities' index='productId' item='qty' separator=' '>WHEN #{productId} THEN #{qty}</foreach>"
+            + " END, update_time = CURRENT_TIMESTAMP WHERE store_id = #{storeId} AND deleted = 0 AND product_id IN "
+            + "<foreach collection='quantities' index='productId' open='(' separator=',' close=')'>#{productId}</foreach>"
+            + " AND store_stock &gt;= CASE product_id "
+            + "<foreach collection='quantities' index='productId' item='qty' separator=' '>WHEN #{productId} THEN #{qty}</foreach>"
+            + " END"
+            + "</script>")
+    int deductStoreStockBatch(@Param("storeId") Long storeId, @Param("quantities") Map<Long, Integer> quantities);
+
+    /**
+     * 查询总库存与店铺库存之和不一致的商品ID（只检查有店铺记录的商品）
+     */
+    @Select("SELECT p.id FROM product p JOIN (SELECT product_id, SUM(store_stock) AS total FROM store_product "
+            + "WHERE deleted = 0 GROUP BY product_id) t ON t.product_id = p.id "
+            + "WHERE p.deleted = 0 AND p.stock <> t.total ORDER BY p.id LIMIT #{limit}")
+    List<Long> selectStockDriftProductIds(@Param("limit") int limit);
+
+    /**
+     * 在给定商品中找出已有店铺记录的商品ID（只看是否存在，不汇总库存）
+     */
+    @Select("<script>"
+            + "SELECT DISTINCT product_id FROM store_product WHERE deleted = 0 AND product_id IN "
+            + "<foreach collection='productIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>"
+            + "</script>")
+    List<Long> selectStockedProductIds(@Param("productIds") Collection<Long> productIds);
 }
@@ -2,8 +2,23 @@ package com.supermarket.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.supermarket.entity.UserCoupon;
+import com.supermarket.enums.CouponStatus;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 @Mapper
 public interface UserCouponMapper extends BaseMapper<UserCoupon> {
+
+    /**
+     * 一条多行 INSERT 给一批用户各发放一张优惠券
+     */
+    @Insert("<script>"
+            + "INSERT INTO user_coupon (user_id, coupon_id, status) VALUES "
+            + "<foreach collection='userIds' item='userId' separator=','>(#{userId}, #{couponId}, #{status})</foreach>"
+            + "</script>")
+    int insertForUsers(@Param("couponId") Long couponId, @Param("status") CouponStatus status,
+                       @Param("userIds") List<Long> userIds);
 }
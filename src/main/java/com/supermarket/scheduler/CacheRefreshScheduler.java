@@ -0,0 +1,34 @@
+package com.supermarket.scheduler;
+
+import com.supermarket.service.CategoryService;
+import com.supermarket.service.ProductService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定时任务：商品/分类列表缓存提前刷新
+ * 在缓存过期前重建，避免到期瞬间大量请求同时回源数据库
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CacheRefreshScheduler {
+
+    private final ProductService productService;
+    private final CategoryService categoryService;
+
+    /**
+     * 每分钟检查一次，剩余有效期不足90秒的列表缓存提前重建
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void refreshListCaches() {
+        if (productService.refreshListCacheAhead()) {
+            log.debug("商品列表缓存已提前刷新");
+        }
+        if (categoryService.refreshListCacheAhead()) {
+            log.debug("分类列表缓存已提前刷新");
+        }
+    }
+}
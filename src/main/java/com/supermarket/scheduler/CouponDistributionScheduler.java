@@ -0,0 +1,30 @@
+package com.supermarket.scheduler;
+
+import com.supermarket.service.CouponDistributionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定时任务：续发中断的优惠券发放任务
+ * 执行节点崩溃后任务锁到期释放，由任一节点从游标处接着发放
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CouponDistributionScheduler {
+
+    private final CouponDistributionService couponDistributionService;
+
+    /**
+     * 每分钟检查一次执行中的发放任务
+     */
+    @Scheduled(cron = "0 * * * * *")
+    public void resumeDistributions() {
+        int count = couponDistributionService.resumeRunning();
+        if (count > 0) {
+            log.debug("续发优惠券发放任务: {} 个", count);
+        }
+    }
+}
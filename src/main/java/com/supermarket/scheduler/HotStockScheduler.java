@@ -0,0 +1,41 @@
+package com.supermarket.scheduler;
+
+import com.supermarket.service.HotStockService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定时任务：热点商品库存回写与校准
+ * 下单时只在 Redis 中预扣，扣减量由本任务批量写回 MySQL
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HotStockScheduler {
+
+    private final HotStockService hotStockService;
+
+    /**
+     * 默认每秒回写一次 Redis 中累计的扣减量
+     */
+    @Scheduled(fixedDelayString = "${stock.hot.flush-interval-ms:1000}")
+    public void flushHotStock() {
+        int count = hotStockService.flushPending();
+        if (count > 0) {
+            log.debug("热点库存回写: {} 个商品", count);
+        }
+    }
+
+    /**
+     * 每5分钟以数据库库存为准校准一次 Redis 计数器
+     */
+    @Scheduled(cron = "0 */5 * * * *")
+    public void reconcileHotStock() {
+        int count = hotStockService.reconcileAll();
+        if (count > 0) {
+            log.info("热点库存校准完成: {} 个商品", count);
+        }
+    }
+}
@@ -2,11 +2,8 @@ package com.supermarket.scheduler;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.supermarket.entity.Order;
-import com.supermarket.entity.UserCoupon;
-import com.supermarket.enums.CouponStatus;
 import com.supermarket.enums.OrderStatus;
 import com.supermarket.service.OrderService;
-import com.supermarket.service.UserCouponService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -27,7 +24,6 @@ public class OrderTimeoutScheduler {
     private static final int TIMEOUT_MINUTES = 30;
 
     private final OrderService orderService;
-    private final UserCouponService userCouponService;
 
     /**
      * 每5分钟执行一次，检查并取消超时未支付的订单
@@ -47,18 +43,11 @@ public class OrderTimeoutScheduler {
 
         int count = 0;
         for (Order order : timeoutOrders) {
+            // updateOrder unlocks the coupon and gives the reserved stock back
             order.setStatus(OrderStatus.CANCELLED);
-            orderService.updateById(order);
-
-            // Unlock coupon if any
-            if (order.getUserCouponId() != null) {
-                UserCoupon uc = userCouponService.getUserCouponById(order.getUserCouponId());
-                if (uc != null && uc.getStatus() == CouponStatus.LOCKED) {
-                    uc.setStatus(CouponStatus.AVAILABLE);
-                    userCouponService.updateUserCoupon(uc);
-                }
+            if (orderService.updateOrder(order)) {
+                count++;
             }
-            count++;
         }
 
         log.info("定时任务取消超时订单: {} 笔", count);
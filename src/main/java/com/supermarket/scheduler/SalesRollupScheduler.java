@@ -0,0 +1,28 @@
+package com.supermarket.scheduler;
+
+import com.supermarket.service.SalesRollupService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定时任务：每日凌晨从订单表重建销量汇总表
+ * 作为订单状态变更时增量维护的兜底校准
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SalesRollupScheduler {
+
+    private final SalesRollupService salesRollupService;
+
+    /**
+     * 每天凌晨3点执行一次全量重建
+     */
+    @Scheduled(cron = "0 0 3 * * *")
+    public void rebuildSalesRollup() {
+        int rows = salesRollupService.rebuild();
+        log.info("销量汇总表重建完成: {} 行", rows);
+    }
+}
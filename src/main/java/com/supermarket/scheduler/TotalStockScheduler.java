@@ -0,0 +1,30 @@
+package com.supermarket.scheduler;
+
+import com.supermarket.service.StoreProductService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定时任务：总商品库存对账
+ * 店铺库存变更时只按增量同步总库存，本任务发现并修复与店铺库存之和的偏差
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TotalStockScheduler {
+
+    private final StoreProductService storeProductService;
+
+    /**
+     * 每10分钟对账一次
+     */
+    @Scheduled(cron = "0 */10 * * * *")
+    public void reconcileTotalStock() {
+        int count = storeProductService.reconcileTotalStock();
+        if (count > 0) {
+            log.info("总库存对账完成: 修复 {} 个商品", count);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.supermarket.scheduler;
+
+import com.supermarket.websocket.NotificationWebSocketHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定时任务：续期本节点在线用户的 WebSocket 路由
+ * 路由过期时间为 90 秒，节点宕机后停止续期，其他节点不再向它转发
+ */
+@Component
+@RequiredArgsConstructor
+public class WebSocketRouteScheduler {
+
+    private final NotificationWebSocketHandler webSocketHandler;
+
+    /**
+     * 每30秒续期一次
+     */
+    @Scheduled(fixedDelay = 30000)
+    public void refreshRoutes() {
+        webSocketHandler.refreshRoutes();
+    }
+}
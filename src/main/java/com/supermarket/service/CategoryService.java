@@ -25,4 +25,10 @@ public interface CategoryService extends IService<Category> {
     boolean deleteBatchCategories(List<Long> ids);
 
     List<Category> listAll();
+
+    /**
+     * 提前刷新分类列表缓存：仅当缓存已加载且即将过期时从数据库重建
+     * @return 是否执行了刷新
+     */
+    boolean refreshListCacheAhead();
 }
@@ -0,0 +1,34 @@
+package com.supermarket.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.supermarket.entity.CouponDistribution;
+
+/**
+ * 优惠券批量发放服务接口
+ * 发放在后台线程中执行：按用户ID键集分批读取，每批一条多行 INSERT 写入 user_coupon，
+ * 并在同一事务中推进任务游标，因此每个用户在一个任务中只会发放一次，进程崩溃后从游标处续发
+ */
+public interface CouponDistributionService extends IService<CouponDistribution> {
+
+    String STATUS_RUNNING = "RUNNING";
+    String STATUS_DONE = "DONE";
+    String STATUS_FAILED = "FAILED";
+
+    /**
+     * 创建并提交发放任务；该优惠券已有未完成（执行中或失败）的任务时直接续发该任务，不会重复发放
+     * @return 发放任务（含进度）
+     */
+    CouponDistribution start(Long couponId);
+
+    /**
+     * 查询发放任务进度
+     * @return 任务不存在时返回 null
+     */
+    CouponDistribution getProgress(Long id);
+
+    /**
+     * 续发所有执行中但本节点未在执行的任务（启动时和定时任务调用，其他节点正在执行的任务会被分布式锁跳过）
+     * @return 提交的任务数
+     */
+    int resumeRunning();
+}
@@ -0,0 +1,42 @@
+package com.supermarket.service;
+
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * Redis 分布式锁服务
+ * - 每次加锁使用唯一的持有者令牌，释放和续期都先比对令牌（Lua 原子执行），不会误删别人的锁
+ * - 持有期间看门狗按租期的 1/3 自动续期，进程崩溃时锁在租期到后自动过期
+ * - 竞争时在等待时间内排队等待：本节点内按先来先得排队，跨节点通过释放通知（发布订阅）唤醒，辅以退避重试
+ * - 支持一次锁定多个 key（全部成功或全部失败）
+ * Redis 不可用时退化为进程内锁
+ */
+public interface DistributedLockService {
+
+    /**
+     * @param wait 最长等待时间，Duration.ZERO 表示不等待
+     * @return 等待超时返回 null；返回的锁需在 finally 或 try-with-resources 中关闭
+     */
+    Lock tryLock(String key, Duration wait);
+
+    /**
+     * 同时锁定多个 key，内部按 key 排序获取，避免不同调用方交叉等待
+     */
+    Lock tryLockAll(Collection<String> keys, Duration wait);
+
+    /**
+     * 收到锁释放通知（由 LockReleaseListener 调用），唤醒本节点等待该 key 的线程
+     */
+    void onReleased(String key);
+
+    interface Lock extends AutoCloseable {
+
+        /**
+         * 续期失败（锁已过期被他人获取）后返回 false
+         */
+        boolean isHeld();
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,41 @@
+package com.supermarket.service;
+
+import com.supermarket.entity.Coupon;
+import com.supermarket.entity.Product;
+import com.supermarket.entity.Store;
+import com.supermarket.entity.User;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 关联实体批量查询服务接口
+ * 组装 VO 时从当前页的记录中收集去重后的外键ID，每种实体只发一条 IN 查询，
+ * 查询量与页大小成正比，而不是每次加载整张用户表/商品表
+ */
+public interface EntityLookupService {
+
+    /**
+     * 批量查询记录关联的用户
+     * @param rows 当前页记录
+     * @param userIdGetter 从记录中取用户ID
+     * @return 用户ID → 用户
+     */
+    <T> Map<Long, User> getUserMap(Collection<T> rows, Function<T, Long> userIdGetter);
+
+    /**
+     * 批量查询记录关联的商品（优先读取商品缓存）
+     */
+    <T> Map<Long, Product> getProductMap(Collection<T> rows, Function<T, Long> productIdGetter);
+
+    /**
+     * 批量查询记录关联的店铺
+     */
+    <T> Map<Long, Store> getStoreMap(Collection<T> rows, Function<T, Long> storeIdGetter);
+
+    /**
+     * 批量查询记录关联的优惠券面额
+     */
+    <T> Map<Long, Coupon> getCouponMap(Collection<T> rows, Function<T, Long> couponIdGetter);
+}
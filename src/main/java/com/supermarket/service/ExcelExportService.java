@@ -0,0 +1,36 @@
+package com.supermarket.service;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+
+/**
+ * Excel 流式导出服务接口
+ * 按主键分批查询（id > 上一批最大ID），每批写入同一个 ExcelWriter 后即释放，
+ * 内存占用只与批大小有关，与导出总行数无关
+ */
+public interface ExcelExportService {
+
+    /**
+     * 导出商品数据
+     * @param startDate 创建日期起（含，可为空）
+     * @param endDate 创建日期止（含，可为空）
+     */
+    void exportProducts(OutputStream out, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * 导出用户数据
+     */
+    void exportUsers(OutputStream out, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * 导出订单数据
+     * @param storeId 店铺ID（可为空）
+     */
+    void exportOrders(OutputStream out, Long storeId, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * 导出店铺商品数据
+     * @param productName 商品名称模糊搜索（可为空）
+     */
+    void exportStoreProducts(OutputStream out, Long storeId, String productName, LocalDate startDate, LocalDate endDate);
+}
@@ -0,0 +1,25 @@
+package com.supermarket.service;
+
+import com.supermarket.vo.ImportResultVO;
+
+import java.io.InputStream;
+
+/**
+ * Excel 分块导入服务接口
+ * 每读满一个分块：逐行校验，关联数据用 IN 查询一次性解析，通过校验的行批量写入（每块一个事务），
+ * 校验失败或写入失败的行记入导入结果的错误明细，不影响其他行
+ */
+public interface ExcelImportService {
+
+    ImportResultVO importProducts(InputStream in);
+
+    /**
+     * 导入用户（导出文件不含密码，新用户使用配置的初始密码）
+     */
+    ImportResultVO importUsers(InputStream in);
+
+    /**
+     * 导入店铺商品：按条码、其次按名称匹配商品，找不到时新建商品；相同店铺+商品合并库存
+     */
+    ImportResultVO importStoreProducts(InputStream in);
+}
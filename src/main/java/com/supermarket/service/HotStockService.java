@@ -0,0 +1,61 @@
+package com.supermarket.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 热点商品（秒杀/促销）库存服务接口
+ * 被标记的 店铺+商品 库存预热到 Redis 计数器，下单时通过 Lua 脚本原子预扣，
+ * 扣减量异步批量回写 MySQL。未启用 Redis 时所有方法退化为空操作，下单走 SQL 条件扣减。
+ */
+public interface HotStockService {
+
+    /**
+     * 开启热点库存模式：从数据库加载当前库存到 Redis 计数器
+     * @param storeId 店铺ID（为空表示总商品库存）
+     * @return 是否开启成功（Redis 不可用或商品不存在时返回 false）
+     */
+    boolean enableHotSku(Long storeId, Long productId);
+
+    /**
+     * 关闭热点库存模式：先回写待同步的扣减量，再删除计数器
+     */
+    void disableHotSku(Long storeId, Long productId);
+
+    /**
+     * 查询所有热点商品的 Redis 库存与待回写扣减量
+     */
+    List<Map<String, Object>> listHotSkus();
+
+    /**
+     * 一次 Lua 调用原子预扣一个订单中所有热点商品的库存
+     * 任一热点商品库存不足时整体失败并抛出异常；外层事务回滚时自动归还
+     * @param quantities 商品ID → 购买数量
+     * @return 已在 Redis 中预扣的商品ID（其余商品需走 SQL 扣减）
+     */
+    Set<Long> reserve(Long storeId, Map<Long, Integer> quantities);
+
+    /**
+     * 归还热点商品库存（取消/超时订单），在外层事务提交后执行
+     * @return 是否为热点商品（false 表示需调用方走 SQL 回补）
+     */
+    boolean release(Long storeId, Long productId, int quantity);
+
+    /**
+     * 将 Redis 中累计的扣减量批量回写 MySQL
+     * @return 回写的商品数
+     */
+    int flushPending();
+
+    /**
+     * 以数据库库存为准校准热点计数器（计数器 = 数据库库存 - 待回写扣减量）
+     */
+    void reconcile(Long storeId, Long productId);
+
+    /**
+     * 校准全部热点商品
+     * @return 校准的商品数
+     */
+    int reconcileAll();
+}
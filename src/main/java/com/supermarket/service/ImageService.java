@@ -0,0 +1,55 @@
+package com.supermarket.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.supermarket.entity.ImageFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 图片上传与异步处理服务接口
+ * 上传时只把原图写入磁盘并立即返回；压缩和多尺寸缩略图由有界线程池在后台生成，
+ * 队列已满时拒绝新的上传（抛出 RejectedExecutionException），由调用方提示稍后重试
+ * 图片按内容 SHA-256 寻址并去重，文件存放在哈希前缀分片目录，image_file 表记录索引和处理状态
+ */
+public interface ImageService extends IService<ImageFile> {
+
+    String STATUS_PENDING = "PENDING";
+    String STATUS_PROCESSING = "PROCESSING";
+    String STATUS_DONE = "DONE";
+    String STATUS_FAILED = "FAILED";
+
+    /**
+     * 保存原图并提交后台处理；内容已存在时直接返回已有图片，不重复存储和处理
+     * @param extension 小写扩展名（含点）
+     * @return 图片ID、处理状态，以及处理完成后的图片和缩略图地址
+     */
+    Map<String, Object> upload(InputStream in, String extension) throws IOException;
+
+    /**
+     * 查询图片处理状态
+     * @return 图片不存在时返回 null
+     */
+    Map<String, Object> getStatus(String id);
+
+    /**
+     * 请求的压缩图/缩略图尚未生成（或原图无法解码）时返回对应原图，供预览兜底
+     * @param filename 压缩图或缩略图文件名
+     * @return 文件已生成、不是处理产物或原图不存在时返回 null
+     */
+    Path resolvePendingOriginal(String filename);
+
+    /**
+     * 对外文件名映射为磁盘路径：哈希命名的文件位于分片目录，旧的 UUID 文件位于上传根目录
+     * @return 文件名不合法时返回 null（不保证文件存在）
+     */
+    Path locate(String filename);
+
+    /**
+     * 从索引中按上传时间倒序列出图片文件名
+     */
+    List<String> listFileNames(int limit);
+}
@@ -0,0 +1,23 @@
+package com.supermarket.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * 按需生成的图片尺寸变体服务
+ * 请求宽度向上取整到配置的档位，首次请求时生成并缓存到磁盘，磁盘缓存按总字节数做 LRU 淘汰；
+ * 输出格式按 Accept 头在可用编码器中选择体积最小的一种（AVIF > WebP > JPEG）
+ */
+public interface ImageVariantService {
+
+    /**
+     * @param source  已存储的源图
+     * @param width   期望宽度（像素）
+     * @param accept  请求的 Accept 头，可为 null
+     * @return 变体文件；源图不比所选档位宽时直接返回源图（contentType 为 null）
+     */
+    Variant resolve(Path source, int width, String accept) throws IOException;
+
+    record Variant(Path path, String contentType) {
+    }
+}
@@ -0,0 +1,39 @@
+package com.supermarket.service;
+
+/**
+ * 本地一级缓存服务接口
+ * 进程内缓存（容量 + TTL 淘汰）位于 Redis 二级缓存之前，省去每次读取的网络往返和 JSON 反序列化。
+ * 失效通过 Redis 发布订阅广播到所有节点；未启用 Redis 时仅失效本节点。
+ */
+public interface LocalCacheService {
+
+    /** 商品缓存（key 为商品ID） */
+    String PRODUCT = "product";
+
+    /** 分类缓存（key 为分类ID） */
+    String CATEGORY = "category";
+
+    /**
+     * 读取本地缓存
+     * @return 缓存值，未命中返回 null
+     */
+    <T> T get(String cacheName, Object key);
+
+    void put(String cacheName, Object key, Object value);
+
+    /**
+     * 失效本节点缓存并通知其他节点
+     */
+    void evict(String cacheName, Object key);
+
+    /**
+     * 失效本节点某个缓存的全部条目并通知其他节点
+     */
+    void evictAll(String cacheName);
+
+    /**
+     * 仅失效本节点缓存（收到其他节点的失效通知时调用）
+     * @param key 为空表示失效全部条目
+     */
+    void evictLocal(String cacheName, String key);
+}
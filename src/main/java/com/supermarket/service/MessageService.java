@@ -2,18 +2,39 @@ package com.supermarket.service;
 
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.supermarket.common.CursorPage;
 import com.supermarket.entity.Message;
 
 import java.util.List;
 
+/**
+ * 消息服务接口
+ * 广播默认读时扩散：只存一条 user_id 为空的消息，用户查询时合并个人消息和注册之后发布的广播，
+ * 广播的已读状态在用户读过之后才写入 message_read；
+ * message.broadcast.mode=materialized 时改为后台按用户ID分批多行插入个人消息
+ * 配置 Redis 时未读数由每个用户的计数器增量维护，读取不访问数据库
+ */
 public interface MessageService extends IService<Message> {
+
+    String BROADCAST_SHARED = "shared";
+    String BROADCAST_MATERIALIZED = "materialized";
+
     boolean sendMessage(Message message);
     boolean broadcastMessage(String title, String content, String type);
+
+    /**
+     * 用户消息列表：个人消息 + 注册之后发布的广播（广播的 isRead 按该用户的已读记录填充）
+     */
     List<Message> getMessagesByUserId(Long userId);
     int getUnreadCount(Long userId);
-    boolean markAsRead(Long id);
+
+    /**
+     * 标记消息已读；广播消息按用户记录已读，需要传入用户ID
+     */
+    boolean markAsRead(Long id, Long userId);
     boolean markAllAsRead(Long userId);
     IPage<Message> listPage(int pageNum, int pageSize);
+    CursorPage<Message> listByCursor(String cursor, int pageSize);
     boolean deleteMessage(Long id);
     boolean deleteBatchMessages(List<Long> ids);
     List<Message> listAll();
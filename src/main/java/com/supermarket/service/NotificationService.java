@@ -4,6 +4,7 @@ import com.supermarket.enums.OrderStatus;
 
 /**
  * 消息推送服务接口
+ * 推送均为异步：方法只负责入队并立即返回，在事务中调用时提交后才入队，回滚则不推送
  */
 public interface NotificationService {
 
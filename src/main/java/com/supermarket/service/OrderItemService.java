@@ -18,6 +18,11 @@ public interface OrderItemService extends IService<OrderItem> {
 
     boolean addOrderItem(OrderItem orderItem);
 
+    /**
+     * 一条多行 INSERT 批量新增订单明细（在下单事务内执行，与订单使用同一连接）
+     */
+    boolean addOrderItemsBatch(List<OrderItem> orderItems);
+
     boolean updateOrderItem(OrderItem orderItem);
 
     boolean deleteOrderItem(Long id);
@@ -2,6 +2,7 @@ package com.supermarket.service;
 
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.supermarket.common.CursorPage;
 import com.supermarket.entity.Order;
 import com.supermarket.enums.OrderStatus;
 
@@ -26,6 +27,11 @@ public interface OrderService extends IService<Order> {
 
     IPage<Order> listPageByStoreId(Long storeId, int pageNum, int pageSize);
 
+    /**
+     * 游标分页查询订单（按创建时间倒序），storeId 为空时查全部
+     */
+    CursorPage<Order> listByCursor(Long storeId, String cursor, int pageSize);
+
     Order addOrder(Long userId, Long productId, Integer quantity, Long userCouponId, Long storeId);
 
     Order addMultiItemOrder(Long userId, Long storeId, List<Map<String, Object>> items, Long userCouponId);
@@ -2,6 +2,7 @@ package com.supermarket.service;
 
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.supermarket.common.CursorPage;
 import com.supermarket.entity.Payment;
 import com.supermarket.enums.PaymentStatus;
 
@@ -21,6 +22,8 @@ public interface PaymentService extends IService<Payment> {
 
     IPage<Payment> listPage(int pageNum, int pageSize);
 
+    CursorPage<Payment> listByCursor(String cursor, int pageSize);
+
     boolean addPayment(Payment payment);
 
     boolean updatePayment(Payment payment);
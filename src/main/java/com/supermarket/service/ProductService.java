@@ -4,12 +4,20 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.supermarket.entity.Product;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface ProductService extends IService<Product> {
 
     Product getProductById(Long id);
 
+    /**
+     * 按ID批量查询商品：先批量读取 Redis 缓存，未命中的用一条 IN 查询补齐并回填缓存
+     * @return 商品ID → 商品（不存在的ID不在结果中）
+     */
+    Map<Long, Product> getProductMapByIds(Collection<Long> ids);
+
     Product getProductByName(String name);
 
     Product getProductByBarcode(String barcode);
@@ -24,15 +32,52 @@ public interface ProductService extends IService<Product> {
 
     boolean addProduct(Product product);
 
+    /**
+     * 批量新增商品（JDBC 批量插入），提交后用一条查询修补列表缓存
+     */
+    boolean addProductsBatch(List<Product> products);
+
     boolean updateProduct(Product product);
 
     boolean deleteProduct(Long id);
 
     boolean deleteBatchProducts(List<Long> ids);
 
+    /**
+     * 原子扣减商品库存（单条条件 UPDATE，库存不足时不扣减）
+     * @param productId 商品ID
+     * @param quantity 扣减数量
+     * @return 是否扣减成功
+     */
+    boolean deductStock(Long productId, int quantity);
+
+    /**
+     * 按增量调整商品库存（正数回补，负数扣减）
+     */
+    boolean adjustStock(Long productId, int delta);
+
+    /**
+     * 一条条件 UPDATE 批量扣减多个商品的库存（多商品下单）
+     * @param quantities 商品ID → 扣减数量
+     * @return 全部扣减成功时返回 true；返回 false 时可能已部分扣减，调用方须抛出异常回滚事务
+     */
+    boolean deductStockBatch(Map<Long, Integer> quantities);
+
+    /**
+     * 按店铺库存汇总重写这些商品的总库存（首次上架到店铺和对账修复时使用）
+     * @return 更新的商品数
+     */
+    int resyncStockFromStores(Collection<Long> productIds);
+
     List<Product> listAll();
 
     List<Product> getOnShelfProducts();
 
     List<Product> getLowStockProducts();
+
+    /**
+     * 提前刷新商品列表缓存：仅当列表缓存已加载且即将过期时从数据库重建
+     * @return 是否执行了刷新
+     */
+    boolean refreshListCacheAhead();
 }
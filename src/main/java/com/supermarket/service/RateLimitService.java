@@ -0,0 +1,26 @@
+package com.supermarket.service;
+
+import com.supermarket.annotation.RateLimit;
+
+/**
+ * 分布式限流服务：每次判定在 Redis 中执行一个 Lua 脚本，读取、更新和设置过期时间原子完成
+ */
+public interface RateLimitService {
+
+    /**
+     * 判定一次请求
+     * @param name     限流规则名称（用于指标标签，不含用户/IP）
+     * @param clientId 计数维度（用户ID或IP）
+     * @return Redis 不可用时放行
+     */
+    Decision tryAcquire(String name, String clientId, RateLimit rule);
+
+    /**
+     * @param remaining         剩余可用请求数
+     * @param retryAfterMillis  被拒绝时距下次可用的毫秒数
+     */
+    record Decision(boolean allowed, long remaining, long retryAfterMillis) {
+
+        public static final Decision UNLIMITED = new Decision(true, Long.MAX_VALUE, 0);
+    }
+}
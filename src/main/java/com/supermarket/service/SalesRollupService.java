@@ -0,0 +1,37 @@
+package com.supermarket.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.supermarket.entity.Order;
+import com.supermarket.entity.SalesDailyRollup;
+import com.supermarket.enums.OrderStatus;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface SalesRollupService extends IService<SalesDailyRollup> {
+
+    /**
+     * 订单状态变更时增量维护每日汇总（进入/离开 已支付·已完成 状态时加减）
+     * @param existing 变更前的订单（数据库中的记录）
+     * @param newStatus 变更后的状态
+     */
+    void applyStatusChange(Order existing, OrderStatus newStatus);
+
+    /**
+     * 订单被删除时从汇总中扣除（仅对已计入汇总的订单生效）
+     */
+    void applyOrderRemoved(Order existing);
+
+    /**
+     * 从订单表全量重建汇总表
+     * @return 重建后的汇总行数
+     */
+    int rebuild();
+
+    /**
+     * 按日期查询汇总（storeId 为空查全部店铺，from/to 为空不限）
+     */
+    List<SalesDailyRollup> getDailyTotals(Long storeId, LocalDate from, LocalDate to);
+
+    SalesDailyRollup getGrandTotal(Long storeId);
+}
@@ -2,9 +2,12 @@ package com.supermarket.service;
 
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.supermarket.common.CursorPage;
 import com.supermarket.entity.StoreProduct;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface StoreProductService extends IService<StoreProduct> {
     StoreProduct getStoreProductById(Long id);
@@ -12,6 +15,7 @@ public interface StoreProductService extends IService<StoreProduct> {
     List<StoreProduct> getByProductId(Long productId);
     IPage<StoreProduct> listPage(int pageNum, int pageSize);
     IPage<StoreProduct> listPageByStoreId(Long storeId, int pageNum, int pageSize);
+    CursorPage<StoreProduct> listByCursor(Long storeId, String cursor, int pageSize);
     boolean addStoreProduct(StoreProduct storeProduct);
     boolean updateStoreProduct(StoreProduct storeProduct);
     boolean deleteStoreProduct(Long id);
@@ -21,15 +25,51 @@ public interface StoreProductService extends IService<StoreProduct> {
     List<StoreProduct> searchByProductNameList(String productName, Long storeId);
     List<StoreProduct> getLowStockByStoreId(Long storeId, int threshold);
     List<StoreProduct> getLowStockByStoreIdUsingSafetyStock(Long storeId);
-    void syncProductTotalStock(Long productId);
+
+    /**
+     * 总库存对账：找出总商品库存与店铺库存之和不一致的商品并按汇总值修复
+     * 日常店铺库存变更只按增量同步总库存，本方法由定时任务调用兜底
+     * @return 修复的商品数
+     */
+    int reconcileTotalStock();
+
     StoreProduct addStoreProductWithName(String productName, StoreProduct storeProduct);
     StoreProduct getByStoreIdAndProductId(Long storeId, Long productId);
+
+    /**
+     * 一条 IN 查询加载店铺中的多个商品
+     * @return 商品ID → 店铺商品（店铺未上架的商品不在结果中）
+     */
+    Map<Long, StoreProduct> getMapByStoreIdAndProductIds(Long storeId, Collection<Long> productIds);
+
     /**
-     * 扣减店铺商品库存，并同步总商品库存
+     * 批量合并店铺商品：同一店铺+商品已存在时累加库存并覆盖非空字段，否则新增；
+     * 已有记录一次查询加载，新增和更新分别批量执行，每个涉及的商品只同步一次总库存
+     * @return 合并到已有记录的行数（其余为新增）
+     */
+    int mergeBatch(List<StoreProduct> rows);
+    /**
+     * 原子扣减店铺商品库存（单条条件 UPDATE，库存不足时不扣减）
+     * 只修改店铺库存：下单时调用方已通过 ProductService.deductStock 扣减了相同数量的总库存
      * @param storeId 店铺ID
      * @param productId 商品ID
      * @param quantity 扣减数量
-     * @return 是否成功
+     * @return 是否成功（库存不足或店铺未上架该商品时返回 false）
      */
     boolean deductStoreStock(Long storeId, Long productId, int quantity);
+
+    /**
+     * 按增量调整店铺商品库存（正数回补，负数扣减）
+     * 只修改店铺库存：调用方通过 ProductService.adjustStock 对总库存应用相同的增量
+     * @return 是否成功（店铺未上架该商品时返回 false）
+     */
+    boolean adjustStoreStock(Long storeId, Long productId, int delta);
+
+    /**
+     * 一条条件 UPDATE 批量扣减同一店铺多个商品的库存（多商品下单）
+     * 只修改店铺库存：调用方已通过 ProductService.deductStockBatch 扣减了相同数量的总库存
+     * @param quantities 商品ID → 扣减数量，只应包含店铺已上架的商品
+     * @return 全部扣减成功时返回 true；返回 false 时可能已部分扣减，调用方须抛出异常回滚事务
+     */
+    boolean deductStoreStockBatch(Long storeId, Map<Long, Integer> quantities);
 }
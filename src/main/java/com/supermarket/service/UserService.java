@@ -21,6 +21,11 @@ public interface UserService extends IService<User> {
 
     boolean addUser(User user);
 
+    /**
+     * 批量新增用户（JDBC 批量插入），密码在插入前加密
+     */
+    boolean addUsersBatch(List<User> users);
+
     boolean updateUser(User user);
 
     boolean deleteUser(Long id);
@@ -4,13 +4,18 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.supermarket.common.ReadMarker;
+import com.supermarket.common.SingleFlight;
 import com.supermarket.entity.Category;
 import com.supermarket.mapper.CategoryMapper;
 import com.supermarket.service.CategoryService;
+import com.supermarket.service.DistributedLockService;
+import com.supermarket.service.LocalCacheService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -20,22 +25,46 @@ public class CategoryServiceImpl extends ServiceImpl<CategoryMapper, Category> i
     private static final String CACHE_CATEGORY_ALL = "cache:category:all";
     private static final String CACHE_CATEGORY_ID = "cache:category:id:";
     private static final long CACHE_TTL_MINUTES = 30;
+    /** 列表缓存剩余有效期低于该值时由定时任务提前重建 */
+    private static final long REFRESH_AHEAD_SECONDS = 90;
+    private static final String REFRESH_LOCK_KEY = "lock:cache:refresh:category:all";
+    /** 列表缓存读取标记，只有最近一个有效期内被读过的列表才提前重建 */
+    private static final String CACHE_CATEGORY_ALL_READ = "cache:category:all:read";
+    private static final Duration READ_MARK_INTERVAL = Duration.ofSeconds(10);
+
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final ReadMarker listReadMarker = new ReadMarker(CACHE_CATEGORY_ALL_READ,
+            Duration.ofMinutes(CACHE_TTL_MINUTES), READ_MARK_INTERVAL);
+
+    @Autowired
+    private LocalCacheService localCacheService;
+
+    @Autowired
+    private DistributedLockService distributedLockService;
 
     @Autowired(required = false)
     private RedisTemplate<String, Object> redisTemplate;
 
     @Override
     public Category getCategoryById(Long id) {
+        Category local = localCacheService.get(LocalCacheService.CATEGORY, id);
+        if (local != null) return local;
         if (redisTemplate != null) {
             @SuppressWarnings("unchecked")
             Category cached = (Category) redisTemplate.opsForValue().get(CACHE_CATEGORY_ID + id);
-            if (cached != null) return cached;
+            if (cached != null) {
+                localCacheService.put(LocalCacheService.CATEGORY, id, cached);
+                return cached;
+            }
         }
         LambdaQueryWrapper<Category> wrapper = new LambdaQueryWrapper<>();
         wrapper.eq(Category::getId, id);
         Category category = getOne(wrapper);
-        if (category != null && redisTemplate != null) {
-            redisTemplate.opsForValue().set(CACHE_CATEGORY_ID + id, category, CACHE_TTL_MINUTES, TimeUnit.MINUTES);
+        if (category != null) {
+            localCacheService.put(LocalCacheService.CATEGORY, id, category);
+            if (redisTemplate != null) {
+                redisTemplate.opsForValue().set(CACHE_CATEGORY_ID + id, category, CACHE_TTL_MINUTES, TimeUnit.MINUTES);
+            }
         }
         return category;
     }
@@ -75,9 +104,7 @@ public class CategoryServiceImpl extends ServiceImpl<CategoryMapper, Category> i
         boolean result = updateById(category);
         if (result) {
             evictCategoryCache();
-            if (category.getId() != null && redisTemplate != null) {
-                redisTemplate.delete(CACHE_CATEGORY_ID + category.getId());
-            }
+            evictCategoryById(category.getId());
         }
         return result;
     }
@@ -87,9 +114,7 @@ public class CategoryServiceImpl extends ServiceImpl<CategoryMapper, Category> i
         boolean result = removeById(id);
         if (result) {
             evictCategoryCache();
-            if (redisTemplate != null) {
-                redisTemplate.delete(CACHE_CATEGORY_ID + id);
-            }
+            evictCategoryById(id);
         }
         return result;
     }
@@ -97,17 +122,45 @@ public class CategoryServiceImpl extends ServiceImpl<CategoryMapper, Category> i
     @Override
     public boolean deleteBatchCategories(List<Long> ids) {
         boolean result = removeByIds(ids);
-        if (result) evictCategoryCache();
+        if (result) {
+            evictCategoryCache();
+            ids.forEach(this::evictCategoryById);
+        }
         return result;
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public List<Category> listAll() {
-        if (redisTemplate != null) {
-            List<Category> cached = (List<Category>) redisTemplate.opsForValue().get(CACHE_CATEGORY_ALL);
-            if (cached != null) return cached;
+        listReadMarker.mark(redisTemplate);
+        List<Category> cached = readListCache();
+        if (cached != null) return cached;
+        // Only one caller per node rebuilds; concurrent callers wait for its result
+        return singleFlight.execute(CACHE_CATEGORY_ALL, () -> {
+            List<Category> rebuilt = readListCache();
+            return rebuilt != null ? rebuilt : loadListCache();
+        });
+    }
+
+    @Override
+    public boolean refreshListCacheAhead() {
+        if (redisTemplate == null) return false;
+        Long ttl = redisTemplate.getExpire(CACHE_CATEGORY_ALL, TimeUnit.SECONDS);
+        if (ttl == null || ttl < 0 || ttl > REFRESH_AHEAD_SECONDS) return false;
+        // A refresh resets the TTL itself, so hotness is judged by reads, not by the key still existing
+        if (!listReadMarker.wasRead(redisTemplate)) return false;
+        try (DistributedLockService.Lock lock = distributedLockService.tryLock(REFRESH_LOCK_KEY, Duration.ZERO)) {
+            if (lock == null) return false;
+            singleFlight.execute(CACHE_CATEGORY_ALL, this::loadListCache);
+            return true;
         }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Category> readListCache() {
+        return redisTemplate != null ? (List<Category>) redisTemplate.opsForValue().get(CACHE_CATEGORY_ALL) : null;
+    }
+
+    private List<Category> loadListCache() {
         LambdaQueryWrapper<Category> wrapper = new LambdaQueryWrapper<>();
         wrapper.orderByDesc(Category::getCreateTime);
         List<Category> categories = list(wrapper);
@@ -122,4 +175,15 @@ public class CategoryServiceImpl extends ServiceImpl<CategoryMapper, Category> i
             redisTemplate.delete(CACHE_CATEGORY_ALL);
         }
     }
+
+    /**
+     * 失效单个分类的 Redis 缓存和所有节点的本地缓存
+     */
+    private void evictCategoryById(Long id) {
+        if (id == null) return;
+        if (redisTemplate != null) {
+            redisTemplate.delete(CACHE_CATEGORY_ID + id);
+        }
+        localCacheService.evict(LocalCacheService.CATEGORY, id);
+    }
 }
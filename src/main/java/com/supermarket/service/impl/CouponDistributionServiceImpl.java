@@ -0,0 +1,213 @@
+package com.supermarket.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.supermarket.entity.CouponDistribution;
+import com.supermarket.entity.User;
+import com.supermarket.enums.CouponStatus;
+import com.supermarket.mapper.CouponDistributionMapper;
+import com.supermarket.mapper.UserCouponMapper;
+import com.supermarket.service.CouponDistributionService;
+import com.supermarket.service.DistributedLockService;
+import com.supermarket.service.UserService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CouponDistributionServiceImpl extends ServiceImpl<CouponDistributionMapper, CouponDistribution>
+        implements CouponDistributionService {
+
+    private static final String LOCK_PREFIX = "lock:coupon-distribution:";
+    private static final int MAX_ERROR_LENGTH = 255;
+
+    private final UserService userService;
+    private final UserCouponMapper userCouponMapper;
+    private final DistributedLockService distributedLockService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${coupon.distribution.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${coupon.distribution.worker-threads:1}")
+    private int workerThreads;
+
+    /** 本节点已提交、尚未结束的任务，避免重复提交 */
+    private final Set<Long> submitted = ConcurrentHashMap.newKeySet();
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger seq = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "coupon-distribution-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        resumeRunning();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public CouponDistribution start(Long couponId) {
+        CouponDistribution job = getActive(couponId);
+        if (job == null) {
+            job = new CouponDistribution();
+            job.setCouponId(couponId);
+            job.setActiveCouponId(couponId);
+            job.setStatus(STATUS_RUNNING);
+            job.setLastUserId(0L);
+            job.setDistributedCount(0L);
+            job.setTotalUsers(userService.count());
+            try {
+                save(job);
+            } catch (DuplicateKeyException e) {
+                // Started concurrently (possibly on another node); join that job
+                job = getActive(couponId);
+                if (job == null) throw new RuntimeException("发放任务创建失败，请重试");
+            }
+        }
+        if (STATUS_FAILED.equals(job.getStatus())) {
+            lambdaUpdate().eq(CouponDistribution::getId, job.getId())
+                    .set(CouponDistribution::getStatus, STATUS_RUNNING)
+                    .set(CouponDistribution::getError, null)
+                    .update();
+            job.setStatus(STATUS_RUNNING);
+            job.setError(null);
+        }
+        submit(job.getId());
+        return job;
+    }
+
+    @Override
+    public CouponDistribution getProgress(Long id) {
+        return getById(id);
+    }
+
+    @Override
+    public int resumeRunning() {
+        List<CouponDistribution> running = list(new LambdaQueryWrapper<CouponDistribution>()
+                .eq(CouponDistribution::getStatus, STATUS_RUNNING)
+                .select(CouponDistribution::getId));
+        int count = 0;
+        for (CouponDistribution job : running) {
+            if (submit(job.getId())) count++;
+        }
+        return count;
+    }
+
+    private CouponDistribution getActive(Long couponId) {
+        return getOne(new LambdaQueryWrapper<CouponDistribution>()
+                .eq(CouponDistribution::getActiveCouponId, couponId));
+    }
+
+    private boolean submit(Long id) {
+        if (!submitted.add(id)) return false;
+        executor.execute(() -> {
+            try {
+                run(id);
+            } finally {
+                submitted.remove(id);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 持有任务锁逐批发放；锁被其他节点持有时说明任务正在别处执行，直接返回
+     */
+    private void run(Long id) {
+        try (DistributedLockService.Lock lock = distributedLockService.tryLock(LOCK_PREFIX + id, Duration.ZERO)) {
+            if (lock == null) return;
+            CouponDistribution job = getById(id);
+            if (job == null || !STATUS_RUNNING.equals(job.getStatus())) return;
+            long cursor = job.getLastUserId() != null ? job.getLastUserId() : 0L;
+            long startedAt = System.currentTimeMillis();
+            try {
+                while (lock.isHeld() && !Thread.currentThread().isInterrupted()) {
+                    Long next = distributeBatch(job, cursor);
+                    if (next == null) break;
+                    cursor = next;
+                }
+                if (!lock.isHeld() || Thread.currentThread().isInterrupted()) {
+                    log.warn("优惠券发放任务中断，将从游标处续发: id={}, lastUserId={}", id, cursor);
+                    return;
+                }
+                lambdaUpdate().eq(CouponDistribution::getId, id)
+                        .set(CouponDistribution::getStatus, STATUS_DONE)
+                        .set(CouponDistribution::getActiveCouponId, null)
+                        .update();
+                log.info("优惠券发放完成: id={}, couponId={}, 耗时 {} ms",
+                        id, job.getCouponId(), System.currentTimeMillis() - startedAt);
+            } catch (OwnershipLostException e) {
+                // Another runner owns the job now; leave its status alone
+                log.warn("优惠券发放任务游标已被其他执行者推进，本批已回滚: id={}, lastUserId={}", id, cursor);
+            } catch (RuntimeException e) {
+                log.error("优惠券发放失败: id={}, lastUserId={}", id, cursor, e);
+                String error = String.valueOf(e.getMessage());
+                lambdaUpdate().eq(CouponDistribution::getId, id)
+                        .set(CouponDistribution::getStatus, STATUS_FAILED)
+                        .set(CouponDistribution::getError,
+                                error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error)
+                        .update();
+            }
+        }
+    }
+
+    /**
+     * 发放一批：读取游标后的一批用户ID，一条多行 INSERT 写入，并在同一事务中推进游标
+     * 游标推进失败说明任务已不归本执行者（锁过期后被其他节点接管，或任务已结束），整批回滚
+     * @return 新游标；没有更多用户时返回 null
+     * @throws OwnershipLostException 游标已被推进
+     */
+    private Long distributeBatch(CouponDistribution job, long cursor) {
+        return transactionTemplate.execute(status -> {
+            List<Long> userIds = userService.listObjs(new LambdaQueryWrapper<User>()
+                    .select(User::getId)
+                    .gt(User::getId, cursor)
+                    .orderByAsc(User::getId)
+                    .last("LIMIT " + batchSize), id -> ((Number) id).longValue());
+            if (userIds.isEmpty()) return null;
+            long last = userIds.get(userIds.size() - 1);
+            userCouponMapper.insertForUsers(job.getCouponId(), CouponStatus.AVAILABLE, userIds);
+            if (baseMapper.advance(job.getId(), cursor, last, userIds.size()) == 0) {
+                throw new OwnershipLostException();
+            }
+            return userIds.size() < batchSize ? null : last;
+        });
+    }
+
+    /**
+     * 游标已被其他执行者推进，抛出以回滚当前批次
+     */
+    private static class OwnershipLostException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        OwnershipLostException() {
+            super(null, null, false, false);
+        }
+    }
+}
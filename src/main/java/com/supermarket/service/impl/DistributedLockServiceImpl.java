@@ -0,0 +1,294 @@
+package com.supermarket.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.supermarket.service.DistributedLockService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Slf4j
+@Service
+public class DistributedLockServiceImpl implements DistributedLockService {
+
+    /** 锁释放通知频道，消息体为被释放的 key */
+    public static final String RELEASE_CHANNEL = "lock:released";
+
+    private static final long MIN_BACKOFF_MILLIS = 5;
+    private static final long MAX_BACKOFF_MILLIS = 100;
+
+    /**
+     * 加锁：KEYS=锁；ARGV[1]=持有者令牌，ARGV[2]=租期毫秒。任一 key 已被占用则全部不加
+     */
+    private static final RedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #KEYS do\n"
+            + "  if redis.call('EXISTS', KEYS[i]) == 1 then return 0 end\n"
+            + "end\n"
+            + "for i = 1, #KEYS do\n"
+            + "  redis.call('SET', KEYS[i], ARGV[1], 'PX', ARGV[2])\n"
+            + "end\n"
+            + "return 1", Long.class);
+
+    /**
+     * 释放：只删除令牌匹配的 key，并发布释放通知；ARGV[1]=持有者令牌，ARGV[2]=通知频道
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "local released = 0\n"
+            + "for i = 1, #KEYS do\n"
+            + "  if redis.call('GET', KEYS[i]) == ARGV[1] then\n"
+            + "    redis.call('DEL', KEYS[i])\n"
+            + "    redis.call('PUBLISH', ARGV[2], KEYS[i])\n"
+            + "    released = released + 1\n"
+            + "  end\n"
+            + "end\n"
+            + "return released", Long.class);
+
+    /**
+     * 续期：全部 key 仍由该令牌持有时才延长租期；ARGV[1]=持有者令牌，ARGV[2]=租期毫秒
+     */
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #KEYS do\n"
+            + "  if redis.call('GET', KEYS[i]) ~= ARGV[1] then return 0 end\n"
+            + "end\n"
+            + "for i = 1, #KEYS do\n"
+            + "  redis.call('PEXPIRE', KEYS[i], ARGV[2])\n"
+            + "end\n"
+            + "return 1", Long.class);
+
+    private static final StringRedisSerializer STRING_SERIALIZER = new StringRedisSerializer();
+
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${lock.lease-millis:10000}")
+    private long leaseMillis;
+
+    /**
+     * 每个 key 一个本节点的排队闸门（弱引用，没有线程持有或等待时自动回收）
+     */
+    private final Cache<String, Gate> gates = Caffeine.newBuilder().weakValues().build();
+
+    private final ScheduledThreadPoolExecutor watchdog = createWatchdog();
+
+    private static final class Gate {
+        /** 公平信号量：本节点同一 key 的竞争者按到达顺序排队，只有队首去 Redis 竞争 */
+        final Semaphore local = new Semaphore(1, true);
+        private long releases;
+
+        synchronized long releases() {
+            return releases;
+        }
+
+        synchronized void signal() {
+            releases++;
+            notifyAll();
+        }
+
+        synchronized void await(long seen, long millis) throws InterruptedException {
+            if (releases == seen) {
+                wait(millis);
+            }
+        }
+    }
+
+    @Override
+    public Lock tryLock(String key, Duration wait) {
+        return tryLockAll(List.of(key), wait);
+    }
+
+    @Override
+    public Lock tryLockAll(Collection<String> keys, Duration wait) {
+        List<String> sorted = new ArrayList<>(new TreeSet<>(keys));
+        if (sorted.isEmpty()) {
+            throw new IllegalArgumentException("锁的 key 不能为空");
+        }
+        String name = metricName(sorted.get(0));
+        long start = System.nanoTime();
+        long deadline = start + wait.toNanos();
+
+        List<Gate> held = new ArrayList<>(sorted.size());
+        boolean acquired = false;
+        try {
+            for (String key : sorted) {
+                Gate gate = gates.get(key, k -> new Gate());
+                if (!gate.local.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    return null;
+                }
+                held.add(gate);
+            }
+            String token = UUID.randomUUID().toString();
+            if (redisTemplate != null && !acquireRemote(sorted, token, held.get(0), deadline)) {
+                return null;
+            }
+            acquired = true;
+            return new HeldLock(sorted, token, held, name);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            recordWait(name, start, acquired);
+            if (!acquired) {
+                held.forEach(g -> g.local.release());
+            }
+        }
+    }
+
+    @Override
+    public void onReleased(String key) {
+        Gate gate = gates.getIfPresent(key);
+        if (gate != null) {
+            gate.signal();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * 在截止时间前反复尝试：收到释放通知立即重试，否则按指数退避重试（通知丢失时兜底）
+     */
+    private boolean acquireRemote(List<String> keys, String token, Gate gate, long deadline) throws InterruptedException {
+        long backoff = MIN_BACKOFF_MILLIS;
+        while (true) {
+            long seen = gate.releases();
+            if (runScript(ACQUIRE_SCRIPT, keys, token, leaseMillis) == 1L) {
+                return true;
+            }
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return false;
+            }
+            gate.await(seen, Math.min(remaining, backoff));
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    private final class HeldLock implements Lock {
+
+        private final List<String> keys;
+        private final String token;
+        private final List<Gate> gates;
+        private final String name;
+        private final long acquiredAt = System.nanoTime();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final ScheduledFuture<?> renewal;
+        private volatile boolean held = true;
+
+        HeldLock(List<String> keys, String token, List<Gate> gates, String name) {
+            this.keys = keys;
+            this.token = token;
+            this.gates = gates;
+            this.name = name;
+            long period = Math.max(1, leaseMillis / 3);
+            this.renewal = redisTemplate != null
+                    ? watchdog.scheduleAtFixedRate(this::renew, period, period, TimeUnit.MILLISECONDS)
+                    : null;
+        }
+
+        private void renew() {
+            try {
+                if (runScript(RENEW_SCRIPT, keys, token, leaseMillis) != 1L) {
+                    held = false;
+                    renewal.cancel(false);
+                    log.warn("锁已丢失，停止续期: keys={}", keys);
+                }
+            } catch (RuntimeException e) {
+                // Transient Redis error: the lease still has two thirds left, try again next period
+                log.warn("锁续期失败: keys={}, {}", keys, e.getMessage());
+            }
+        }
+
+        @Override
+        public boolean isHeld() {
+            return held && !closed.get();
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) return;
+            try {
+                if (renewal != null) {
+                    renewal.cancel(false);
+                    runScript(RELEASE_SCRIPT, keys, token, RELEASE_CHANNEL);
+                }
+            } catch (RuntimeException e) {
+                log.warn("释放锁失败，等待租期到期: keys={}, {}", keys, e.getMessage());
+            } finally {
+                for (Gate gate : gates) {
+                    gate.local.release();
+                    gate.signal();
+                }
+                if (meterRegistry != null) {
+                    meterRegistry.timer("lock.hold", "name", name)
+                            .record(System.nanoTime() - acquiredAt, TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+    }
+
+    /**
+     * 指标 lock.wait{name, outcome}、lock.hold{name}；name 为去掉末尾数字ID的 key，避免标签基数失控
+     */
+    private void recordWait(String name, long start, boolean acquired) {
+        if (meterRegistry != null) {
+            Timer.builder("lock.wait").tag("name", name).tag("outcome", acquired ? "acquired" : "timeout")
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static String metricName(String key) {
+        int sep = key.lastIndexOf(':');
+        return sep > 0 && key.substring(sep + 1).chars().allMatch(Character::isDigit) ? key.substring(0, sep) : key;
+    }
+
+    /**
+     * 脚本参数统一按字符串序列化（值序列化器为 JSON，会给字符串加引号）
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private long runScript(RedisScript<Long> script, List<String> keys, Object... args) {
+        Object[] stringArgs = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            stringArgs[i] = String.valueOf(args[i]);
+        }
+        Long result = (Long) redisTemplate.execute((RedisScript) script, STRING_SERIALIZER,
+                (RedisSerializer) STRING_SERIALIZER, keys, stringArgs);
+        return result != null ? result : 0L;
+    }
+
+    private static ScheduledThreadPoolExecutor createWatchdog() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "lock-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+}
@@ -0,0 +1,66 @@
+package com.supermarket.service.impl;
+
+import com.supermarket.entity.Coupon;
+import com.supermarket.entity.Product;
+import com.supermarket.entity.Store;
+import com.supermarket.entity.User;
+import com.supermarket.service.CouponService;
+import com.supermarket.service.EntityLookupService;
+import com.supermarket.service.ProductService;
+import com.supermarket.service.StoreService;
+import com.supermarket.service.UserService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+public class EntityLookupServiceImpl implements EntityLookupService {
+
+    private final UserService userService;
+    private final ProductService productService;
+    private final StoreService storeService;
+    private final CouponService couponService;
+
+    @Override
+    public <T> Map<Long, User> getUserMap(Collection<T> rows, Function<T, Long> userIdGetter) {
+        List<Long> ids = collectIds(rows, userIdGetter);
+        return ids.isEmpty() ? Collections.emptyMap() : toMap(userService.listByIds(ids), User::getId);
+    }
+
+    @Override
+    public <T> Map<Long, Product> getProductMap(Collection<T> rows, Function<T, Long> productIdGetter) {
+        return productService.getProductMapByIds(collectIds(rows, productIdGetter));
+    }
+
+    @Override
+    public <T> Map<Long, Store> getStoreMap(Collection<T> rows, Function<T, Long> storeIdGetter) {
+        List<Long> ids = collectIds(rows, storeIdGetter);
+        return ids.isEmpty() ? Collections.emptyMap() : toMap(storeService.listByIds(ids), Store::getId);
+    }
+
+    @Override
+    public <T> Map<Long, Coupon> getCouponMap(Collection<T> rows, Function<T, Long> couponIdGetter) {
+        List<Long> ids = collectIds(rows, couponIdGetter);
+        return ids.isEmpty() ? Collections.emptyMap() : toMap(couponService.listByIds(ids), Coupon::getId);
+    }
+
+    private static <T> List<Long> collectIds(Collection<T> rows, Function<T, Long> idGetter) {
+        return rows.stream()
+                .map(idGetter)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    private static <E> Map<Long, E> toMap(List<E> entities, Function<E, Long> idGetter) {
+        return entities.stream().collect(Collectors.toMap(idGetter, e -> e, (a, b) -> a));
+    }
+}
@@ -0,0 +1,153 @@
+package com.supermarket.service.impl;
+
+import com.alibaba.excel.EasyExcel;
+import com.alibaba.excel.ExcelWriter;
+import com.alibaba.excel.write.metadata.WriteSheet;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.supermarket.entity.Order;
+import com.supermarket.entity.Product;
+import com.supermarket.entity.StoreProduct;
+import com.supermarket.entity.StoreProductExcelDTO;
+import com.supermarket.entity.User;
+import com.supermarket.service.ExcelExportService;
+import com.supermarket.service.OrderService;
+import com.supermarket.service.ProductService;
+import com.supermarket.service.StoreProductService;
+import com.supermarket.service.UserService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+public class ExcelExportServiceImpl implements ExcelExportService {
+
+    private final ProductService productService;
+    private final UserService userService;
+    private final OrderService orderService;
+    private final StoreProductService storeProductService;
+
+    @Value("${excel.export.batch-size:1000}")
+    private int batchSize;
+
+    @Override
+    public void exportProducts(OutputStream out, LocalDate startDate, LocalDate endDate) {
+        writeInBatches(out, Product.class, "商品", productService,
+                w -> applyDateRange(w, Product::getCreateTime, startDate, endDate),
+                Product::getId, Function.identity());
+    }
+
+    @Override
+    public void exportUsers(OutputStream out, LocalDate startDate, LocalDate endDate) {
+        writeInBatches(out, User.class, "用户", userService,
+                w -> applyDateRange(w, User::getCreateTime, startDate, endDate),
+                User::getId, Function.identity());
+    }
+
+    @Override
+    public void exportOrders(OutputStream out, Long storeId, LocalDate startDate, LocalDate endDate) {
+        writeInBatches(out, Order.class, "订单", orderService,
+                w -> {
+                    w.eq(storeId != null, Order::getStoreId, storeId);
+                    applyDateRange(w, Order::getCreateTime, startDate, endDate);
+                },
+                Order::getId, Function.identity());
+    }
+
+    @Override
+    public void exportStoreProducts(OutputStream out, Long storeId, String productName,
+                                    LocalDate startDate, LocalDate endDate) {
+        List<Long> productIds = null;
+        if (productName != null && !productName.isBlank()) {
+            productIds = productService.list(new LambdaQueryWrapper<Product>()
+                            .like(Product::getName, productName.trim())
+                            .select(Product::getId))
+                    .stream().map(Product::getId).collect(Collectors.toList());
+            if (productIds.isEmpty()) {
+                EasyExcel.write(out, StoreProductExcelDTO.class).sheet("店铺商品").doWrite(new ArrayList<>());
+                return;
+            }
+        }
+        List<Long> filterIds = productIds;
+        writeInBatches(out, StoreProductExcelDTO.class, "店铺商品", storeProductService,
+                w -> {
+                    w.eq(storeId != null, StoreProduct::getStoreId, storeId)
+                     .in(filterIds != null, StoreProduct::getProductId, filterIds);
+                    applyDateRange(w, StoreProduct::getCreateTime, startDate, endDate);
+                },
+                StoreProduct::getId, this::toStoreProductExcelRows);
+    }
+
+    /**
+     * 按主键分批读取并逐批写入同一个工作表；每批查询都是 id > lastId 的索引范围扫描，不做 OFFSET，也不统计总数
+     */
+    private <T, R> void writeInBatches(OutputStream out, Class<R> headClass, String sheetName, IService<T> service,
+                                       Consumer<LambdaQueryWrapper<T>> filter, SFunction<T, Long> idColumn,
+                                       Function<List<T>, List<R>> converter) {
+        try (ExcelWriter writer = EasyExcel.write(out, headClass).build()) {
+            WriteSheet sheet = EasyExcel.writerSheet(sheetName).build();
+            long lastId = 0L;
+            boolean written = false;
+            while (true) {
+                LambdaQueryWrapper<T> wrapper = new LambdaQueryWrapper<>();
+                filter.accept(wrapper);
+                wrapper.gt(idColumn, lastId)
+                       .orderByAsc(idColumn)
+                       .last("LIMIT " + batchSize);
+                List<T> rows = service.list(wrapper);
+                if (rows.isEmpty()) {
+                    break;
+                }
+                writer.write(converter.apply(rows), sheet);
+                written = true;
+                if (rows.size() < batchSize) {
+                    break;
+                }
+                lastId = idColumn.apply(rows.get(rows.size() - 1));
+            }
+            if (!written) {
+                // 没有数据时也输出表头
+                writer.write(new ArrayList<R>(), sheet);
+            }
+        }
+    }
+
+    private <T> void applyDateRange(LambdaQueryWrapper<T> wrapper, SFunction<T, LocalDateTime> createTimeColumn,
+                                    LocalDate startDate, LocalDate endDate) {
+        wrapper.ge(startDate != null, createTimeColumn, startDate != null ? startDate.atStartOfDay() : null)
+               .lt(endDate != null, createTimeColumn, endDate != null ? endDate.plusDays(1).atStartOfDay() : null);
+    }
+
+    private List<StoreProductExcelDTO> toStoreProductExcelRows(List<StoreProduct> storeProducts) {
+        Map<Long, Product> productMap = productService.getProductMapByIds(
+                storeProducts.stream().map(StoreProduct::getProductId).collect(Collectors.toList()));
+        List<StoreProductExcelDTO> dtoList = new ArrayList<>(storeProducts.size());
+        for (StoreProduct sp : storeProducts) {
+            StoreProductExcelDTO dto = new StoreProductExcelDTO();
+            dto.setStoreId(sp.getStoreId());
+            dto.setStorePrice(sp.getStorePrice());
+            dto.setStoreStock(sp.getStoreStock());
+            dto.setSafetyStock(sp.getSafetyStock());
+            dto.setStatus(sp.getStatus());
+            Product product = productMap.get(sp.getProductId());
+            if (product != null) {
+                dto.setBarcode(product.getBarcode());
+                dto.setProductName(product.getName());
+            }
+            dtoList.add(dto);
+        }
+        return dtoList;
+    }
+}
@@ -0,0 +1,293 @@
+package com.supermarket.service.impl;
+
+import com.alibaba.excel.EasyExcel;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.supermarket.common.ChunkedReadListener;
+import com.supermarket.common.ChunkedReadListener.Row;
+import com.supermarket.entity.Product;
+import com.supermarket.entity.Store;
+import com.supermarket.entity.StoreProduct;
+import com.supermarket.entity.StoreProductExcelDTO;
+import com.supermarket.entity.User;
+import com.supermarket.service.ExcelImportService;
+import com.supermarket.service.ProductService;
+import com.supermarket.service.StoreProductService;
+import com.supermarket.service.StoreService;
+import com.supermarket.service.UserService;
+import com.supermarket.vo.ImportResultVO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExcelImportServiceImpl implements ExcelImportService {
+
+    private static final int STATUS_ON_SHELF = 1;
+
+    private final ProductService productService;
+    private final UserService userService;
+    private final StoreService storeService;
+    private final StoreProductService storeProductService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${excel.import.chunk-size:1000}")
+    private int chunkSize;
+
+    @Override
+    public ImportResultVO importProducts(InputStream in) {
+        ImportResultVO result = new ImportResultVO();
+        read(in, Product.class, result, rows -> importProductChunk(rows, result));
+        return result;
+    }
+
+    @Override
+    public ImportResultVO importUsers(InputStream in) {
+        ImportResultVO result = new ImportResultVO();
+        read(in, User.class, result, rows -> importUserChunk(rows, result));
+        return result;
+    }
+
+    @Override
+    public ImportResultVO importStoreProducts(InputStream in) {
+        ImportResultVO result = new ImportResultVO();
+        read(in, StoreProductExcelDTO.class, result, rows -> importStoreProductChunk(rows, result));
+        return result;
+    }
+
+    private <T> void read(InputStream in, Class<T> head, ImportResultVO result, Consumer<List<Row<T>>> chunkHandler) {
+        EasyExcel.read(in, head, new ChunkedReadListener<>(chunkSize, chunkHandler, result::addError))
+                .sheet().doRead();
+    }
+
+    private void importProductChunk(List<Row<Product>> rows, ImportResultVO result) {
+        Set<String> barcodes = rows.stream().map(r -> trimToNull(r.data().getBarcode()))
+                .filter(Objects::nonNull).collect(Collectors.toSet());
+        Set<String> existing = barcodes.isEmpty() ? Set.of() : productService.list(new LambdaQueryWrapper<Product>()
+                        .in(Product::getBarcode, barcodes).select(Product::getBarcode))
+                .stream().map(Product::getBarcode).collect(Collectors.toSet());
+
+        Set<String> seen = new HashSet<>();
+        List<Row<Product>> valid = new ArrayList<>();
+        for (Row<Product> row : rows) {
+            Product p = row.data();
+            String barcode = trimToNull(p.getBarcode());
+            String error = null;
+            if (trimToNull(p.getName()) == null) {
+                error = "商品名称不能为空";
+            } else if (p.getPrice() == null || p.getPrice().compareTo(BigDecimal.ZERO) <= 0) {
+                error = "商品价格必须大于零";
+            } else if (p.getStock() != null && p.getStock() < 0) {
+                error = "库存数量不能为负数";
+            } else if (barcode != null && existing.contains(barcode)) {
+                error = "商品条码已存在：" + barcode;
+            } else if (barcode != null && !seen.add(barcode)) {
+                error = "商品条码在文件中重复：" + barcode;
+            }
+            if (error != null) {
+                result.addError(row.rowNumber(), error);
+                continue;
+            }
+            p.setId(null);
+            p.setName(p.getName().trim());
+            p.setBarcode(barcode);
+            valid.add(row);
+        }
+        persist(valid, result, () -> productService.addProductsBatch(dataOf(valid)));
+    }
+
+    private void importUserChunk(List<Row<User>> rows, ImportResultVO result) {
+        Set<String> usernames = rows.stream().map(r -> trimToNull(r.data().getUsername()))
+                .filter(Objects::nonNull).collect(Collectors.toSet());
+        Set<String> existing = usernames.isEmpty() ? Set.of() : userService.list(new LambdaQueryWrapper<User>()
+                        .in(User::getUsername, usernames).select(User::getUsername))
+                .stream().map(User::getUsername).collect(Collectors.toSet());
+
+        Set<String> seen = new HashSet<>();
+        List<Row<User>> valid = new ArrayList<>();
+        for (Row<User> row : rows) {
+            User u = row.data();
+            String username = trimToNull(u.getUsername());
+            String error = null;
+            if (username == null) {
+                error = "用户名不能为空";
+            } else if (existing.contains(username)) {
+                error = "用户名已存在：" + username;
+            } else if (!seen.add(username)) {
+                error = "用户名在文件中重复：" + username;
+            }
+            if (error != null) {
+                result.addError(row.rowNumber(), error);
+                continue;
+            }
+            u.setId(null);
+            u.setUsername(username);
+            if (trimToNull(u.getPassword()) == null) {
+                // Excel carries no password column; nobody knows this one, so the account stays unusable
+                // until an administrator sets a password
+                u.setPassword(UUID.randomUUID().toString());
+            }
+            valid.add(row);
+        }
+        persist(valid, result, () -> userService.addUsersBatch(dataOf(valid)));
+    }
+
+    private void importStoreProductChunk(List<Row<StoreProductExcelDTO>> rows, ImportResultVO result) {
+        Set<Long> storeIds = rows.stream().map(r -> r.data().getStoreId())
+                .filter(Objects::nonNull).collect(Collectors.toSet());
+        Set<Long> knownStores = storeIds.isEmpty() ? Set.of() : storeService.listByIds(storeIds)
+                .stream().map(Store::getId).collect(Collectors.toSet());
+
+        Set<String> barcodes = new HashSet<>();
+        Set<String> names = new HashSet<>();
+        for (Row<StoreProductExcelDTO> row : rows) {
+            String barcode = trimToNull(row.data().getBarcode());
+            String name = trimToNull(row.data().getProductName());
+            if (barcode != null) barcodes.add(barcode);
+            if (name != null) names.add(name);
+        }
+        Map<String, Product> byBarcode = new HashMap<>();
+        if (!barcodes.isEmpty()) {
+            productService.list(new LambdaQueryWrapper<Product>().in(Product::getBarcode, barcodes))
+                    .forEach(p -> byBarcode.put(p.getBarcode(), p));
+        }
+        Map<String, Product> byName = new HashMap<>();
+        if (!names.isEmpty()) {
+            productService.list(new LambdaQueryWrapper<Product>().in(Product::getName, names).orderByAsc(Product::getId))
+                    .forEach(p -> byName.putIfAbsent(p.getName(), p));
+        }
+
+        // Unknown products already created by an earlier row of this chunk
+        Set<String> creating = new HashSet<>();
+        List<Row<StoreProductExcelDTO>> valid = new ArrayList<>();
+        for (Row<StoreProductExcelDTO> row : rows) {
+            StoreProductExcelDTO dto = row.data();
+            String barcode = trimToNull(dto.getBarcode());
+            String name = trimToNull(dto.getProductName());
+            boolean known = (barcode != null && byBarcode.containsKey(barcode)) || (name != null && byName.containsKey(name))
+                    || newProductKeys(barcode, name).stream().anyMatch(creating::contains);
+            String error = null;
+            if (dto.getStoreId() == null) {
+                error = "店铺ID不能为空";
+            } else if (!knownStores.contains(dto.getStoreId())) {
+                error = "店铺不存在：" + dto.getStoreId();
+            } else if (barcode == null && name == null) {
+                error = "商品条码和商品名称不能同时为空";
+            } else if (dto.getStoreStock() != null && dto.getStoreStock() < 0) {
+                error = "店铺库存不能为负数";
+            } else if (dto.getStorePrice() != null && dto.getStorePrice().compareTo(BigDecimal.ZERO) <= 0) {
+                error = "店铺售价必须大于零";
+            } else if (!known && dto.getStorePrice() == null) {
+                error = "商品不存在，新建商品需填写店铺售价";
+            }
+            if (error != null) {
+                result.addError(row.rowNumber(), error);
+                continue;
+            }
+            if (!known) creating.addAll(newProductKeys(barcode, name));
+            valid.add(row);
+        }
+        if (valid.isEmpty()) return;
+
+        try {
+            int merged = transactionTemplate.execute(status -> {
+                // Rows naming the same unknown product (by barcode or by name) share one new product
+                Map<String, Product> created = new HashMap<>();
+                List<Product> newProducts = new ArrayList<>();
+                List<StoreProduct> storeProducts = new ArrayList<>(valid.size());
+                List<Product> products = new ArrayList<>(valid.size());
+                for (Row<StoreProductExcelDTO> row : valid) {
+                    StoreProductExcelDTO dto = row.data();
+                    String barcode = trimToNull(dto.getBarcode());
+                    String name = trimToNull(dto.getProductName());
+                    Product product = barcode != null ? byBarcode.get(barcode) : null;
+                    if (product == null && name != null) product = byName.get(name);
+                    if (product == null) {
+                        List<String> keys = newProductKeys(barcode, name);
+                        product = keys.stream().map(created::get).filter(Objects::nonNull).findFirst().orElse(null);
+                        if (product == null) {
+                            product = new Product();
+                            product.setName(name != null ? name : barcode);
+                            product.setBarcode(barcode);
+                            product.setPrice(dto.getStorePrice());
+                            product.setStock(0);
+                            product.setStatus(STATUS_ON_SHELF);
+                            newProducts.add(product);
+                        }
+                        for (String key : keys) {
+                            created.putIfAbsent(key, product);
+                        }
+                    }
+                    StoreProduct sp = new StoreProduct();
+                    sp.setStoreId(dto.getStoreId());
+                    sp.setStorePrice(dto.getStorePrice());
+                    sp.setStoreStock(dto.getStoreStock());
+                    sp.setSafetyStock(dto.getSafetyStock());
+                    sp.setStatus(dto.getStatus());
+                    storeProducts.add(sp);
+                    products.add(product);
+                }
+                productService.addProductsBatch(newProducts);
+                for (int i = 0; i < storeProducts.size(); i++) {
+                    storeProducts.get(i).setProductId(products.get(i).getId());
+                }
+                return storeProductService.mergeBatch(storeProducts);
+            });
+            result.setMergedCount(result.getMergedCount() + merged);
+            result.setSuccessCount(result.getSuccessCount() + valid.size() - merged);
+        } catch (RuntimeException e) {
+            log.warn("店铺商品分块导入失败: {}", e.getMessage());
+            valid.forEach(row -> result.addError(row.rowNumber(), "写入失败：" + e.getMessage()));
+        }
+    }
+
+    /**
+     * 批量写入一个分块的有效行；写入失败时整块回滚，这些行全部记为失败
+     */
+    private <T> void persist(List<Row<T>> valid, ImportResultVO result, Runnable batchInsert) {
+        if (valid.isEmpty()) return;
+        try {
+            batchInsert.run();
+            result.setSuccessCount(result.getSuccessCount() + valid.size());
+        } catch (RuntimeException e) {
+            log.warn("分块导入失败: {}", e.getMessage());
+            valid.forEach(row -> result.addError(row.rowNumber(), "写入失败：" + e.getMessage()));
+        }
+    }
+
+    /**
+     * 待新建商品的去重键：条码和名称各一个，任一命中即视为同一商品（先按条码）
+     */
+    private static List<String> newProductKeys(String barcode, String name) {
+        List<String> keys = new ArrayList<>(2);
+        if (barcode != null) keys.add("b:" + barcode);
+        if (name != null) keys.add("n:" + name);
+        return keys;
+    }
+
+    private static <T> List<T> dataOf(List<Row<T>> rows) {
+        return rows.stream().map(Row::data).collect(Collectors.toList());
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) return null;
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+}
@@ -0,0 +1,369 @@
+package com.supermarket.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.supermarket.common.RedisScripts;
+import com.supermarket.entity.Product;
+import com.supermarket.entity.StoreProduct;
+import com.supermarket.mapper.StoreProductMapper;
+import com.supermarket.service.DistributedLockService;
+import com.supermarket.service.HotStockService;
+import com.supermarket.service.ProductService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HotStockServiceImpl implements HotStockService {
+
+    private static final String COUNTER_PREFIX = "stock:hot:";
+    private static final String PENDING_KEY = "stock:hot:pending";
+    /** 已从待回写量中取出、正在写入 MySQL 的扣减量；写入提交后删除，进程崩溃后由下一次回写重放 */
+    private static final String INFLIGHT_KEY = "stock:hot:inflight";
+    private static final String SKU_SET_KEY = "stock:hot:skus";
+    private static final String FLUSH_LOCK_KEY = "lock:stock:hot:flush";
+    /** 无店铺（总商品库存）在 key 中的 storeId */
+    private static final long NO_STORE_ID = 0L;
+
+    /**
+     * 预扣：KEYS[1]=待回写hash，KEYS[2..n+1]=计数器；ARGV[1..n]=数量，ARGV[n+1..2n]=hash字段
+     * 先校验全部热点计数器再统一扣减，返回预扣成功的下标；库存不足返回 {-下标}
+     */
+    private static final RedisScript<List<Long>> RESERVE_SCRIPT = RedisScripts.listScript(
+            "local n = #KEYS - 1\n"
+            + "local hot = {}\n"
+            + "for i = 1, n do\n"
+            + "  local stock = redis.call('GET', KEYS[i + 1])\n"
+            + "  if stock then\n"
+            + "    if tonumber(stock) < tonumber(ARGV[i]) then return {-i} end\n"
+            + "    hot[i] = true\n"
+            + "  end\n"
+            + "end\n"
+            + "local reserved = {}\n"
+            + "for i = 1, n do\n"
+            + "  if hot[i] then\n"
+            + "    redis.call('DECRBY', KEYS[i + 1], ARGV[i])\n"
+            + "    redis.call('HINCRBY', KEYS[1], ARGV[n + i], ARGV[i])\n"
+            + "    reserved[#reserved + 1] = i\n"
+            + "  end\n"
+            + "end\n"
+            + "return reserved");
+
+    /**
+     * 归还：KEYS[1]=计数器，KEYS[2]=待回写hash；ARGV[1]=数量，ARGV[2]=hash字段
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end\n"
+            + "redis.call('INCRBY', KEYS[1], ARGV[1])\n"
+            + "redis.call('HINCRBY', KEYS[2], ARGV[2], -tonumber(ARGV[1]))\n"
+            + "return 1", Long.class);
+
+    /**
+     * 把待回写量移入回写中hash：KEYS[1]=待回写hash，KEYS[2]=回写中hash；ARGV[1]=hash字段
+     * 返回回写中的总量（包括上次回写中断后遗留、需要重放的部分）
+     */
+    private static final RedisScript<Long> DRAIN_SCRIPT = new DefaultRedisScript<>(
+            "local v = tonumber(redis.call('HGET', KEYS[1], ARGV[1]) or '0')\n"
+            + "if v ~= 0 then\n"
+            + "  redis.call('HINCRBY', KEYS[1], ARGV[1], -v)\n"
+            + "  redis.call('HINCRBY', KEYS[2], ARGV[1], v)\n"
+            + "end\n"
+            + "return tonumber(redis.call('HGET', KEYS[2], ARGV[1]) or '0')", Long.class);
+
+    /**
+     * 回写事务回滚后把回写中的量放回待回写：KEYS[1]=待回写hash，KEYS[2]=回写中hash；ARGV[1]=hash字段，ARGV[2]=数量
+     */
+    private static final RedisScript<Long> RESTORE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HINCRBY', KEYS[2], ARGV[1], -tonumber(ARGV[2])) == 0 then redis.call('HDEL', KEYS[2], ARGV[1]) end\n"
+            + "redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2])\n"
+            + "return 1", Long.class);
+
+    /**
+     * 回写提交后清除回写中的量：KEYS[1]=回写中hash；ARGV[1]=hash字段，ARGV[2]=数量
+     */
+    private static final RedisScript<Long> COMMIT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HINCRBY', KEYS[1], ARGV[1], -tonumber(ARGV[2])) == 0 then redis.call('HDEL', KEYS[1], ARGV[1]) end\n"
+            + "return 1", Long.class);
+
+    /**
+     * 校准：KEYS[1]=计数器，KEYS[2]=待回写hash，KEYS[3]=回写中hash；ARGV[1]=数据库库存，ARGV[2]=hash字段，ARGV[3]=1 表示不存在时也写入
+     */
+    private static final RedisScript<Long> RECONCILE_SCRIPT = new DefaultRedisScript<>(
+            "if ARGV[3] ~= '1' and redis.call('EXISTS', KEYS[1]) == 0 then return -1 end\n"
+            + "local pending = tonumber(redis.call('HGET', KEYS[2], ARGV[2]) or '0')\n"
+            + "  + tonumber(redis.call('HGET', KEYS[3], ARGV[2]) or '0')\n"
+            + "local stock = tonumber(ARGV[1]) - pending\n"
+            + "redis.call('SET', KEYS[1], stock)\n"
+            + "return stock", Long.class);
+
+    private static final StringRedisSerializer STRING_SERIALIZER = new StringRedisSerializer();
+
+    private final ProductService productService;
+    private final StoreProductMapper storeProductMapper;
+    private final DistributedLockService distributedLockService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Override
+    public boolean enableHotSku(Long storeId, Long productId) {
+        if (redisTemplate == null || productId == null) return false;
+        Integer dbStock = loadDbStock(storeId, productId);
+        if (dbStock == null) return false;
+        String sku = skuOf(storeId, productId);
+        runScript(RECONCILE_SCRIPT, List.of(counterKey(sku), PENDING_KEY, INFLIGHT_KEY), dbStock, sku, 1);
+        redisTemplate.opsForSet().add(SKU_SET_KEY, sku);
+        log.info("开启热点库存: sku={}, stock={}", sku, dbStock);
+        return true;
+    }
+
+    @Override
+    public void disableHotSku(Long storeId, Long productId) {
+        if (redisTemplate == null || productId == null) return;
+        String sku = skuOf(storeId, productId);
+        // Remove the counter first so new orders fall back to SQL, then write back what is pending
+        redisTemplate.opsForSet().remove(SKU_SET_KEY, sku);
+        redisTemplate.delete(counterKey(sku));
+        flushSku(sku);
+        log.info("关闭热点库存: sku={}", sku);
+    }
+
+    @Override
+    public List<Map<String, Object>> listHotSkus() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        if (redisTemplate == null) return result;
+        Set<Object> skus = redisTemplate.opsForSet().members(SKU_SET_KEY);
+        if (skus == null) return result;
+        for (Object member : skus) {
+            String sku = member.toString();
+            String[] parts = sku.split(":");
+            long pending = toLong(redisTemplate.opsForHash().get(PENDING_KEY, sku))
+                    + toLong(redisTemplate.opsForHash().get(INFLIGHT_KEY, sku));
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("storeId", Long.parseLong(parts[0]));
+            item.put("productId", Long.parseLong(parts[1]));
+            item.put("stock", redisTemplate.opsForValue().get(counterKey(sku)));
+            item.put("pending", pending);
+            result.add(item);
+        }
+        return result;
+    }
+
+    @Override
+    public Set<Long> reserve(Long storeId, Map<Long, Integer> quantities) {
+        if (redisTemplate == null || quantities.isEmpty()) return Collections.emptySet();
+
+        List<Long> productIds = new ArrayList<>(quantities.keySet());
+        List<String> keys = new ArrayList<>();
+        keys.add(PENDING_KEY);
+        Object[] args = new Object[productIds.size() * 2];
+        for (int i = 0; i < productIds.size(); i++) {
+            String sku = skuOf(storeId, productIds.get(i));
+            keys.add(counterKey(sku));
+            args[i] = quantities.get(productIds.get(i));
+            args[productIds.size() + i] = sku;
+        }
+
+        List<Long> reservedIndexes = runScript(RESERVE_SCRIPT, keys, args);
+        if (reservedIndexes == null || reservedIndexes.isEmpty()) return Collections.emptySet();
+        if (reservedIndexes.get(0) < 0) {
+            throw new RuntimeException("商品库存不足");
+        }
+
+        Set<Long> reserved = new LinkedHashSet<>();
+        for (Long index : reservedIndexes) {
+            reserved.add(productIds.get(index.intValue() - 1));
+        }
+
+        // Give the stock back if the order transaction does not commit
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        reserved.forEach(pid -> runRelease(skuOf(storeId, pid), quantities.get(pid)));
+                    }
+                }
+            });
+        }
+        return reserved;
+    }
+
+    @Override
+    public boolean release(Long storeId, Long productId, int quantity) {
+        if (redisTemplate == null || productId == null || quantity <= 0) return false;
+        String sku = skuOf(storeId, productId);
+        if (!Boolean.TRUE.equals(redisTemplate.hasKey(counterKey(sku)))) return false;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    runRelease(sku, quantity);
+                }
+            });
+        } else {
+            runRelease(sku, quantity);
+        }
+        return true;
+    }
+
+    @Override
+    public int flushPending() {
+        if (redisTemplate == null) return 0;
+        try (DistributedLockService.Lock lock = distributedLockService.tryLock(FLUSH_LOCK_KEY, Duration.ZERO)) {
+            if (lock == null) return 0;
+            // In-flight fields left by an interrupted flush are replayed as well
+            Set<Object> skus = new LinkedHashSet<>(redisTemplate.opsForHash().keys(PENDING_KEY));
+            skus.addAll(redisTemplate.opsForHash().keys(INFLIGHT_KEY));
+            int flushed = 0;
+            for (Object field : skus) {
+                if (flushSku(field.toString())) flushed++;
+            }
+            return flushed;
+        }
+    }
+
+    @Override
+    public void reconcile(Long storeId, Long productId) {
+        if (redisTemplate == null || productId == null) return;
+        String sku = skuOf(storeId, productId);
+        if (!Boolean.TRUE.equals(redisTemplate.hasKey(counterKey(sku)))) return;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reconcileSku(sku);
+                }
+            });
+        } else {
+            reconcileSku(sku);
+        }
+    }
+
+    @Override
+    public int reconcileAll() {
+        if (redisTemplate == null) return 0;
+        Set<Object> skus = redisTemplate.opsForSet().members(SKU_SET_KEY);
+        if (skus == null) return 0;
+        int count = 0;
+        for (Object sku : skus) {
+            if (reconcileSku(sku.toString())) count++;
+        }
+        return count;
+    }
+
+    /**
+     * 计数器 = 数据库库存 - 待回写量；与回写任务共用一把锁，避免读到回写中间状态
+     */
+    private boolean reconcileSku(String sku) {
+        try (DistributedLockService.Lock lock = distributedLockService.tryLock(FLUSH_LOCK_KEY, Duration.ZERO)) {
+            if (lock == null) {
+                log.debug("热点库存回写中，跳过本次校准: sku={}", sku);
+                return false;
+            }
+            String[] parts = sku.split(":");
+            Integer dbStock = loadDbStock(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            if (dbStock == null) {
+                // The product or store product is gone; stop serving it from Redis
+                redisTemplate.opsForSet().remove(SKU_SET_KEY, sku);
+                redisTemplate.delete(counterKey(sku));
+                return false;
+            }
+            Long stock = runScript(RECONCILE_SCRIPT, List.of(counterKey(sku), PENDING_KEY, INFLIGHT_KEY), dbStock, sku, 0);
+            return stock != null && stock >= 0;
+        }
+    }
+
+    /**
+     * 取出某个热点商品的待回写扣减量，在一个事务中写入总商品库存和店铺库存
+     * 扣减量先移入回写中hash，提交后才删除：事务回滚时放回待回写，进程在提交前崩溃时由下一次回写重放
+     */
+    private boolean flushSku(String sku) {
+        Long delta = runScript(DRAIN_SCRIPT, List.of(PENDING_KEY, INFLIGHT_KEY), sku);
+        if (delta == null || delta == 0) return false;
+        String[] parts = sku.split(":");
+        long storeId = Long.parseLong(parts[0]);
+        Long productId = Long.parseLong(parts[1]);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                productService.adjustStock(productId, (int) -delta);
+                if (storeId != NO_STORE_ID) {
+                    storeProductMapper.adjustStoreStock(storeId, productId, (int) -delta);
+                }
+            });
+        } catch (RuntimeException e) {
+            runScript(RESTORE_SCRIPT, List.of(PENDING_KEY, INFLIGHT_KEY), sku, delta);
+            log.error("热点库存回写失败，已放回待回写队列: sku={}, delta={}", sku, delta, e);
+            return false;
+        }
+        // A crash before this line replays the delta on the next flush (stock can only end up lower, never oversold)
+        runScript(COMMIT_SCRIPT, List.of(INFLIGHT_KEY), sku, delta);
+        return true;
+    }
+
+    private void runRelease(String sku, int quantity) {
+        runScript(RELEASE_SCRIPT, List.of(counterKey(sku), PENDING_KEY), quantity, sku);
+    }
+
+    /**
+     * 读取数据库库存：有店铺时取店铺库存，否则取总商品库存
+     */
+    private Integer loadDbStock(Long storeId, Long productId) {
+        if (storeId == null || storeId == NO_STORE_ID) {
+            Product product = productService.getById(productId);
+            return product != null ? (product.getStock() != null ? product.getStock() : 0) : null;
+        }
+        StoreProduct sp = storeProductMapper.selectOne(new LambdaQueryWrapper<StoreProduct>()
+                .eq(StoreProduct::getStoreId, storeId)
+                .eq(StoreProduct::getProductId, productId));
+        return sp != null ? (sp.getStoreStock() != null ? sp.getStoreStock() : 0) : null;
+    }
+
+    /**
+     * 脚本参数统一按字符串序列化（值序列化器为 JSON，会给字符串加引号）
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private <T> T runScript(RedisScript<T> script, List<String> keys, Object... args) {
+        Object[] stringArgs = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            stringArgs[i] = String.valueOf(args[i]);
+        }
+        return (T) redisTemplate.execute((RedisScript) script, STRING_SERIALIZER, (RedisSerializer) STRING_SERIALIZER,
+                keys, stringArgs);
+    }
+
+    private static long toLong(Object value) {
+        return value != null ? Long.parseLong(value.toString()) : 0L;
+    }
+
+    private static String skuOf(Long storeId, Long productId) {
+        return (storeId != null ? storeId : NO_STORE_ID) + ":" + productId;
+    }
+
+    private static String counterKey(String sku) {
+        return COUNTER_PREFIX + sku;
+    }
+}
@@ -0,0 +1,324 @@
+package com.supermarket.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.supermarket.common.ImageCodec;
+import com.supermarket.config.CdnConfig;
+import com.supermarket.entity.ImageFile;
+import com.supermarket.mapper.ImageFileMapper;
+import com.supermarket.service.ImageService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImageServiceImpl extends ServiceImpl<ImageFileMapper, ImageFile> implements ImageService {
+
+    private static final int MAX_IMAGE_WIDTH = 1920;
+    private static final int MAX_IMAGE_HEIGHT = 1920;
+    private static final float JPEG_QUALITY = 0.8f;
+    private static final float THUMBNAIL_QUALITY = 0.7f;
+    private static final String ORIGINAL_SUFFIX = "_orig";
+    private static final List<String> ORIGINAL_EXTENSIONS = List.of(".jpg", ".jpeg", ".png", ".gif", ".webp");
+    /** 内容哈希（64位）或旧版 UUID（32位） */
+    private static final Pattern ID_PATTERN = Pattern.compile("^(?:[a-f0-9]{64}|[a-f0-9]{32})$");
+    /** 后台生成的压缩图 / 缩略图文件名 */
+    private static final Pattern PROCESSED_FILE = Pattern.compile("^([a-f0-9]{64}|[a-f0-9]{32})(_thumb_\\d+)?\\.jpg$");
+    private static final Pattern HASHED_FILE = Pattern.compile("^[a-f0-9]{64}[a-z0-9_]*\\.[a-z]+$");
+
+    private final CdnConfig cdnConfig;
+
+    @Value("${file.upload-dir:file}")
+    private String uploadDir;
+
+    @Value("${file.image.worker-threads:2}")
+    private int workerThreads;
+
+    @Value("${file.image.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${file.image.thumbnail-sizes:200,400}")
+    private int[] thumbnailSizes;
+
+    private Path uploadPath;
+    private Path tmpPath;
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        uploadPath = Paths.get(uploadDir).toAbsolutePath().normalize();
+        tmpPath = uploadPath.resolve("tmp");
+        try {
+            Files.createDirectories(tmpPath);
+        } catch (IOException e) {
+            throw new RuntimeException("创建上传目录失败：" + e.getMessage(), e);
+        }
+        thumbnailSizes = Arrays.stream(thumbnailSizes).sorted().distinct().toArray();
+        AtomicInteger seq = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "image-worker-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        resumeUnprocessed();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public Map<String, Object> upload(InputStream in, String extension) throws IOException {
+        // Hash while spooling to disk; the name is only known once the whole body is read
+        Path tmp = Files.createTempFile(tmpPath, "upload-", extension);
+        try {
+            String hash = copyAndHash(in, tmp);
+            ImageFile existing = getByHash(hash);
+            if (existing != null) {
+                if (STATUS_FAILED.equals(existing.getStatus())) {
+                    String error = existing.getError();
+                    updateStatus(existing, STATUS_PENDING, null);
+                    Map<String, Object> result = describe(existing);
+                    try {
+                        executor.execute(() -> process(existing));
+                    } catch (RejectedExecutionException ex) {
+                        // Nothing will pick it up; leave it FAILED so a later upload retries it
+                        updateStatus(existing, STATUS_FAILED, error);
+                        throw ex;
+                    }
+                    return result;
+                }
+                return describe(existing);
+            }
+
+            boolean gif = ".gif".equals(extension);
+            Path dir = shardDir(hash);
+            Files.createDirectories(dir);
+            // GIF is stored as-is (re-encoding would drop the animation)
+            Path target = dir.resolve(gif ? hash + extension : hash + ORIGINAL_SUFFIX + extension);
+            long size = Files.size(tmp);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            ImageFile image = new ImageFile();
+            image.setHash(hash);
+            image.setExtension(extension);
+            image.setSize(size);
+            image.setStatus(gif ? STATUS_DONE : STATUS_PENDING);
+            try {
+                save(image);
+            } catch (DuplicateKeyException e) {
+                // Same content uploaded concurrently; the other request owns processing
+                return describe(getByHash(hash));
+            }
+            Map<String, Object> result = describe(image);
+            if (!gif) {
+                try {
+                    executor.execute(() -> process(image));
+                } catch (RejectedExecutionException ex) {
+                    removeById(image.getId());
+                    Files.deleteIfExists(target);
+                    throw ex;
+                }
+            }
+            return result;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStatus(String id) {
+        if (id == null || !ID_PATTERN.matcher(id).matches()) return null;
+        if (id.length() == 64) {
+            ImageFile image = getByHash(id);
+            return image != null ? describe(image) : null;
+        }
+        // Legacy UUID uploads predate the index
+        if (Files.exists(uploadPath.resolve(id + ".gif"))) {
+            return describe(id, STATUS_DONE, id + ".gif", false, null);
+        }
+        if (Files.exists(uploadPath.resolve(id + ".jpg"))) {
+            return describe(id, STATUS_DONE, id + ".jpg", true, null);
+        }
+        return null;
+    }
+
+    @Override
+    public Path resolvePendingOriginal(String filename) {
+        Matcher m = PROCESSED_FILE.matcher(filename);
+        if (!m.matches() || Files.exists(locate(filename))) return null;
+        String id = m.group(1);
+        for (String ext : ORIGINAL_EXTENSIONS) {
+            Path candidate = shardDir(id).resolve(id + ORIGINAL_SUFFIX + ext);
+            if (Files.isRegularFile(candidate)) return candidate;
+        }
+        return null;
+    }
+
+    @Override
+    public Path locate(String filename) {
+        if (filename == null || filename.isBlank() || filename.contains("/") || filename.contains("\\")) {
+            return null;
+        }
+        Path dir = HASHED_FILE.matcher(filename).matches() ? shardDir(filename.substring(0, 64)) : uploadPath;
+        Path path = dir.resolve(filename).normalize();
+        return path.startsWith(uploadPath) ? path : null;
+    }
+
+    @Override
+    public List<String> listFileNames(int limit) {
+        return list(new LambdaQueryWrapper<ImageFile>()
+                .select(ImageFile::getHash, ImageFile::getExtension)
+                .orderByDesc(ImageFile::getId)
+                .last("LIMIT " + Math.max(1, limit)))
+                .stream().map(this::mainFileName).collect(Collectors.toList());
+    }
+
+    private ImageFile getByHash(String hash) {
+        return getOne(new LambdaQueryWrapper<ImageFile>().eq(ImageFile::getHash, hash));
+    }
+
+    /**
+     * {hash[0:2]}/{hash[2:4]}/，每层最多 256 个子目录，单目录文件数保持在数量级可控范围；旧 UUID 文件不分片
+     */
+    private Path shardDir(String id) {
+        if (id.length() != 64) return uploadPath;
+        return uploadPath.resolve(id.substring(0, 2)).resolve(id.substring(2, 4));
+    }
+
+    private static String copyAndHash(InputStream in, Path target) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (DigestInputStream din = new DigestInputStream(in, digest)) {
+            Files.copy(din, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private void updateStatus(ImageFile image, String status, String error) {
+        image.setStatus(status);
+        image.setError(error);
+        lambdaUpdate().eq(ImageFile::getId, image.getId())
+                .set(ImageFile::getStatus, status)
+                .set(ImageFile::getError, error)
+                .update();
+    }
+
+    private void process(ImageFile image) {
+        String id = image.getHash();
+        Path dir = shardDir(id);
+        try {
+            updateStatus(image, STATUS_PROCESSING, null);
+            BufferedImage source = ImageIO.read(dir.resolve(id + ORIGINAL_SUFFIX + image.getExtension()).toFile());
+            if (source == null) {
+                // Format without an ImageIO reader (e.g. webp): keep serving the original
+                updateStatus(image, STATUS_DONE, "无法解码，保留原图");
+                return;
+            }
+            ImageCodec.writeAtomically(ImageCodec.resize(source, MAX_IMAGE_WIDTH, MAX_IMAGE_HEIGHT),
+                    dir.resolve(id + ".jpg"), ImageCodec.JPEG, JPEG_QUALITY);
+            for (int size : thumbnailSizes) {
+                ImageCodec.writeAtomically(ImageCodec.resize(source, size, size),
+                        dir.resolve(thumbnailName(id, size)), ImageCodec.JPEG, THUMBNAIL_QUALITY);
+            }
+            updateStatus(image, STATUS_DONE, null);
+        } catch (Exception e) {
+            log.warn("图片处理失败: id={}, {}", id, e.getMessage());
+            try {
+                updateStatus(image, STATUS_FAILED, StringUtils.truncate(e.getMessage(), 255));
+            } catch (RuntimeException ex) {
+                log.warn("更新图片处理状态失败: id={}, {}", id, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 启动时重新提交上次停机前未处理完的图片（按索引状态查询，不扫描目录）
+     */
+    private void resumeUnprocessed() {
+        List<ImageFile> unfinished = list(new LambdaQueryWrapper<ImageFile>()
+                .in(ImageFile::getStatus, STATUS_PENDING, STATUS_PROCESSING));
+        for (ImageFile image : unfinished) {
+            try {
+                executor.execute(() -> process(image));
+            } catch (RejectedExecutionException e) {
+                log.warn("图片处理队列已满，剩余 {} 张未完成的图片留待下次启动", unfinished.size() - unfinished.indexOf(image));
+                return;
+            }
+        }
+    }
+
+    private String mainFileName(ImageFile image) {
+        return image.getHash() + (".gif".equals(image.getExtension()) ? ".gif" : ".jpg");
+    }
+
+    private Map<String, Object> describe(ImageFile image) {
+        boolean gif = ".gif".equals(image.getExtension());
+        return describe(image.getHash(), image.getStatus(), mainFileName(image), !gif, image.getError());
+    }
+
+    private Map<String, Object> describe(String id, String status, String filename, boolean withThumbnails, String error) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", id);
+        result.put("status", status);
+        result.put("url", cdnConfig.getFullUrl("/file/" + filename));
+        result.put("path", "/file/" + filename);
+        if (withThumbnails && thumbnailSizes.length > 0) {
+            Map<String, String> thumbnails = new LinkedHashMap<>();
+            for (int size : thumbnailSizes) {
+                thumbnails.put(String.valueOf(size), cdnConfig.getFullUrl("/file/" + thumbnailName(id, size)));
+            }
+            result.put("thumbnail", thumbnails.values().iterator().next());
+            result.put("thumbnails", thumbnails);
+        }
+        if (error != null) {
+            result.put("error", error);
+        }
+        return result;
+    }
+
+    private static String thumbnailName(String id, int size) {
+        return id + "_thumb_" + size + ".jpg";
+    }
+}
@@ -0,0 +1,186 @@
+package com.supermarket.service.impl;
+
+import com.supermarket.common.ImageCodec;
+import com.supermarket.common.SingleFlight;
+import com.supermarket.service.ImageVariantService;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+public class ImageVariantServiceImpl implements ImageVariantService {
+
+    /** 按压缩率从高到低排列，只使用 ImageIO 中有编码器的格式 */
+    private static final List<String> PREFERRED_FORMATS = List.of("image/avif", "image/webp");
+    private static final Map<String, String> FORMAT_EXTENSIONS = Map.of(
+            "image/avif", ".avif",
+            "image/webp", ".webp",
+            ImageCodec.JPEG, ".jpg"
+    );
+
+    @Value("${file.upload-dir:file}")
+    private String uploadDir;
+
+    @Value("${file.image.variant-widths:160,320,480,640,960,1280}")
+    private int[] widths;
+
+    @Value("${file.image.variant-quality:0.75}")
+    private float quality;
+
+    @Value("${file.image.variant-cache-max-bytes:536870912}")
+    private long maxCacheBytes;
+
+    private Path variantPath;
+    private List<String> writableFormats;
+
+    /** 访问顺序的 LinkedHashMap：最久未访问的变体排在最前，超出容量时从头部淘汰 */
+    private final LinkedHashMap<Path, Long> lru = new LinkedHashMap<>(256, 0.75f, true);
+    private long cachedBytes;
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    @PostConstruct
+    public void init() throws IOException {
+        variantPath = Paths.get(uploadDir).toAbsolutePath().normalize().resolve("variants");
+        Files.createDirectories(variantPath);
+        widths = Arrays.stream(widths).filter(w -> w > 0).sorted().distinct().toArray();
+        writableFormats = PREFERRED_FORMATS.stream().filter(ImageCodec::canWrite).collect(Collectors.toList());
+        loadExisting();
+    }
+
+    @Override
+    public Variant resolve(Path source, int width, String accept) throws IOException {
+        int target = snapWidth(width);
+        String format = negotiate(accept);
+        String name = source.getFileName().toString();
+        String base = name.substring(0, name.lastIndexOf('.'));
+        Path variant = variantPath.resolve(base.substring(0, Math.min(2, base.length())))
+                .resolve(base + "_w" + target + FORMAT_EXTENSIONS.get(format));
+
+        if (touch(variant)) {
+            return new Variant(variant, format);
+        }
+        // Never upscale: a source no wider than the bucket is already the smallest option
+        if (ImageCodec.readWidth(source) <= target) {
+            return new Variant(source, null);
+        }
+        try {
+            singleFlight.execute(variant.toString(), () -> {
+                if (!touch(variant)) {
+                    generate(source, variant, target, format);
+                }
+                return variant;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return new Variant(variant, format);
+    }
+
+    /**
+     * 请求宽度向上取整到最近的档位，限制变体数量；超过最大档位时取最大档位
+     */
+    private int snapWidth(int width) {
+        for (int w : widths) {
+            if (w >= width) return w;
+        }
+        return widths[widths.length - 1];
+    }
+
+    private String negotiate(String accept) {
+        if (accept != null) {
+            for (String format : writableFormats) {
+                if (accept.contains(format)) return format;
+            }
+        }
+        return ImageCodec.JPEG;
+    }
+
+    private void generate(Path source, Path variant, int width, String format) {
+        try {
+            BufferedImage image = ImageIO.read(source.toFile());
+            if (image == null) {
+                throw new IOException("无法解码图片：" + source.getFileName());
+            }
+            Files.createDirectories(variant.getParent());
+            ImageCodec.writeAtomically(ImageCodec.resize(image, width, Integer.MAX_VALUE), variant, format, quality);
+            record(variant, Files.size(variant));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 命中缓存时刷新访问顺序；文件已被外部删除时移出缓存
+     */
+    private synchronized boolean touch(Path variant) {
+        Long size = lru.get(variant);
+        if (size == null) return false;
+        if (Files.exists(variant)) return true;
+        lru.remove(variant);
+        cachedBytes -= size;
+        return false;
+    }
+
+    private synchronized void record(Path variant, long size) {
+        Long previous = lru.put(variant, size);
+        cachedBytes += size - (previous != null ? previous : 0);
+        Iterator<Map.Entry<Path, Long>> it = lru.entrySet().iterator();
+        while (cachedBytes > maxCacheBytes && it.hasNext()) {
+            Map.Entry<Path, Long> eldest = it.next();
+            if (eldest.getKey().equals(variant)) continue;
+            it.remove();
+            cachedBytes -= eldest.getValue();
+            try {
+                Files.deleteIfExists(eldest.getKey());
+            } catch (IOException e) {
+                log.warn("删除图片变体缓存失败: {}", eldest.getKey());
+            }
+        }
+    }
+
+    /**
+     * 启动时按文件修改时间恢复缓存索引（近似访问顺序），并按容量淘汰
+     */
+    private void loadExisting() throws IOException {
+        try (Stream<Path> files = Files.walk(variantPath)) {
+            files.filter(Files::isRegularFile)
+                    .filter(p -> !p.getFileName().toString().endsWith(".tmp"))
+                    .sorted(Comparator.comparingLong(this::lastModified))
+                    .forEach(p -> {
+                        try {
+                            record(p, Files.size(p));
+                        } catch (IOException e) {
+                            log.warn("读取图片变体缓存失败: {}", p);
+                        }
+                    });
+        }
+        log.info("图片变体缓存: {} 个文件, {} 字节", lru.size(), cachedBytes);
+    }
+
+    private long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.supermarket.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.supermarket.service.LocalCacheService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+@Service
+public class LocalCacheServiceImpl implements LocalCacheService {
+
+    /** 缓存失效广播频道，消息格式: {cacheName}:{key}，key 为 * 表示全部 */
+    public static final String INVALIDATION_CHANNEL = "cache:invalidate";
+    private static final String ALL_KEYS = "*";
+
+    private final Map<String, Cache<String, Object>> caches = new ConcurrentHashMap<>();
+
+    @Value("${cache.local.max-size:10000}")
+    private long maxSize;
+
+    @Value("${cache.local.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(String cacheName, Object key) {
+        if (key == null) return null;
+        return (T) cache(cacheName).getIfPresent(key.toString());
+    }
+
+    @Override
+    public void put(String cacheName, Object key, Object value) {
+        if (key == null || value == null) return;
+        cache(cacheName).put(key.toString(), value);
+    }
+
+    @Override
+    public void evict(String cacheName, Object key) {
+        if (key == null) return;
+        evictLocal(cacheName, key.toString());
+        publish(cacheName + ":" + key);
+    }
+
+    @Override
+    public void evictAll(String cacheName) {
+        evictLocal(cacheName, null);
+        publish(cacheName + ":" + ALL_KEYS);
+    }
+
+    @Override
+    public void evictLocal(String cacheName, String key) {
+        Cache<String, Object> cache = caches.get(cacheName);
+        if (cache == null) return;
+        if (key == null || ALL_KEYS.equals(key)) {
+            cache.invalidateAll();
+        } else {
+            cache.invalidate(key);
+        }
+    }
+
+    private Cache<String, Object> cache(String cacheName) {
+        return caches.computeIfAbsent(cacheName, name -> {
+            Cache<String, Object> cache = Caffeine.newBuilder()
+                    .maximumSize(maxSize)
+                    .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                    .recordStats()
+                    .build();
+            // Exposed as cache.gets / cache.evictions / cache.size with tag cache=local.{name}
+            if (meterRegistry != null) {
+                CaffeineCacheMetrics.monitor(meterRegistry, cache, "local." + name);
+            }
+            return cache;
+        });
+    }
+
+    private void publish(String message) {
+        if (redisTemplate == null) return;
+        try {
+            // Send the raw string so listeners on other nodes need no JSON decoding
+            redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(
+                    INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8), message.getBytes(StandardCharsets.UTF_8)));
+        } catch (RuntimeException e) {
+            log.warn("本地缓存失效通知发送失败: {}", message, e);
+        }
+    }
+}
@@ -5,23 +5,133 @@ import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.supermarket.common.CursorPage;
+import com.supermarket.common.RedisScripts;
 import com.supermarket.entity.Message;
+import com.supermarket.entity.MessageRead;
 import com.supermarket.entity.User;
 import com.supermarket.mapper.MessageMapper;
+import com.supermarket.mapper.MessageReadMapper;
 import com.supermarket.service.MessageService;
 import com.supermarket.service.UserService;
 import com.supermarket.service.NotificationService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message> implements MessageService {
 
+    private static final String DEFAULT_TYPE = "SYSTEM";
+
+    private static final String UNREAD_PREFIX = "msg:unread:";
+    /** 共享广播序号，每发一条广播加 1 */
+    private static final String BROADCAST_SEQ_KEY = "msg:broadcast:seq";
+    /** 删除广播时加 1，使所有用户的计数器失效重建 */
+    private static final String UNREAD_EPOCH_KEY = "msg:unread:epoch";
+
+    /**
+     * 读取未读数：KEYS[1]=用户计数hash，KEYS[2]=广播序号，KEYS[3]=纪元
+     * 未读数 = 个人计数 + 计数器建立之后新发的广播数；计数器不存在或已失效返回 -1
+     */
+    private static final RedisScript<Long> READ_SCRIPT = new DefaultRedisScript<>(
+            "local v = redis.call('HMGET', KEYS[1], 'count', 'seq', 'epoch')\n"
+            + "if not v[1] or not v[2] or not v[3] then return -1 end\n"
+            + "if v[3] ~= (redis.call('GET', KEYS[3]) or '0') then return -1 end\n"
+            + "local n = tonumber(v[1]) + tonumber(redis.call('GET', KEYS[2]) or '0') - tonumber(v[2])\n"
+            + "if n < 0 then return -1 end\n"
+            + "return n", Long.class);
+
+    /**
+     * 取广播序号和纪元快照：KEYS[1]=广播序号，KEYS[2]=纪元
+     */
+    private static final RedisScript<List<Object>> SNAPSHOT_SCRIPT = RedisScripts.listScript(
+            "return {redis.call('GET', KEYS[1]) or '0', redis.call('GET', KEYS[2]) or '0'}");
+
+    /**
+     * 写入重建结果：KEYS 同读取；ARGV[1]=未读数，ARGV[2]=序号快照，ARGV[3]=纪元快照，ARGV[4]=过期秒数
+     * 统计期间有新广播或纪元变化时放弃写入，下次读取重新统计
+     */
+    private static final RedisScript<Long> STORE_SCRIPT = new DefaultRedisScript<>(
+            "if (redis.call('GET', KEYS[2]) or '0') ~= ARGV[2] or (redis.call('GET', KEYS[3]) or '0') ~= ARGV[3] then return 0 end\n"
+            + "redis.call('HMSET', KEYS[1], 'count', ARGV[1], 'seq', ARGV[2], 'epoch', ARGV[3])\n"
+            + "redis.call('EXPIRE', KEYS[1], ARGV[4])\n"
+            + "return 1", Long.class);
+
+    /**
+     * 增减个人计数：KEYS=用户计数hash；ARGV[1]=增量；计数器不存在的用户跳过（读取时重建）
+     */
+    private static final RedisScript<Long> ADJUST_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #KEYS do\n"
+            + "  if redis.call('EXISTS', KEYS[i]) == 1 then redis.call('HINCRBY', KEYS[i], 'count', ARGV[1]) end\n"
+            + "end\n"
+            + "return 0", Long.class);
+
+    /**
+     * 全部已读后清零：KEYS[1]=用户计数hash；ARGV[1]=标记前取的广播序号
+     */
+    private static final RedisScript<Long> RESET_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end\n"
+            + "redis.call('HMSET', KEYS[1], 'count', 0, 'seq', ARGV[1])\n"
+            + "return 1", Long.class);
+
+    private static final StringRedisSerializer STRING_SERIALIZER = new StringRedisSerializer();
+
     private final UserService userService;
     private final NotificationService notificationService;
+    private final MessageReadMapper messageReadMapper;
+
+    @Value("${message.broadcast.mode:" + BROADCAST_SHARED + "}")
+    private String broadcastMode;
+
+    @Value("${message.broadcast.batch-size:1000}")
+    private int batchSize;
+
+    /** 计数器过期时间，过期后下次读取从数据库重建，兜底并发写入造成的偏差 */
+    @Value("${message.unread.ttl-seconds:86400}")
+    private long unreadTtlSeconds;
+
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "message-broadcast");
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
 
     @Override
     public boolean sendMessage(Message message) {
@@ -29,9 +139,16 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message> impl
             message.setIsRead(0);
         }
         if (message.getType() == null) {
-            message.setType("SYSTEM");
+            message.setType(DEFAULT_TYPE);
         }
         boolean saved = save(message);
+        if (saved && message.getIsRead() == 0) {
+            if (message.getUserId() != null) {
+                adjustUnread(List.of(message.getUserId()), 1);
+            } else {
+                bumpBroadcastSeq();
+            }
+        }
         if (saved && message.getUserId() != null) {
             try {
                 notificationService.notifyUser(message.getUserId(), message.getTitle(), message.getContent());
@@ -42,15 +159,18 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message> impl
 
     @Override
     public boolean broadcastMessage(String title, String content, String type) {
-        List<User> users = userService.listAll();
-        for (User user : users) {
+        String messageType = type != null ? type : DEFAULT_TYPE;
+        if (BROADCAST_MATERIALIZED.equals(broadcastMode)) {
+            executor.execute(() -> materializeBroadcast(title, content, messageType));
+        } else {
+            // One shared row; per-user read state is written only when a user reads it
             Message msg = new Message();
-            msg.setUserId(user.getId());
             msg.setTitle(title);
             msg.setContent(content);
-            msg.setType(type != null ? type : "SYSTEM");
+            msg.setType(messageType);
             msg.setIsRead(0);
-            save(msg);
+            if (!save(msg)) return false;
+            bumpBroadcastSeq();
         }
         try {
             notificationService.broadcastMessage(title, content);
@@ -58,33 +178,220 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message> impl
         return true;
     }
 
+    /**
+     * 按用户ID键集分批，每批一条多行 INSERT 写入个人消息
+     */
+    private void materializeBroadcast(String title, String content, String type) {
+        long lastId = 0L;
+        int total = 0;
+        try {
+            while (true) {
+                List<Long> userIds = userService.listObjs(new LambdaQueryWrapper<User>()
+                        .select(User::getId)
+                        .gt(User::getId, lastId)
+                        .orderByAsc(User::getId)
+                        .last("LIMIT " + batchSize), id -> ((Number) id).longValue());
+                if (userIds.isEmpty()) break;
+                total += baseMapper.insertForUsers(title, content, type, userIds);
+                adjustUnread(userIds, 1);
+                if (userIds.size() < batchSize) break;
+                lastId = userIds.get(userIds.size() - 1);
+            }
+            log.info("广播消息写入完成: {} 条", total);
+        } catch (RuntimeException e) {
+            log.error("广播消息写入中断: 已写入 {} 条, lastUserId={}", total, lastId, e);
+        }
+    }
+
     @Override
     public List<Message> getMessagesByUserId(Long userId) {
-        return list(new LambdaQueryWrapper<Message>()
-                .eq(Message::getUserId, userId)
+        LocalDateTime since = broadcastSince(userId);
+        List<Message> messages = list(new LambdaQueryWrapper<Message>()
+                .and(w -> w.eq(Message::getUserId, userId)
+                        .or(b -> b.isNull(Message::getUserId).ge(since != null, Message::getCreateTime, since)))
                 .orderByDesc(Message::getCreateTime));
+        List<Long> broadcastIds = messages.stream()
+                .filter(m -> m.getUserId() == null)
+                .map(Message::getId)
+                .collect(Collectors.toList());
+        if (!broadcastIds.isEmpty()) {
+            Set<Long> read = messageReadMapper.selectList(new LambdaQueryWrapper<MessageRead>()
+                            .eq(MessageRead::getUserId, userId)
+                            .in(MessageRead::getMessageId, broadcastIds))
+                    .stream()
+                    .map(MessageRead::getMessageId)
+                    .collect(Collectors.toSet());
+            messages.stream()
+                    .filter(m -> m.getUserId() == null)
+                    .forEach(m -> m.setIsRead(read.contains(m.getId()) ? 1 : 0));
+        }
+        return messages;
     }
 
     @Override
     public int getUnreadCount(Long userId) {
-        return (int) count(new LambdaQueryWrapper<Message>()
-                .eq(Message::getUserId, userId)
-                .eq(Message::getIsRead, 0));
+        if (redisTemplate == null) {
+            return baseMapper.countUnread(userId, broadcastSince(userId));
+        }
+        List<String> keys = List.of(unreadKey(userId), BROADCAST_SEQ_KEY, UNREAD_EPOCH_KEY);
+        List<Object> snapshot;
+        try {
+            Long cached = runScript(READ_SCRIPT, keys);
+            if (cached != null && cached >= 0) {
+                return cached.intValue();
+            }
+            // Snapshot before counting so a broadcast sent mid-count is not cached as already seen
+            snapshot = runScript(SNAPSHOT_SCRIPT, List.of(BROADCAST_SEQ_KEY, UNREAD_EPOCH_KEY));
+        } catch (RuntimeException e) {
+            log.warn("读取未读计数失败，改为查询数据库: userId={}, error={}", userId, e.getMessage());
+            return baseMapper.countUnread(userId, broadcastSince(userId));
+        }
+        int count = baseMapper.countUnread(userId, broadcastSince(userId));
+        try {
+            runScript(STORE_SCRIPT, keys, count, snapshot.get(0), snapshot.get(1), unreadTtlSeconds);
+        } catch (RuntimeException e) {
+            log.warn("写入未读计数失败: userId={}, error={}", userId, e.getMessage());
+        }
+        return count;
     }
 
     @Override
-    public boolean markAsRead(Long id) {
-        return update(new LambdaUpdateWrapper<Message>()
-                .eq(Message::getId, id)
-                .set(Message::getIsRead, 1));
+    public boolean markAsRead(Long id, Long userId) {
+        Message message = getById(id);
+        if (message == null) return false;
+        if (message.getUserId() != null) {
+            if (message.getIsRead() != 0) return true;
+            if (update(new LambdaUpdateWrapper<Message>()
+                    .eq(Message::getId, id)
+                    .eq(Message::getIsRead, 0)
+                    .set(Message::getIsRead, 1))) {
+                adjustUnread(List.of(message.getUserId()), -1);
+            }
+            return true;
+        }
+        if (userId == null) return false;
+        // Broadcasts sent before the user registered are not visible to them and never counted
+        LocalDateTime since = broadcastSince(userId);
+        if (since != null && message.getCreateTime() != null && message.getCreateTime().isBefore(since)) {
+            return false;
+        }
+        MessageRead read = new MessageRead();
+        read.setMessageId(id);
+        read.setUserId(userId);
+        try {
+            messageReadMapper.insert(read);
+            // The cached count includes this broadcast either in count or in the seq delta
+            adjustUnread(List.of(userId), -1);
+        } catch (DuplicateKeyException ignored) {
+            // Already read
+        }
+        return true;
     }
 
     @Override
     public boolean markAllAsRead(Long userId) {
-        return update(new LambdaUpdateWrapper<Message>()
+        Object seq = null;
+        if (redisTemplate != null) {
+            try {
+                seq = runScript(SNAPSHOT_SCRIPT, List.of(BROADCAST_SEQ_KEY, UNREAD_EPOCH_KEY)).get(0);
+            } catch (RuntimeException e) {
+                log.warn("读取广播序号失败: userId={}, error={}", userId, e.getMessage());
+            }
+        }
+        boolean personal = update(new LambdaUpdateWrapper<Message>()
                 .eq(Message::getUserId, userId)
                 .eq(Message::getIsRead, 0)
                 .set(Message::getIsRead, 1));
+        boolean broadcasts = messageReadMapper.insertUnreadBroadcasts(userId, broadcastSince(userId)) > 0;
+        if (seq != null) {
+            try {
+                runScript(RESET_SCRIPT, List.of(unreadKey(userId)), seq);
+            } catch (RuntimeException e) {
+                log.warn("未读计数清零失败，计数器将重建: userId={}, error={}", userId, e.getMessage());
+                evictUnread(List.of(unreadKey(userId)));
+            }
+        } else if (redisTemplate != null) {
+            evictUnread(List.of(unreadKey(userId)));
+        }
+        return personal || broadcasts;
+    }
+
+    /**
+     * 被删除的未读个人消息从各自用户的计数中扣除；删除广播无法逐个用户扣减，改为递增纪元让计数器全部重建
+     */
+    private void releaseUnread(List<Message> messages) {
+        if (messages.stream().anyMatch(m -> m.getUserId() == null)) {
+            invalidateAllUnread();
+        }
+        messages.stream()
+                .filter(m -> m.getUserId() != null && m.getIsRead() == 0)
+                .collect(Collectors.groupingBy(Message::getUserId, Collectors.counting()))
+                .forEach((userId, count) -> adjustUnread(List.of(userId), -count.intValue()));
+    }
+
+    /**
+     * 计数更新在数据库写入之后执行，Redis 出错不影响请求结果：删除受影响的计数器，下次读取时重建
+     */
+    private void adjustUnread(List<Long> userIds, int delta) {
+        if (redisTemplate == null || userIds.isEmpty()) return;
+        List<String> keys = userIds.stream().map(MessageServiceImpl::unreadKey).collect(Collectors.toList());
+        try {
+            runScript(ADJUST_SCRIPT, keys, delta);
+        } catch (RuntimeException e) {
+            log.warn("更新未读计数失败，计数器将重建: {} 个用户, error={}", keys.size(), e.getMessage());
+            evictUnread(keys);
+        }
+    }
+
+    private void bumpBroadcastSeq() {
+        if (redisTemplate == null) return;
+        try {
+            redisTemplate.opsForValue().increment(BROADCAST_SEQ_KEY);
+        } catch (RuntimeException e) {
+            log.warn("更新广播序号失败，计数器将重建: error={}", e.getMessage());
+            invalidateAllUnread();
+        }
+    }
+
+    /**
+     * 递增纪元使所有用户的计数器失效
+     */
+    private void invalidateAllUnread() {
+        try {
+            redisTemplate.opsForValue().increment(UNREAD_EPOCH_KEY);
+        } catch (RuntimeException e) {
+            log.error("未读计数纪元更新失败，计数器将在过期后重建", e);
+        }
+    }
+
+    private void evictUnread(List<String> keys) {
+        try {
+            redisTemplate.delete(keys);
+        } catch (RuntimeException e) {
+            log.error("删除未读计数失败，计数器将在过期后重建: keys={}", keys, e);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private <T> T runScript(RedisScript<T> script, List<String> keys, Object... args) {
+        Object[] stringArgs = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            stringArgs[i] = String.valueOf(args[i]);
+        }
+        return (T) redisTemplate.execute((RedisScript) script, STRING_SERIALIZER, (RedisSerializer) STRING_SERIALIZER,
+                keys, stringArgs);
+    }
+
+    private static String unreadKey(Long userId) {
+        return UNREAD_PREFIX + userId;
+    }
+
+    /**
+     * 用户能看到的广播从注册时间开始（与逐个写入时只发给当时已有用户一致）
+     */
+    private LocalDateTime broadcastSince(Long userId) {
+        User user = userService.getUserById(userId);
+        return user != null ? user.getCreateTime() : null;
     }
 
     @Override
@@ -93,14 +400,26 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message> impl
                 new LambdaQueryWrapper<Message>().orderByDesc(Message::getCreateTime));
     }
 
+    @Override
+    public CursorPage<Message> listByCursor(String cursor, int pageSize) {
+        LambdaQueryWrapper<Message> wrapper = new LambdaQueryWrapper<>();
+        CursorPage.applyKeyset(wrapper, cursor, pageSize, Message::getCreateTime, Message::getId);
+        return CursorPage.of(list(wrapper), pageSize, Message::getCreateTime, Message::getId);
+    }
+
     @Override
     public boolean deleteMessage(Long id) {
-        return removeById(id);
+        return deleteBatchMessages(List.of(id));
     }
 
     @Override
     public boolean deleteBatchMessages(List<Long> ids) {
-        return removeByIds(ids);
+        List<Message> messages = redisTemplate != null && !ids.isEmpty() ? listByIds(ids) : List.of();
+        boolean removed = removeByIds(ids);
+        if (removed) {
+            releaseUnread(messages);
+        }
+        return removed;
     }
 
     @Override
@@ -4,23 +4,95 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.supermarket.enums.OrderStatus;
 import com.supermarket.service.NotificationService;
 import com.supermarket.websocket.NotificationWebSocketHandler;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * 通知异步分发：调用方只把通知放入有界队列，事务中发布的通知在提交后才入队（回滚则丢弃）
+ * 分发线程按用户ID分区（同一用户的通知由同一线程按序发送），每次取出一批，
+ * 同一订单的多次状态变更只发送最新一条；队列满时丢弃并计数，不阻塞下单
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class NotificationServiceImpl implements NotificationService {
 
+    private static final int DRAIN_BATCH = 256;
+
     private final NotificationWebSocketHandler webSocketHandler;
     private final ObjectMapper objectMapper;
 
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${notification.dispatcher.threads:2}")
+    private int dispatcherThreads;
+
+    @Value("${notification.dispatcher.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private List<BlockingQueue<Notification>> queues;
+    private ThreadPoolExecutor executor;
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * @param userId       为 null 表示广播
+     * @param coalesceKey  相同 key 的通知只发送最新一条
+     */
+    private record Notification(Long userId, String coalesceKey, Map<String, Object> payload) {
+    }
+
+    @PostConstruct
+    public void init() {
+        int perQueue = Math.max(1, queueCapacity / dispatcherThreads);
+        queues = new ArrayList<>(dispatcherThreads);
+        for (int i = 0; i < dispatcherThreads; i++) {
+            queues.add(new ArrayBlockingQueue<>(perQueue));
+        }
+        AtomicInteger seq = new AtomicInteger();
+        executor = new ThreadPoolExecutor(dispatcherThreads, dispatcherThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "notification-dispatcher-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        queues.forEach(queue -> executor.execute(() -> dispatchLoop(queue)));
+        if (meterRegistry != null) {
+            Gauge.builder("notification.queue.depth", queues, qs -> qs.stream().mapToInt(BlockingQueue::size).sum())
+                    .register(meterRegistry);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
     @Override
     public void notifyOrderStatusChange(Long userId, Long orderId, OrderStatus newStatus) {
         String statusText = switch (newStatus) {
@@ -38,12 +110,7 @@ public class NotificationServiceImpl implements NotificationService {
         message.put("content", "您的订单 #" + orderId + " 状态已更新为：" + statusText);
         message.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
 
-        try {
-            String json = objectMapper.writeValueAsString(message);
-            webSocketHandler.sendToUser(userId, json);
-        } catch (Exception e) {
-            log.error("发送订单状态通知失败: userId={}, orderId={}", userId, orderId, e);
-        }
+        publish(new Notification(userId, "order:" + orderId, message));
     }
 
     @Override
@@ -54,12 +121,7 @@ public class NotificationServiceImpl implements NotificationService {
         message.put("content", content);
         message.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
 
-        try {
-            String json = objectMapper.writeValueAsString(message);
-            webSocketHandler.sendToUser(userId, json);
-        } catch (Exception e) {
-            log.error("发送用户通知失败: userId={}", userId, e);
-        }
+        publish(new Notification(userId, uniqueKey(), message));
     }
 
     @Override
@@ -70,11 +132,108 @@ public class NotificationServiceImpl implements NotificationService {
         message.put("content", content);
         message.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
 
+        publish(new Notification(null, uniqueKey(), message));
+    }
+
+    /**
+     * 有事务时先缓存在事务内（同一订单只保留最新状态），提交后统一入队；否则直接入队
+     */
+    private void publish(Notification notification) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(notification);
+            return;
+        }
+        PendingNotifications pending = (PendingNotifications) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingNotifications();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.add(notification);
+    }
+
+    private class PendingNotifications implements TransactionSynchronization {
+
+        private final Map<String, Notification> notifications = new LinkedHashMap<>();
+
+        void add(Notification notification) {
+            String key = notification.userId() + ":" + notification.coalesceKey();
+            if (notifications.remove(key) != null) {
+                record("notification.coalesced");
+            }
+            notifications.put(key, notification);
+        }
+
+        @Override
+        public void afterCommit() {
+            notifications.values().forEach(NotificationServiceImpl.this::enqueue);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(NotificationServiceImpl.this);
+        }
+    }
+
+    private void enqueue(Notification notification) {
+        long userId = notification.userId() != null ? notification.userId() : 0L;
+        BlockingQueue<Notification> queue = queues.get((int) Math.floorMod(userId, (long) queues.size()));
+        if (!queue.offer(notification)) {
+            record("notification.dropped");
+            log.warn("通知队列已满，丢弃通知: userId={}, type={}", notification.userId(), notification.payload().get("type"));
+        }
+    }
+
+    private void dispatchLoop(BlockingQueue<Notification> queue) {
+        List<Notification> batch = new ArrayList<>(DRAIN_BATCH);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(batch, DRAIN_BATCH - 1);
+            // Later updates of the same order replace earlier ones still waiting in the batch
+            Map<String, Notification> latest = new LinkedHashMap<>();
+            for (Notification notification : batch) {
+                String key = notification.userId() + ":" + notification.coalesceKey();
+                if (latest.remove(key) != null) {
+                    record("notification.coalesced");
+                }
+                latest.put(key, notification);
+            }
+            batch.clear();
+            latest.values().forEach(this::send);
+        }
+    }
+
+    private void send(Notification notification) {
+        long start = System.nanoTime();
         try {
-            String json = objectMapper.writeValueAsString(message);
-            webSocketHandler.broadcast(json);
+            String json = objectMapper.writeValueAsString(notification.payload());
+            if (notification.userId() != null) {
+                webSocketHandler.sendToUser(notification.userId(), json);
+            } else {
+                webSocketHandler.broadcast(json);
+            }
         } catch (Exception e) {
-            log.error("广播消息失败", e);
+            log.error("发送通知失败: userId={}, type={}", notification.userId(), notification.payload().get("type"), e);
+        } finally {
+            if (meterRegistry != null) {
+                meterRegistry.timer("notification.send", "type", String.valueOf(notification.payload().get("type")))
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
         }
     }
+
+    private void record(String name) {
+        if (meterRegistry != null) {
+            meterRegistry.counter(name).increment();
+        }
+    }
+
+    private String uniqueKey() {
+        return "seq:" + sequence.incrementAndGet();
+    }
 }
@@ -47,6 +47,12 @@ public class OrderItemServiceImpl extends ServiceImpl<OrderItemMapper, OrderItem
         return save(orderItem);
     }
 
+    @Override
+    public boolean addOrderItemsBatch(List<OrderItem> orderItems) {
+        if (orderItems == null || orderItems.isEmpty()) return true;
+        return baseMapper.insertBatch(orderItems) == orderItems.size();
+    }
+
     @Override
     public boolean updateOrderItem(OrderItem orderItem) {
         return updateById(orderItem);
@@ -1,23 +1,28 @@
 package com.supermarket.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.supermarket.common.CursorPage;
 import com.supermarket.entity.Coupon;
 import com.supermarket.entity.Order;
 import com.supermarket.entity.OrderItem;
 import com.supermarket.entity.Product;
+import com.supermarket.entity.StoreProduct;
 import com.supermarket.entity.User;
 import com.supermarket.entity.UserCoupon;
 import com.supermarket.enums.CouponStatus;
 import com.supermarket.enums.OrderStatus;
 import com.supermarket.mapper.OrderMapper;
 import com.supermarket.service.CouponService;
+import com.supermarket.service.HotStockService;
 import com.supermarket.service.NotificationService;
 import com.supermarket.service.OrderItemService;
 import com.supermarket.service.OrderService;
 import com.supermarket.service.ProductService;
+import com.supermarket.service.SalesRollupService;
 import com.supermarket.service.StoreProductService;
 import com.supermarket.service.UserCouponService;
 import com.supermarket.service.UserService;
@@ -30,8 +35,11 @@ import org.springframework.data.redis.core.RedisTemplate;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 @Service
@@ -48,6 +56,8 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
     private final UserCouponService userCouponService;
     private final CouponService couponService;
     private final StoreProductService storeProductService;
+    private final SalesRollupService salesRollupService;
+    private final HotStockService hotStockService;
 
     @Autowired(required = false)
     private NotificationService notificationService;
@@ -117,6 +127,14 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
         return page(new Page<>(pageNum, pageSize), wrapper);
     }
 
+    @Override
+    public CursorPage<Order> listByCursor(Long storeId, String cursor, int pageSize) {
+        LambdaQueryWrapper<Order> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(storeId != null, Order::getStoreId, storeId);
+        CursorPage.applyKeyset(wrapper, cursor, pageSize, Order::getCreateTime, Order::getId);
+        return CursorPage.of(list(wrapper), pageSize, Order::getCreateTime, Order::getId);
+    }
+
     @Override
     @Transactional
     public Order addOrder(Long userId, Long productId, Integer quantity, Long userCouponId, Long storeId) {
@@ -130,70 +148,51 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
             return null;
         }
 
-        // Check stock availability
+        // Fast reject on the cached stock; the conditional UPDATE below is authoritative
         if (product.getStock() == null || product.getStock() < quantity) {
             throw new RuntimeException("商品库存不足");
         }
 
-        // Use Redis distributed lock to prevent overselling
-        String lockKey = "lock:order:product:" + productId;
-        boolean locked = tryLock(lockKey, 5);
-        if (!locked) {
-            throw new RuntimeException("系统繁忙，请稍后再试");
-        }
-        try {
-            // Re-check stock inside lock
-            Product freshProduct = productService.getById(productId);
-            if (freshProduct == null || freshProduct.getStock() == null || freshProduct.getStock() < quantity) {
-                throw new RuntimeException("商品库存不足");
-            }
-
-            // Lock coupon with Redis distributed lock to prevent double-booking
-            lockCoupon(userCouponId);
+        // Lock coupon with Redis distributed lock to prevent double-booking
+        lockCoupon(userCouponId);
 
-            BigDecimal unitPrice = product.getPrice();
+        BigDecimal unitPrice = product.getPrice();
 
-            // Apply employee discount if user is a hotel employee and product has a discount rate
-            if (Boolean.TRUE.equals(user.getIsHotelEmployee()) && product.getEmployeeDiscountRate() != null) {
-                unitPrice = unitPrice.multiply(product.getEmployeeDiscountRate()).setScale(2, RoundingMode.HALF_UP);
-            }
-
-            BigDecimal totalAmount = unitPrice.multiply(new BigDecimal(quantity));
-
-            // Apply coupon discount if provided (employee discount and coupon cannot stack)
-            totalAmount = applyCouponDiscount(totalAmount, userCouponId, user);
-
-            Order order = new Order();
-            order.setUserId(userId);
-            order.setProductId(productId);
-            order.setQuantity(quantity);
-            order.setPriceAtPurchase(unitPrice);
-            order.setTotalAmount(totalAmount);
-            order.setUserCouponId(userCouponId);
-            order.setStoreId(storeId);
-            order.setStatus(OrderStatus.PENDING);
-
-            // Deduct product stock
-            freshProduct.setStock(freshProduct.getStock() - quantity);
-            productService.updateProduct(freshProduct);
-
-            save(order);
-            setOrderExpireKey(order.getId());
+        // Apply employee discount if user is a hotel employee and product has a discount rate
+        if (Boolean.TRUE.equals(user.getIsHotelEmployee()) && product.getEmployeeDiscountRate() != null) {
+            unitPrice = unitPrice.multiply(product.getEmployeeDiscountRate()).setScale(2, RoundingMode.HALF_UP);
+        }
 
-            // Deduct store stock if storeId is present
-            if (storeId != null) {
-                storeProductService.deductStoreStock(storeId, productId, quantity);
-            }
+        BigDecimal totalAmount = unitPrice.multiply(new BigDecimal(quantity));
+
+        // Apply coupon discount if provided (employee discount and coupon cannot stack)
+        totalAmount = applyCouponDiscount(totalAmount, userCouponId, user);
+
+        Order order = new Order();
+        order.setUserId(userId);
+        order.setProductId(productId);
+        order.setQuantity(quantity);
+        order.setPriceAtPurchase(unitPrice);
+        order.setTotalAmount(totalAmount);
+        order.setUserCouponId(userCouponId);
+        order.setStoreId(storeId);
+        order.setStatus(OrderStatus.PENDING);
+        save(order);
+
+        // Reserve stock last so the hot product row is locked only until commit;
+        // products in hot-stock mode are reserved in Redis instead of MySQL
+        if (!hotStockService.reserve(storeId, Map.of(productId, quantity)).contains(productId)) {
+            reserveStock(storeId, productId, quantity, product.getName());
+        }
 
-            // Push notification for new order
-            if (notificationService != null) {
-                notificationService.notifyOrderStatusChange(userId, order.getId(), OrderStatus.PENDING);
-            }
+        setOrderExpireKey(order.getId());
 
-            return order;
-        } finally {
-            releaseLock(lockKey);
+        // Push notification for new order
+        if (notificationService != null) {
+            notificationService.notifyOrderStatusChange(userId, order.getId(), OrderStatus.PENDING);
         }
+
+        return order;
     }
 
     @Override
@@ -204,137 +203,115 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
             return null;
         }
 
-        // Collect all product IDs for locking
-        List<Long> productIds = new java.util.ArrayList<>();
+        // Merge repeated lines per product; TreeMap keeps product ID order so concurrent baskets lock rows consistently
+        Map<Long, Integer> quantities = new TreeMap<>();
         for (Map<String, Object> item : items) {
             Long productId = ((Number) item.get("productId")).longValue();
-            productIds.add(productId);
-        }
-
-        // Acquire distributed locks for all products (sorted to prevent deadlock)
-        java.util.Collections.sort(productIds);
-        List<String> lockKeys = new java.util.ArrayList<>();
-        for (Long pid : productIds) {
-            String lockKey = "lock:order:product:" + pid;
-            boolean locked = tryLock(lockKey, 5);
-            if (!locked) {
-                // Release already-acquired locks
-                for (String key : lockKeys) releaseLock(key);
-                throw new RuntimeException("系统繁忙，请稍后再试");
+            int quantity = ((Number) item.get("quantity")).intValue();
+            if (quantity <= 0) {
+                throw new RuntimeException("商品数量必须大于0");
             }
-            lockKeys.add(lockKey);
+            quantities.merge(productId, quantity, Integer::sum);
         }
 
-        try {
-            // Validate all products and check stock
-            for (Map<String, Object> item : items) {
-                Long productId = ((Number) item.get("productId")).longValue();
-                int quantity = ((Number) item.get("quantity")).intValue();
-                Product product = productService.getById(productId);
-                if (product == null) {
-                    throw new RuntimeException("商品不存在: " + productId);
-                }
-                if (product.getStock() == null || product.getStock() < quantity) {
-                    throw new RuntimeException("商品库存不足: " + product.getName());
-                }
+        // One cache-backed IN lookup for products and one IN query for the store's rows, instead of per-line reads
+        Map<Long, Product> products = productService.getProductMapByIds(quantities.keySet());
+        Map<Long, StoreProduct> storeProducts = storeProductService.getMapByStoreIdAndProductIds(storeId, quantities.keySet());
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            Product product = products.get(entry.getKey());
+            if (product == null) {
+                throw new RuntimeException("商品不存在: " + entry.getKey());
             }
+            // Fast reject on the cached stock; the conditional batch UPDATE below is authoritative
+            if (product.getStock() == null || product.getStock() < entry.getValue()) {
+                throw new RuntimeException("商品库存不足: " + product.getName());
+            }
+            StoreProduct storeProduct = storeProducts.get(entry.getKey());
+            if (storeProduct != null && (storeProduct.getStoreStock() == null
+                    || storeProduct.getStoreStock() < entry.getValue())) {
+                throw new RuntimeException("店铺库存不足: " + product.getName());
+            }
+        }
 
-            // Pre-calculate totalAmount and item details BEFORE saving order
-            BigDecimal totalAmount = BigDecimal.ZERO;
-            BigDecimal firstUnitPrice = null;
-            Long firstProductId = null;
-            int firstQuantity = 0;
-
-            // Structure to hold calculated item details
-            java.util.List<Object[]> calculatedItems = new java.util.ArrayList<>();
-
-            for (Map<String, Object> item : items) {
-                Long productId = ((Number) item.get("productId")).longValue();
-                int quantity = ((Number) item.get("quantity")).intValue();
-
-                Product product = productService.getById(productId);
-
-                BigDecimal unitPrice = product.getPrice();
-                if (Boolean.TRUE.equals(user.getIsHotelEmployee()) && product.getEmployeeDiscountRate() != null) {
-                    unitPrice = unitPrice.multiply(product.getEmployeeDiscountRate()).setScale(2, RoundingMode.HALF_UP);
-                }
-
-                BigDecimal subtotal = unitPrice.multiply(new BigDecimal(quantity));
-                totalAmount = totalAmount.add(subtotal);
-
-                calculatedItems.add(new Object[]{productId, quantity, unitPrice, subtotal});
+        // Price every line from the loaded products before saving the order
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        List<OrderItem> orderItems = new ArrayList<>(items.size());
+        for (Map<String, Object> item : items) {
+            Product product = products.get(((Number) item.get("productId")).longValue());
+            int quantity = ((Number) item.get("quantity")).intValue();
 
-                if (firstProductId == null) {
-                    firstProductId = productId;
-                    firstUnitPrice = unitPrice;
-                    firstQuantity = quantity;
-                }
+            BigDecimal unitPrice = product.getPrice();
+            if (Boolean.TRUE.equals(user.getIsHotelEmployee()) && product.getEmployeeDiscountRate() != null) {
+                unitPrice = unitPrice.multiply(product.getEmployeeDiscountRate()).setScale(2, RoundingMode.HALF_UP);
             }
 
-            // Apply coupon discount if provided (employee discount and coupon cannot stack)
-            totalAmount = applyCouponDiscount(totalAmount, userCouponId, user);
-
-            // Lock coupon before saving order to prevent double-booking
-            lockCoupon(userCouponId);
-
-            // Create order with correct totalAmount (satisfies CHECK constraint)
-            Order order = new Order();
-            order.setUserId(userId);
-            order.setStoreId(storeId);
-            order.setUserCouponId(userCouponId);
-            order.setStatus(OrderStatus.PENDING);
-            order.setProductId(firstProductId);
-            order.setQuantity(firstQuantity);
-            order.setPriceAtPurchase(firstUnitPrice);
-            order.setTotalAmount(totalAmount);
-            save(order);
-
-            // Create order items and deduct stock
-            for (Object[] calc : calculatedItems) {
-                Long productId = (Long) calc[0];
-                int quantity = (Integer) calc[1];
-
-                OrderItem orderItem = new OrderItem();
-                orderItem.setOrderId(order.getId());
-                orderItem.setProductId(productId);
-                orderItem.setQuantity(quantity);
-                orderItem.setPriceAtPurchase((BigDecimal) calc[2]);
-                orderItem.setSubtotal((BigDecimal) calc[3]);
-                orderItemService.addOrderItem(orderItem);
-
-                // Deduct product stock atomically
-                Product product = productService.getById(productId);
-                product.setStock(product.getStock() - quantity);
-                productService.updateProduct(product);
-
-                // Deduct store stock for each item
-                if (storeId != null) {
-                    storeProductService.deductStoreStock(storeId, productId, quantity);
-                }
-            }
+            BigDecimal subtotal = unitPrice.multiply(new BigDecimal(quantity));
+            totalAmount = totalAmount.add(subtotal);
 
-            setOrderExpireKey(order.getId());
+            OrderItem orderItem = new OrderItem();
+            orderItem.setProductId(product.getId());
+            orderItem.setQuantity(quantity);
+            orderItem.setPriceAtPurchase(unitPrice);
+            orderItem.setSubtotal(subtotal);
+            orderItems.add(orderItem);
+        }
 
-            // Push notification for new multi-item order
-            if (notificationService != null) {
-                notificationService.notifyOrderStatusChange(userId, order.getId(), OrderStatus.PENDING);
-            }
+        // Apply coupon discount if provided (employee discount and coupon cannot stack)
+        totalAmount = applyCouponDiscount(totalAmount, userCouponId, user);
+
+        // Lock coupon before saving order to prevent double-booking
+        lockCoupon(userCouponId);
+
+        // Create order with correct totalAmount (satisfies CHECK constraint)
+        OrderItem first = orderItems.get(0);
+        Order order = new Order();
+        order.setUserId(userId);
+        order.setStoreId(storeId);
+        order.setUserCouponId(userCouponId);
+        order.setStatus(OrderStatus.PENDING);
+        order.setProductId(first.getProductId());
+        order.setQuantity(first.getQuantity());
+        order.setPriceAtPurchase(first.getPriceAtPurchase());
+        order.setTotalAmount(totalAmount);
+        save(order);
+
+        orderItems.forEach(orderItem -> orderItem.setOrderId(order.getId()));
+        orderItemService.addOrderItemsBatch(orderItems);
+
+        // Reserve hot products in one Redis call, the rest with one conditional UPDATE per table
+        Set<Long> hotReserved = hotStockService.reserve(storeId, quantities);
+        Map<Long, Integer> dbQuantities = new TreeMap<>(quantities);
+        dbQuantities.keySet().removeAll(hotReserved);
+        if (!productService.deductStockBatch(dbQuantities)) {
+            throw new RuntimeException("商品库存不足");
+        }
+        Map<Long, Integer> storeQuantities = new TreeMap<>(dbQuantities);
+        storeQuantities.keySet().retainAll(storeProducts.keySet());
+        if (!storeProductService.deductStoreStockBatch(storeId, storeQuantities)) {
+            throw new RuntimeException("店铺库存不足");
+        }
+
+        setOrderExpireKey(order.getId());
 
-            return order;
-        } finally {
-            for (String key : lockKeys) releaseLock(key);
+        // Push notification for new multi-item order
+        if (notificationService != null) {
+            notificationService.notifyOrderStatusChange(userId, order.getId(), OrderStatus.PENDING);
         }
+
+        return order;
     }
 
     @Override
+    @Transactional
     public boolean updateOrder(Order order) {
+        Order existingOrder = order.getStatus() != null ? getOrderById(order.getId()) : null;
+
         // If status changes to PAID/COMPLETED/CANCELLED, remove the expire key
         if (order.getStatus() == OrderStatus.PAID || order.getStatus() == OrderStatus.COMPLETED
                 || order.getStatus() == OrderStatus.CANCELLED) {
             removeOrderExpireKey(order.getId());
 
             // Handle coupon status based on order status change
-            Order existingOrder = getOrderById(order.getId());
             if (existingOrder != null && existingOrder.getUserCouponId() != null) {
                 if (order.getStatus() == OrderStatus.PAID || order.getStatus() == OrderStatus.COMPLETED) {
                     markCouponUsed(existingOrder.getUserCouponId());
@@ -342,24 +319,60 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
                     unlockCoupon(existingOrder.getUserCouponId());
                 }
             }
+        }
 
-            // Push notification for order status change
-            if (notificationService != null && existingOrder != null) {
-                notificationService.notifyOrderStatusChange(existingOrder.getUserId(), order.getId(), order.getStatus());
+        boolean result;
+        if (existingOrder != null && order.getStatus() == OrderStatus.CANCELLED
+                && existingOrder.getStatus() != OrderStatus.CANCELLED) {
+            // Conditional update so concurrent cancels (user + timeout) give the stock back only once
+            result = update(order, new LambdaUpdateWrapper<Order>()
+                    .eq(Order::getId, order.getId())
+                    .ne(Order::getStatus, OrderStatus.CANCELLED));
+            if (result) {
+                releaseStock(existingOrder);
             }
+        } else if (existingOrder != null && order.getStatus() != existingOrder.getStatus()) {
+            // Conditional on the status read above, so concurrent transitions (a retried payment
+            // callback racing the user) apply the rollup delta only once
+            result = update(order, new LambdaUpdateWrapper<Order>()
+                    .eq(Order::getId, order.getId())
+                    .eq(Order::getStatus, existingOrder.getStatus()));
+        } else {
+            result = updateById(order);
         }
-
-        return updateById(order);
+        // Keep the daily sales rollup in step with PAID/COMPLETED transitions
+        if (result && existingOrder != null) {
+            salesRollupService.applyStatusChange(existingOrder, order.getStatus());
+        }
+        // Push notification only for a transition that was actually written
+        if (result && notificationService != null && existingOrder != null
+                && (order.getStatus() == OrderStatus.PAID || order.getStatus() == OrderStatus.COMPLETED
+                    || order.getStatus() == OrderStatus.CANCELLED)) {
+            notificationService.notifyOrderStatusChange(existingOrder.getUserId(), order.getId(), order.getStatus());
+        }
+        return result;
     }
 
     @Override
+    @Transactional
     public boolean deleteOrder(Long id) {
-        return removeById(id);
+        Order existingOrder = getOrderById(id);
+        boolean result = removeById(id);
+        if (result) {
+            salesRollupService.applyOrderRemoved(existingOrder);
+        }
+        return result;
     }
 
     @Override
+    @Transactional
     public boolean deleteBatchOrders(List<Long> ids) {
-        return removeByIds(ids);
+        List<Order> existingOrders = listByIds(ids);
+        boolean result = removeByIds(ids);
+        if (result) {
+            existingOrders.forEach(salesRollupService::applyOrderRemoved);
+        }
+        return result;
     }
 
     @Override
@@ -399,23 +412,17 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
 
     /**
      * 锁定优惠券（下单时 AVAILABLE → LOCKED）
-     * 使用 Redis 分布式锁防止并发双重预订
+     * 条件 UPDATE 的行锁持有到下单事务结束，并发的另一笔订单等待后匹配 0 行，不会重复锁定同一张券
      */
     private void lockCoupon(Long userCouponId) {
         if (userCouponId == null) return;
-        String couponLockKey = "lock:coupon:" + userCouponId;
-        boolean locked = tryLock(couponLockKey, 3);
+        boolean locked = userCouponService.lambdaUpdate()
+                .eq(UserCoupon::getId, userCouponId)
+                .eq(UserCoupon::getStatus, CouponStatus.AVAILABLE)
+                .set(UserCoupon::getStatus, CouponStatus.LOCKED)
+                .update();
         if (!locked) {
-            throw new RuntimeException("优惠券正在被使用，请稍后再试");
-        }
-        try {
-            UserCoupon uc = userCouponService.getUserCouponById(userCouponId);
-            if (uc != null && uc.getStatus() == CouponStatus.AVAILABLE) {
-                uc.setStatus(CouponStatus.LOCKED);
-                userCouponService.updateUserCoupon(uc);
-            }
-        } finally {
-            releaseLock(couponLockKey);
+            throw new RuntimeException("优惠券不可用或正在被使用");
         }
     }
 
@@ -444,6 +451,42 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
         }
     }
 
+    /**
+     * 扣减商品库存和店铺库存（单条条件 UPDATE，受影响行数为 0 即库存不足）
+     * 失败时抛出异常回滚整个下单事务
+     */
+    private void reserveStock(Long storeId, Long productId, int quantity, String productName) {
+        if (!productService.deductStock(productId, quantity)) {
+            throw new RuntimeException("商品库存不足: " + productName);
+        }
+        if (storeId != null && !storeProductService.deductStoreStock(storeId, productId, quantity)
+                && storeProductService.getByStoreIdAndProductId(storeId, productId) != null) {
+            throw new RuntimeException("店铺库存不足: " + productName);
+        }
+    }
+
+    /**
+     * 归还已取消订单占用的库存：热点商品归还到 Redis，其余按增量回补商品库存和店铺库存
+     */
+    private void releaseStock(Order order) {
+        List<OrderItem> items = orderItemService.getOrderItemsByOrderId(order.getId());
+        if (items.isEmpty() && order.getProductId() != null && order.getQuantity() != null) {
+            OrderItem single = new OrderItem();
+            single.setProductId(order.getProductId());
+            single.setQuantity(order.getQuantity());
+            items = List.of(single);
+        }
+        for (OrderItem item : items) {
+            if (hotStockService.release(order.getStoreId(), item.getProductId(), item.getQuantity())) {
+                continue;
+            }
+            productService.adjustStock(item.getProductId(), item.getQuantity());
+            if (order.getStoreId() != null) {
+                storeProductService.adjustStoreStock(order.getStoreId(), item.getProductId(), item.getQuantity());
+            }
+        }
+    }
+
     /**
      * 设置订单过期 Redis Key（30分钟后过期 → 自动取消订单）
      */
@@ -463,26 +506,4 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
             redisTemplate.delete(key);
         }
     }
-
-    /**
-     * Redis 分布式锁 — 获取锁
-     * @param lockKey 锁的 key
-     * @param expireSeconds 锁的过期时间（秒），防止死锁
-     * @return 是否获取成功
-     */
-    private boolean tryLock(String lockKey, int expireSeconds) {
-        if (redisTemplate == null) return true; // Graceful degradation without Redis
-        Boolean result = redisTemplate.opsForValue()
-                .setIfAbsent(lockKey, "1", expireSeconds, TimeUnit.SECONDS);
-        return Boolean.TRUE.equals(result);
-    }
-
-    /**
-     * Redis 分布式锁 — 释放锁
-     */
-    private void releaseLock(String lockKey) {
-        if (redisTemplate != null) {
-            redisTemplate.delete(lockKey);
-        }
-    }
 }
@@ -4,6 +4,7 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.supermarket.common.CursorPage;
 import com.supermarket.entity.Payment;
 import com.supermarket.enums.PaymentStatus;
 import com.supermarket.mapper.PaymentMapper;
@@ -59,6 +60,13 @@ public class PaymentServiceImpl extends ServiceImpl<PaymentMapper, Payment> impl
         return page(new Page<>(pageNum, pageSize), wrapper);
     }
 
+    @Override
+    public CursorPage<Payment> listByCursor(String cursor, int pageSize) {
+        LambdaQueryWrapper<Payment> wrapper = new LambdaQueryWrapper<>();
+        CursorPage.applyKeyset(wrapper, cursor, pageSize, Payment::getCreateTime, Payment::getId);
+        return CursorPage.of(list(wrapper), pageSize, Payment::getCreateTime, Payment::getId);
+    }
+
     @Override
     public boolean addPayment(Payment payment) {
         return save(payment);
@@ -4,44 +4,156 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.supermarket.common.ReadMarker;
+import com.supermarket.common.SingleFlight;
 import com.supermarket.entity.Product;
 import com.supermarket.mapper.ProductMapper;
+import com.supermarket.service.DistributedLockService;
+import com.supermarket.service.LocalCacheService;
 import com.supermarket.service.ProductService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.DefaultTypedTuple;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Service
 public class ProductServiceImpl extends ServiceImpl<ProductMapper, Product> implements ProductService {
 
     private static final int DEFAULT_STOCK_ALERT_THRESHOLD = 10;
-    private static final String CACHE_PRODUCT_ALL = "cache:product:all";
     private static final String CACHE_PRODUCT_ID = "cache:product:id:";
-    private static final String CACHE_PRODUCT_ON_SHELF = "cache:product:onShelf";
+    /** 列表缓存：商品ID → 商品 的 hash，加上按创建时间排序的 ID 索引（全部 / 上架） */
+    private static final String CACHE_PRODUCT_LIST_DATA = "cache:product:list:data";
+    private static final String CACHE_PRODUCT_LIST_INDEX = "cache:product:list:index";
+    private static final String CACHE_PRODUCT_LIST_ON_SHELF = "cache:product:list:onShelf";
+    /** 列表缓存已完整加载的标记，先于数据过期，过期后下次读取整体重建 */
+    private static final String CACHE_PRODUCT_LIST_READY = "cache:product:list:ready";
+    private static final int STATUS_ON_SHELF = 1;
+    /** 列表缓存剩余有效期低于该值时由定时任务提前重建 */
+    private static final long REFRESH_AHEAD_SECONDS = 90;
+    private static final String REFRESH_LOCK_KEY = "lock:cache:refresh:product:list";
+    /** 列表缓存读取标记，只有最近一个有效期内被读过的列表才提前重建 */
+    private static final String CACHE_PRODUCT_LIST_READ = "cache:product:list:read";
+    private static final Duration READ_MARK_INTERVAL = Duration.ofSeconds(10);
+
+    /**
+     * 原子替换列表缓存：KEYS[1..3]=临时 data/index/onShelf，KEYS[4..6]=对应正式 key，KEYS[7]=就绪标记；
+     * ARGV[1]=数据过期秒数，ARGV[2]=就绪标记过期秒数。临时 key 不存在（列表为空）时删除正式 key
+     */
+    private static final RedisScript<Long> SWAP_LIST_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, 3 do\n"
+            + "  if redis.call('EXISTS', KEYS[i]) == 1 then\n"
+            + "    redis.call('RENAME', KEYS[i], KEYS[i + 3])\n"
+            + "    redis.call('EXPIRE', KEYS[i + 3], ARGV[1])\n"
+            + "  else\n"
+            + "    redis.call('DEL', KEYS[i + 3])\n"
+            + "  end\n"
+            + "end\n"
+            + "redis.call('SET', KEYS[7], '1', 'EX', ARGV[2])\n"
+            + "return 1", Long.class);
+
+    private static final StringRedisSerializer STRING_SERIALIZER = new StringRedisSerializer();
+
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final ReadMarker listReadMarker = new ReadMarker(CACHE_PRODUCT_LIST_READ,
+            Duration.ofMinutes(CACHE_TTL_MINUTES), READ_MARK_INTERVAL);
     private static final long CACHE_TTL_MINUTES = 10;
 
+    @Autowired
+    private LocalCacheService localCacheService;
+
+    @Autowired
+    private DistributedLockService distributedLockService;
+
     @Autowired(required = false)
     private RedisTemplate<String, Object> redisTemplate;
 
     @Override
     public Product getProductById(Long id) {
+        Product local = localCacheService.get(LocalCacheService.PRODUCT, id);
+        if (local != null) return local;
         if (redisTemplate != null) {
             @SuppressWarnings("unchecked")
             Product cached = (Product) redisTemplate.opsForValue().get(CACHE_PRODUCT_ID + id);
-            if (cached != null) return cached;
+            if (cached != null) {
+                localCacheService.put(LocalCacheService.PRODUCT, id, cached);
+                return cached;
+            }
         }
         LambdaQueryWrapper<Product> wrapper = new LambdaQueryWrapper<>();
         wrapper.eq(Product::getId, id);
         Product product = getOne(wrapper);
-        if (product != null && redisTemplate != null) {
-            redisTemplate.opsForValue().set(CACHE_PRODUCT_ID + id, product, CACHE_TTL_MINUTES, TimeUnit.MINUTES);
+        if (product != null) {
+            localCacheService.put(LocalCacheService.PRODUCT, id, product);
+            if (redisTemplate != null) {
+                redisTemplate.opsForValue().set(CACHE_PRODUCT_ID + id, product, CACHE_TTL_MINUTES, TimeUnit.MINUTES);
+            }
         }
         return product;
     }
 
+    @Override
+    public Map<Long, Product> getProductMapByIds(Collection<Long> ids) {
+        Map<Long, Product> result = new HashMap<>();
+        List<Long> idList = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            Product local = localCacheService.get(LocalCacheService.PRODUCT, id);
+            if (local != null) {
+                result.put(id, local);
+            } else {
+                idList.add(id);
+            }
+        }
+        if (idList.isEmpty()) return result;
+
+        List<Long> missing = idList;
+        if (redisTemplate != null) {
+            List<Object> cached = redisTemplate.opsForValue().multiGet(
+                    idList.stream().map(id -> CACHE_PRODUCT_ID + id).collect(Collectors.toList()));
+            missing = new ArrayList<>();
+            for (int i = 0; i < idList.size(); i++) {
+                Object hit = cached != null ? cached.get(i) : null;
+                if (hit instanceof Product) {
+                    result.put(idList.get(i), (Product) hit);
+                    localCacheService.put(LocalCacheService.PRODUCT, idList.get(i), hit);
+                } else {
+                    missing.add(idList.get(i));
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Product product : listByIds(missing)) {
+                result.put(product.getId(), product);
+                localCacheService.put(LocalCacheService.PRODUCT, product.getId(), product);
+                if (redisTemplate != null) {
+                    redisTemplate.opsForValue().set(CACHE_PRODUCT_ID + product.getId(), product, CACHE_TTL_MINUTES, TimeUnit.MINUTES);
+                }
+            }
+        }
+        return result;
+    }
+
     @Override
     public Product getProductByName(String name) {
         LambdaQueryWrapper<Product> wrapper = new LambdaQueryWrapper<>();
@@ -91,7 +203,16 @@ public class ProductServiceImpl extends ServiceImpl<ProductMapper, Product> impl
     @Override
     public boolean addProduct(Product product) {
         boolean result = save(product);
-        if (result) evictProductCache();
+        if (result) patchListCache(product.getId());
+        return result;
+    }
+
+    @Override
+    @Transactional
+    public boolean addProductsBatch(List<Product> products) {
+        if (products == null || products.isEmpty()) return true;
+        boolean result = saveBatch(products);
+        if (result) patchListCache(products.stream().map(Product::getId).collect(Collectors.toList()));
         return result;
     }
 
@@ -99,10 +220,8 @@ public class ProductServiceImpl extends ServiceImpl<ProductMapper, Product> impl
     public boolean updateProduct(Product product) {
         boolean result = updateById(product);
         if (result) {
-            evictProductCache();
-            if (product.getId() != null && redisTemplate != null) {
-                redisTemplate.delete(CACHE_PRODUCT_ID + product.getId());
-            }
+            patchListCache(product.getId());
+            evictProductById(product.getId());
         }
         return result;
     }
@@ -111,10 +230,8 @@ public class ProductServiceImpl extends ServiceImpl<ProductMapper, Product> impl
     public boolean deleteProduct(Long id) {
         boolean result = removeById(id);
         if (result) {
-            evictProductCache();
-            if (redisTemplate != null) {
-                redisTemplate.delete(CACHE_PRODUCT_ID + id);
-            }
+            patchListCache(id);
+            evictProductById(id);
         }
         return result;
     }
@@ -122,47 +239,249 @@ public class ProductServiceImpl extends ServiceImpl<ProductMapper, Product> impl
     @Override
     public boolean deleteBatchProducts(List<Long> ids) {
         boolean result = removeByIds(ids);
-        if (result) evictProductCache();
+        if (result) {
+            ids.forEach(id -> {
+                patchListCache(id);
+                evictProductById(id);
+            });
+        }
         return result;
     }
 
-    private void evictProductCache() {
-        if (redisTemplate != null) {
-            redisTemplate.delete(CACHE_PRODUCT_ALL);
-            redisTemplate.delete(CACHE_PRODUCT_ON_SHELF);
+    @Override
+    public boolean deductStock(Long productId, int quantity) {
+        if (productId == null || quantity <= 0) return false;
+        boolean result = baseMapper.deductStock(productId, quantity) > 0;
+        if (result) {
+            patchListCache(productId);
+            evictProductById(productId);
         }
+        return result;
     }
 
     @Override
-    @SuppressWarnings("unchecked")
-    public List<Product> listAll() {
-        if (redisTemplate != null) {
-            List<Product> cached = (List<Product>) redisTemplate.opsForValue().get(CACHE_PRODUCT_ALL);
-            if (cached != null) return cached;
+    public boolean adjustStock(Long productId, int delta) {
+        if (productId == null || delta == 0) return false;
+        boolean result = baseMapper.adjustStock(productId, delta) > 0;
+        if (result) {
+            patchListCache(productId);
+            evictProductById(productId);
         }
-        LambdaQueryWrapper<Product> wrapper = new LambdaQueryWrapper<>();
-        wrapper.orderByDesc(Product::getCreateTime);
-        List<Product> products = list(wrapper);
-        if (redisTemplate != null) {
-            redisTemplate.opsForValue().set(CACHE_PRODUCT_ALL, products, CACHE_TTL_MINUTES, TimeUnit.MINUTES);
+        return result;
+    }
+
+    @Override
+    public boolean deductStockBatch(Map<Long, Integer> quantities) {
+        if (quantities == null || quantities.isEmpty()) return true;
+        if (quantities.values().stream().anyMatch(qty -> qty == null || qty <= 0)) return false;
+        // MyBatis-Plus probes Map parameters with String keys, which a TreeMap<Long, ?> cannot compare
+        boolean result = baseMapper.deductStockBatch(new HashMap<>(quantities)) == quantities.size();
+        if (result) {
+            List<Long> ids = new ArrayList<>(quantities.keySet());
+            patchListCache(ids);
+            ids.forEach(this::evictProductById);
+        }
+        return result;
+    }
+
+    @Override
+    public int resyncStockFromStores(Collection<Long> productIds) {
+        if (productIds == null || productIds.isEmpty()) return 0;
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(productIds));
+        int rows = baseMapper.resyncStockFromStores(ids);
+        if (rows > 0) {
+            patchListCache(ids);
+            ids.forEach(this::evictProductById);
+        }
+        return rows;
+    }
+
+    /**
+     * 单个商品变更后修补列表缓存中的对应条目（而不是整体删除列表缓存）
+     * 在事务中调用时推迟到提交之后，按主键重新读取一行写回
+     */
+    private void patchListCache(Long id) {
+        if (id != null) patchListCache(List.of(id));
+    }
+
+    /**
+     * 批量修补：提交后用一条 IN 查询重新读取这些商品
+     */
+    private void patchListCache(List<Long> ids) {
+        if (redisTemplate == null || ids.isEmpty()) return;
+        runAfterCommit(() -> patchListCacheNow(ids));
+    }
+
+    /**
+     * 在事务中调用时推迟到提交之后执行，否则立即执行
+     */
+    private static void runAfterCommit(Runnable task) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        } else {
+            task.run();
+        }
+    }
+
+    private void patchListCacheNow(List<Long> ids) {
+        // Not loaded yet: the next reader builds it from the database
+        if (!Boolean.TRUE.equals(redisTemplate.hasKey(CACHE_PRODUCT_LIST_READY))) return;
+        Map<Long, Product> products = listByIds(ids).stream().collect(Collectors.toMap(Product::getId, p -> p));
+        for (Long id : ids) {
+            String member = id.toString();
+            Product product = products.get(id);
+            if (product == null) {
+                redisTemplate.opsForHash().delete(CACHE_PRODUCT_LIST_DATA, member);
+                redisTemplate.opsForZSet().remove(CACHE_PRODUCT_LIST_INDEX, member);
+                redisTemplate.opsForZSet().remove(CACHE_PRODUCT_LIST_ON_SHELF, member);
+                continue;
+            }
+            redisTemplate.opsForHash().put(CACHE_PRODUCT_LIST_DATA, member, product);
+            redisTemplate.opsForZSet().add(CACHE_PRODUCT_LIST_INDEX, member, listScore(product));
+            if (isOnShelf(product)) {
+                redisTemplate.opsForZSet().add(CACHE_PRODUCT_LIST_ON_SHELF, member, listScore(product));
+            } else {
+                redisTemplate.opsForZSet().remove(CACHE_PRODUCT_LIST_ON_SHELF, member);
+            }
+        }
+    }
+
+    /**
+     * 按索引顺序从列表缓存读取商品
+     * @return 缓存未加载或 hash 与索引不一致时返回 null
+     */
+    private List<Product> readListCache(String indexKey) {
+        if (redisTemplate == null || !Boolean.TRUE.equals(redisTemplate.hasKey(CACHE_PRODUCT_LIST_READY))) {
+            return null;
+        }
+        Set<Object> ids = redisTemplate.opsForZSet().reverseRange(indexKey, 0, -1);
+        if (ids == null) return null;
+        List<Product> products = new ArrayList<>(ids.size());
+        if (ids.isEmpty()) return products;
+        for (Object value : redisTemplate.opsForHash().multiGet(CACHE_PRODUCT_LIST_DATA, new ArrayList<>(ids))) {
+            if (!(value instanceof Product)) return null;
+            products.add((Product) value);
         }
         return products;
     }
 
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void rebuildListCache(List<Product> products) {
+        if (redisTemplate == null) return;
+        // Build into private temp keys; the live keys are only replaced by the atomic swap below
+        String suffix = ":tmp:" + UUID.randomUUID();
+        String dataKey = CACHE_PRODUCT_LIST_DATA + suffix;
+        String indexKey = CACHE_PRODUCT_LIST_INDEX + suffix;
+        String onShelfKey = CACHE_PRODUCT_LIST_ON_SHELF + suffix;
+        List<String> tmpKeys = List.of(dataKey, indexKey, onShelfKey);
+        if (!products.isEmpty()) {
+            Map<String, Object> data = new HashMap<>();
+            Set<ZSetOperations.TypedTuple<Object>> index = new HashSet<>();
+            Set<ZSetOperations.TypedTuple<Object>> onShelf = new HashSet<>();
+            for (Product product : products) {
+                String member = product.getId().toString();
+                data.put(member, product);
+                index.add(new DefaultTypedTuple<>(member, listScore(product)));
+                if (isOnShelf(product)) {
+                    onShelf.add(new DefaultTypedTuple<>(member, listScore(product)));
+                }
+            }
+            redisTemplate.opsForHash().putAll(dataKey, data);
+            redisTemplate.opsForZSet().add(indexKey, index);
+            if (!onShelf.isEmpty()) {
+                redisTemplate.opsForZSet().add(onShelfKey, onShelf);
+            }
+            // Temp keys of a builder that dies before the swap expire on their own
+            for (String key : tmpKeys) {
+                redisTemplate.expire(key, CACHE_TTL_MINUTES, TimeUnit.MINUTES);
+            }
+        }
+        List<String> keys = new ArrayList<>(tmpKeys);
+        keys.addAll(List.of(CACHE_PRODUCT_LIST_DATA, CACHE_PRODUCT_LIST_INDEX, CACHE_PRODUCT_LIST_ON_SHELF,
+                CACHE_PRODUCT_LIST_READY));
+        // Data outlives the ready marker, so a reader never sees the marker without the data
+        redisTemplate.execute(SWAP_LIST_SCRIPT, STRING_SERIALIZER, (RedisSerializer) STRING_SERIALIZER, keys,
+                String.valueOf(TimeUnit.MINUTES.toSeconds(CACHE_TTL_MINUTES + 1)),
+                String.valueOf(TimeUnit.MINUTES.toSeconds(CACHE_TTL_MINUTES)));
+    }
+
+    /**
+     * 列表按创建时间倒序，索引分值取创建时间毫秒数
+     */
+    private static double listScore(Product product) {
+        return product.getCreateTime() != null
+                ? product.getCreateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0;
+    }
+
+    private static boolean isOnShelf(Product product) {
+        return product.getStatus() != null && product.getStatus() == STATUS_ON_SHELF;
+    }
+
+    /**
+     * 失效单个商品的 Redis 缓存和所有节点的本地缓存
+     * 在事务中调用时推迟到提交之后：提交前失效的话，并发读取会把未提交前的旧库存重新缓存一个 TTL
+     */
+    private void evictProductById(Long id) {
+        if (id == null) return;
+        runAfterCommit(() -> {
+            if (redisTemplate != null) {
+                redisTemplate.delete(CACHE_PRODUCT_ID + id);
+            }
+            localCacheService.evict(LocalCacheService.PRODUCT, id);
+        });
+    }
+
+    @Override
+    public List<Product> listAll() {
+        listReadMarker.mark(redisTemplate);
+        List<Product> cached = readListCache(CACHE_PRODUCT_LIST_INDEX);
+        if (cached != null) return cached;
+        // Only one caller per node rebuilds; concurrent callers wait for its result
+        return singleFlight.execute(CACHE_PRODUCT_LIST_READY, () -> {
+            List<Product> rebuilt = readListCache(CACHE_PRODUCT_LIST_INDEX);
+            return rebuilt != null ? rebuilt : loadListCache();
+        });
+    }
+
     @Override
-    @SuppressWarnings("unchecked")
     public List<Product> getOnShelfProducts() {
+        listReadMarker.mark(redisTemplate);
+        List<Product> cached = readListCache(CACHE_PRODUCT_LIST_ON_SHELF);
+        if (cached != null) return cached;
         if (redisTemplate != null) {
-            List<Product> cached = (List<Product>) redisTemplate.opsForValue().get(CACHE_PRODUCT_ON_SHELF);
-            if (cached != null) return cached;
+            // One full load fills both the full list and the on-shelf index
+            return listAll().stream().filter(ProductServiceImpl::isOnShelf).collect(Collectors.toList());
         }
         LambdaQueryWrapper<Product> wrapper = new LambdaQueryWrapper<>();
-        wrapper.eq(Product::getStatus, 1)
+        wrapper.eq(Product::getStatus, STATUS_ON_SHELF)
                .orderByDesc(Product::getCreateTime);
-        List<Product> products = list(wrapper);
-        if (redisTemplate != null) {
-            redisTemplate.opsForValue().set(CACHE_PRODUCT_ON_SHELF, products, CACHE_TTL_MINUTES, TimeUnit.MINUTES);
+        return list(wrapper);
+    }
+
+    @Override
+    public boolean refreshListCacheAhead() {
+        if (redisTemplate == null) return false;
+        Long ttl = redisTemplate.getExpire(CACHE_PRODUCT_LIST_READY, TimeUnit.SECONDS);
+        if (ttl == null || ttl < 0 || ttl > REFRESH_AHEAD_SECONDS) return false;
+        // A refresh resets the TTL itself, so hotness is judged by reads, not by the key still existing
+        if (!listReadMarker.wasRead(redisTemplate)) return false;
+        try (DistributedLockService.Lock lock = distributedLockService.tryLock(REFRESH_LOCK_KEY, Duration.ZERO)) {
+            if (lock == null) return false;
+            singleFlight.execute(CACHE_PRODUCT_LIST_READY, this::loadListCache);
+            return true;
         }
+    }
+
+    private List<Product> loadListCache() {
+        LambdaQueryWrapper<Product> wrapper = new LambdaQueryWrapper<>();
+        wrapper.orderByDesc(Product::getCreateTime);
+        List<Product> products = list(wrapper);
+        rebuildListCache(products);
         return products;
     }
 
@@ -170,7 +489,7 @@ public class ProductServiceImpl extends ServiceImpl<ProductMapper, Product> impl
     public List<Product> getLowStockProducts() {
         return list(new LambdaQueryWrapper<Product>()
             .apply("stock <= COALESCE(stock_alert_threshold, {0})", DEFAULT_STOCK_ALERT_THRESHOLD)
-            .eq(Product::getStatus, 1)
+            .eq(Product::getStatus, STATUS_ON_SHELF)
             .orderByAsc(Product::getStock));
     }
 }
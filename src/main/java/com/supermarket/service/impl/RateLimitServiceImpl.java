@@ -0,0 +1,174 @@
+package com.supermarket.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.supermarket.annotation.RateLimit;
+import com.supermarket.common.LocalTokenBucket;
+import com.supermarket.common.RedisScripts;
+import com.supermarket.service.RateLimitService;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Service
+public class RateLimitServiceImpl implements RateLimitService {
+
+    private static final String KEY_PREFIX = "rate_limit:";
+
+    /**
+     * 滑动窗口日志：KEYS[1]=有序集合（score 为请求时间）；ARGV[1]=上限，ARGV[2]=窗口毫秒，ARGV[3]=当前毫秒，ARGV[4]=本次请求成员
+     * 返回 {是否放行, 剩余次数, 需等待毫秒}
+     */
+    private static final RedisScript<List<Long>> SLIDING_WINDOW_SCRIPT = RedisScripts.listScript(
+            "local limit = tonumber(ARGV[1])\n"
+            + "local window = tonumber(ARGV[2])\n"
+            + "local now = tonumber(ARGV[3])\n"
+            + "redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now - window)\n"
+            + "local count = redis.call('ZCARD', KEYS[1])\n"
+            + "if count < limit then\n"
+            + "  redis.call('ZADD', KEYS[1], now, ARGV[4])\n"
+            + "  redis.call('PEXPIRE', KEYS[1], window)\n"
+            + "  return {1, limit - count - 1, 0}\n"
+            + "end\n"
+            + "local oldest = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES')\n"
+            + "return {0, 0, tonumber(oldest[2]) + window - now}");
+
+    /**
+     * 令牌桶：KEYS[1]=hash（tokens 剩余令牌，ts 上次补充时间）；ARGV[1]=容量，ARGV[2]=每毫秒补充令牌数，ARGV[3]=当前毫秒
+     * 返回 {是否放行, 剩余令牌, 需等待毫秒}
+     */
+    private static final RedisScript<List<Long>> TOKEN_BUCKET_SCRIPT = RedisScripts.listScript(
+            "local capacity = tonumber(ARGV[1])\n"
+            + "local rate = tonumber(ARGV[2])\n"
+            + "local now = tonumber(ARGV[3])\n"
+            + "local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')\n"
+            + "local tokens = tonumber(state[1]) or capacity\n"
+            + "local ts = tonumber(state[2]) or now\n"
+            + "if now > ts then\n"
+            + "  tokens = math.min(capacity, tokens + (now - ts) * rate)\n"
+            + "  ts = now\n"
+            + "end\n"
+            + "local allowed = 0\n"
+            + "local retry = 0\n"
+            + "if tokens >= 1 then\n"
+            + "  tokens = tokens - 1\n"
+            + "  allowed = 1\n"
+            + "else\n"
+            + "  retry = math.ceil((1 - tokens) / rate)\n"
+            + "end\n"
+            + "redis.call('HMSET', KEYS[1], 'tokens', string.format('%.6f', tokens), 'ts', string.format('%.0f', ts))\n"
+            + "redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / rate) + 1000)\n"
+            + "return {allowed, math.floor(tokens), retry}");
+
+    private static final StringRedisSerializer STRING_SERIALIZER = new StringRedisSerializer();
+
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${rate-limit.local.enabled:true}")
+    private boolean localEnabled;
+
+    @Value("${rate-limit.local.max-keys:100000}")
+    private long localMaxKeys;
+
+    /**
+     * 本地预过滤层：每个 key 一个与规则同参数的令牌桶，单节点放行量不会超过全局上限，
+     * 本地已超限的请求在 Redis 中必然也会被拒绝，直接本地拒绝不再访问 Redis；
+     * Redis 拒绝时把等待时间同步到本地，窗口内的后续请求全部本地拒绝
+     */
+    private Cache<String, LocalTokenBucket> localBuckets;
+
+    @PostConstruct
+    public void init() {
+        localBuckets = Caffeine.newBuilder()
+                .maximumSize(localMaxKeys)
+                .expireAfterAccess(10, TimeUnit.MINUTES)
+                .build();
+    }
+
+    @Override
+    public Decision tryAcquire(String name, String clientId, RateLimit rule) {
+        if (redisTemplate == null) {
+            return Decision.UNLIMITED;
+        }
+        boolean tokenBucket = rule.algorithm() == RateLimit.Algorithm.TOKEN_BUCKET;
+        int capacity = tokenBucket && rule.burst() > 0 ? rule.burst() : rule.maxRequests();
+        long windowMillis = rule.windowSeconds() * 1000L;
+        String key = KEY_PREFIX + (tokenBucket ? "tb:" : "sw:") + name + ":" + clientId;
+
+        LocalTokenBucket local = null;
+        if (localEnabled) {
+            local = localBuckets.get(key, k -> new LocalTokenBucket(
+                    rule.maxRequests(), TimeUnit.MILLISECONDS.toNanos(windowMillis), capacity));
+            long waitNanos = local.tryAcquire(System.nanoTime());
+            if (waitNanos > 0) {
+                record(name, "rejected_local");
+                return new Decision(false, 0, TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        List<Long> result;
+        try {
+            if (tokenBucket) {
+                double ratePerMilli = (double) rule.maxRequests() / windowMillis;
+                result = runScript(TOKEN_BUCKET_SCRIPT, key, capacity, ratePerMilli, now);
+            } else {
+                result = runScript(SLIDING_WINDOW_SCRIPT, key,
+                        rule.maxRequests(), windowMillis, now, now + "-" + UUID.randomUUID());
+            }
+        } catch (RuntimeException e) {
+            // Fail open: an unavailable Redis must not take the API down with it
+            log.warn("限流判定失败，放行请求: name={}, {}", name, e.getMessage());
+            record(name, "error");
+            return Decision.UNLIMITED;
+        }
+        Decision decision = new Decision(toLong(result.get(0)) == 1, toLong(result.get(1)), toLong(result.get(2)));
+        if (!decision.allowed() && local != null) {
+            local.blockUntil(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(decision.retryAfterMillis()));
+        }
+        record(name, decision.allowed() ? "allowed" : "rejected");
+        return decision;
+    }
+
+    /**
+     * 指标 rate_limit.decisions{name, outcome}，outcome 为 allowed / rejected / rejected_local / error；只按规则名打标签，不按用户/IP，避免标签基数失控
+     */
+    private void record(String name, String outcome) {
+        if (meterRegistry != null) {
+            meterRegistry.counter("rate_limit.decisions", "name", name, "outcome", outcome).increment();
+        }
+    }
+
+    /**
+     * 脚本参数统一按字符串序列化（值序列化器为 JSON，会给字符串加引号）
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private <T> T runScript(RedisScript<T> script, String key, Object... args) {
+        Object[] stringArgs = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            stringArgs[i] = String.valueOf(args[i]);
+        }
+        return (T) redisTemplate.execute((RedisScript) script, STRING_SERIALIZER, (RedisSerializer) STRING_SERIALIZER,
+                List.of(key), stringArgs);
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number n ? n.longValue() : Long.parseLong(String.valueOf(value));
+    }
+}
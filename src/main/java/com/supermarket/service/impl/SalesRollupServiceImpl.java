@@ -0,0 +1,85 @@
+package com.supermarket.service.impl;
+
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.supermarket.entity.Order;
+import com.supermarket.entity.SalesDailyRollup;
+import com.supermarket.enums.OrderStatus;
+import com.supermarket.mapper.SalesDailyRollupMapper;
+import com.supermarket.service.DistributedLockService;
+import com.supermarket.service.SalesRollupService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class SalesRollupServiceImpl extends ServiceImpl<SalesDailyRollupMapper, SalesDailyRollup> implements SalesRollupService {
+
+    /** 无店铺订单在汇总表中的 store_id */
+    private static final long NO_STORE_ID = 0L;
+    private static final String REBUILD_LOCK_KEY = "lock:sales-rollup:rebuild";
+
+    private final DistributedLockService distributedLockService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public void applyStatusChange(Order existing, OrderStatus newStatus) {
+        if (existing == null || newStatus == null) return;
+        boolean wasCounted = isCounted(existing.getStatus());
+        boolean nowCounted = isCounted(newStatus);
+        if (wasCounted == nowCounted) return;
+        applyDelta(existing, nowCounted ? 1 : -1);
+    }
+
+    @Override
+    public void applyOrderRemoved(Order existing) {
+        if (existing != null && isCounted(existing.getStatus())) {
+            applyDelta(existing, -1);
+        }
+    }
+
+    /**
+     * 整个重建持有分布式锁，多节点的定时任务和手动重建不会交错执行；锁在事务提交之后才释放
+     * 重建事务中 DELETE 对汇总表加的锁会挡住并发的增量更新直到提交，INSERT…SELECT 的加锁读会等待
+     * 进行中的订单更新，因此重建期间的订单状态变更只会被计入一次
+     */
+    @Override
+    public int rebuild() {
+        try (DistributedLockService.Lock lock = distributedLockService.tryLock(REBUILD_LOCK_KEY, Duration.ZERO)) {
+            if (lock == null) {
+                throw new RuntimeException("销量汇总正在重建，请稍后再试");
+            }
+            Integer rows = transactionTemplate.execute(status -> {
+                baseMapper.deleteAll();
+                return baseMapper.rebuildFromOrders();
+            });
+            return rows != null ? rows : 0;
+        }
+    }
+
+    @Override
+    public List<SalesDailyRollup> getDailyTotals(Long storeId, LocalDate from, LocalDate to) {
+        return baseMapper.selectDailyTotals(storeId, from, to);
+    }
+
+    @Override
+    public SalesDailyRollup getGrandTotal(Long storeId) {
+        return baseMapper.selectGrandTotal(storeId);
+    }
+
+    private void applyDelta(Order order, int sign) {
+        Long storeId = order.getStoreId() != null ? order.getStoreId() : NO_STORE_ID;
+        LocalDate saleDate = order.getCreateTime() != null ? order.getCreateTime().toLocalDate() : LocalDate.now();
+        BigDecimal amount = order.getTotalAmount() != null ? order.getTotalAmount() : BigDecimal.ZERO;
+        baseMapper.upsertDelta(storeId, saleDate, sign, sign > 0 ? amount : amount.negate());
+    }
+
+    private boolean isCounted(OrderStatus status) {
+        return status == OrderStatus.PAID || status == OrderStatus.COMPLETED;
+    }
+}
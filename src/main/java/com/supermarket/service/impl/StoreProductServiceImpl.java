@@ -4,27 +4,40 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.supermarket.common.CursorPage;
 import com.supermarket.entity.Product;
 import com.supermarket.entity.StoreProduct;
 import com.supermarket.mapper.StoreProductMapper;
+import com.supermarket.service.HotStockService;
 import com.supermarket.service.ProductService;
 import com.supermarket.service.StoreProductService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class StoreProductServiceImpl extends ServiceImpl<StoreProductMapper, StoreProduct> implements StoreProductService {
 
     private static final int STATUS_ON_SHELF = 1;
+    private static final int RECONCILE_BATCH_SIZE = 500;
 
     private final ProductService productService;
+    private final HotStockService hotStockService;
 
     @Override
     public StoreProduct getStoreProductById(Long id) {
@@ -63,60 +76,134 @@ public class StoreProductServiceImpl extends ServiceImpl<StoreProductMapper, Sto
     }
 
     @Override
+    public CursorPage<StoreProduct> listByCursor(Long storeId, String cursor, int pageSize) {
+        LambdaQueryWrapper<StoreProduct> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(storeId != null, StoreProduct::getStoreId, storeId);
+        CursorPage.applyKeyset(wrapper, cursor, pageSize, StoreProduct::getCreateTime, StoreProduct::getId);
+        return CursorPage.of(list(wrapper), pageSize, StoreProduct::getCreateTime, StoreProduct::getId);
+    }
+
+    @Override
+    @Transactional
     public boolean addStoreProduct(StoreProduct storeProduct) {
+        Set<Long> stocked = stockedProductIds(List.of(storeProduct));
         boolean result = save(storeProduct);
         if (result && storeProduct.getProductId() != null) {
-            syncProductTotalStock(storeProduct.getProductId());
+            applyAddedStock(Map.of(storeProduct.getProductId(), stockOf(storeProduct)), stocked);
         }
         return result;
     }
 
     @Override
+    @Transactional
     public boolean updateStoreProduct(StoreProduct storeProduct) {
+        StoreProduct before = getById(storeProduct.getId());
         boolean result = updateById(storeProduct);
-        if (result && storeProduct.getProductId() != null) {
-            syncProductTotalStock(storeProduct.getProductId());
+        if (result && before != null) {
+            Long productId = storeProduct.getProductId() != null ? storeProduct.getProductId() : before.getProductId();
+            if (!Objects.equals(productId, before.getProductId())) {
+                // Moved to another product: rare enough to re-sum both totals
+                productService.resyncStockFromStores(List.of(before.getProductId(), productId));
+                hotStockService.reconcile(null, before.getProductId());
+                hotStockService.reconcile(null, productId);
+            } else if (storeProduct.getStoreStock() != null) {
+                adjustTotalStock(productId, storeProduct.getStoreStock() - stockOf(before));
+            }
+        }
+        if (result) {
+            reconcileHotStock(storeProduct.getStoreId() != null ? storeProduct : getById(storeProduct.getId()));
         }
         return result;
     }
 
     @Override
+    @Transactional
     public boolean deleteStoreProduct(Long id) {
         StoreProduct sp = getById(id);
         boolean result = removeById(id);
         if (result && sp != null && sp.getProductId() != null) {
-            syncProductTotalStock(sp.getProductId());
+            adjustTotalStock(sp.getProductId(), -stockOf(sp));
+            reconcileHotStock(sp);
         }
         return result;
     }
 
     @Override
+    @Transactional
     public boolean deleteBatchStoreProducts(List<Long> ids) {
         List<StoreProduct> items = listByIds(ids);
         boolean result = removeByIds(ids);
         if (result) {
-            items.stream()
-                 .map(StoreProduct::getProductId)
-                 .distinct()
-                 .forEach(this::syncProductTotalStock);
+            Map<Long, Integer> deltas = new HashMap<>();
+            for (StoreProduct sp : items) {
+                if (sp.getProductId() != null) deltas.merge(sp.getProductId(), -stockOf(sp), Integer::sum);
+            }
+            deltas.forEach(this::adjustTotalStock);
         }
         return result;
     }
 
     @Override
-    public void syncProductTotalStock(Long productId) {
-        if (productId == null) return;
-        List<StoreProduct> storeProducts = getByProductId(productId);
-        int totalStock = storeProducts.stream()
-                .mapToInt(sp -> sp.getStoreStock() != null ? sp.getStoreStock() : 0)
-                .sum();
-        Product product = productService.getProductById(productId);
-        if (product != null) {
-            product.setStock(totalStock);
-            productService.updateProduct(product);
+    public int reconcileTotalStock() {
+        int repaired = 0;
+        List<Long> drifted;
+        do {
+            drifted = baseMapper.selectStockDriftProductIds(RECONCILE_BATCH_SIZE);
+            if (drifted.isEmpty()) break;
+            log.warn("总库存与店铺库存之和不一致，按店铺库存修复: {}", drifted);
+            repaired += productService.resyncStockFromStores(drifted);
+            drifted.forEach(productId -> hotStockService.reconcile(null, productId));
+        } while (drifted.size() == RECONCILE_BATCH_SIZE);
+        return repaired;
+    }
+
+    /**
+     * 店铺库存变化按相同增量同步到总商品库存（一条 UPDATE，与店铺库存变更在同一事务中）
+     */
+    private void adjustTotalStock(Long productId, int delta) {
+        if (productId == null || delta == 0) return;
+        if (productService.adjustStock(productId, delta)) {
+            hotStockService.reconcile(null, productId);
         }
     }
 
+    /**
+     * 新增店铺库存后同步总库存：商品已有店铺记录时按增量累加；
+     * 首次上架到店铺时总库存改为店铺库存之和（此前的总库存不属于任何店铺）
+     * @param added 商品ID → 新增的店铺库存
+     * @param stocked 新增之前已有店铺记录的商品ID
+     */
+    private void applyAddedStock(Map<Long, Integer> added, Set<Long> stocked) {
+        Set<Long> firstStocked = new HashSet<>();
+        added.forEach((productId, delta) -> {
+            if (stocked.contains(productId)) {
+                adjustTotalStock(productId, delta);
+            } else {
+                firstStocked.add(productId);
+            }
+        });
+        if (!firstStocked.isEmpty()) {
+            productService.resyncStockFromStores(firstStocked);
+            firstStocked.forEach(productId -> hotStockService.reconcile(null, productId));
+        }
+    }
+
+    /**
+     * 一条查询找出这些行涉及的商品中已有店铺记录的商品
+     */
+    private Set<Long> stockedProductIds(Collection<StoreProduct> rows) {
+        Set<Long> productIds = rows.stream()
+                .map(StoreProduct::getProductId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (productIds.isEmpty()) return new HashSet<>();
+        return new HashSet<>(baseMapper.selectStockedProductIds(productIds));
+    }
+
+    private static int stockOf(StoreProduct sp) {
+        return sp.getStoreStock() != null ? sp.getStoreStock() : 0;
+    }
+
     @Override
     @Transactional
     public StoreProduct addStoreProductWithName(String productName, StoreProduct storeProduct) {
@@ -135,8 +222,7 @@ public class StoreProductServiceImpl extends ServiceImpl<StoreProductMapper, Sto
             productService.addProduct(newProduct);
             storeProduct.setProductId(newProduct.getId());
         }
-        save(storeProduct);
-        syncProductTotalStock(storeProduct.getProductId());
+        addStoreProduct(storeProduct);
         return storeProduct;
     }
 
@@ -215,18 +301,111 @@ public class StoreProductServiceImpl extends ServiceImpl<StoreProductMapper, Sto
         return getOne(wrapper);
     }
 
+    @Override
+    public Map<Long, StoreProduct> getMapByStoreIdAndProductIds(Long storeId, Collection<Long> productIds) {
+        if (storeId == null || productIds == null || productIds.isEmpty()) return new HashMap<>();
+        return list(new LambdaQueryWrapper<StoreProduct>()
+                .eq(StoreProduct::getStoreId, storeId)
+                .in(StoreProduct::getProductId, productIds))
+                .stream()
+                .collect(Collectors.toMap(StoreProduct::getProductId, sp -> sp, (a, b) -> a));
+    }
+
     @Override
     @Transactional
     public boolean deductStoreStock(Long storeId, Long productId, int quantity) {
         if (storeId == null || productId == null || quantity <= 0) return false;
-        StoreProduct sp = getByStoreIdAndProductId(storeId, productId);
-        if (sp == null) return false;
-        int currentStock = sp.getStoreStock() != null ? sp.getStoreStock() : 0;
-        sp.setStoreStock(Math.max(0, currentStock - quantity));
-        boolean result = updateById(sp);
+        boolean result = baseMapper.deductStoreStock(storeId, productId, quantity) > 0;
         if (result) {
-            syncProductTotalStock(productId);
+            // The caller moved product stock by the same amount, so keep the product-level hot counter in step
+            hotStockService.reconcile(null, productId);
         }
         return result;
     }
+
+    @Override
+    @Transactional
+    public boolean adjustStoreStock(Long storeId, Long productId, int delta) {
+        if (storeId == null || productId == null || delta == 0) return false;
+        boolean result = baseMapper.adjustStoreStock(storeId, productId, delta) > 0;
+        if (result) {
+            hotStockService.reconcile(null, productId);
+        }
+        return result;
+    }
+
+    @Override
+    @Transactional
+    public boolean deductStoreStockBatch(Long storeId, Map<Long, Integer> quantities) {
+        if (storeId == null || quantities == null || quantities.isEmpty()) return true;
+        if (quantities.values().stream().anyMatch(qty -> qty == null || qty <= 0)) return false;
+        // MyBatis-Plus probes Map parameters with String keys, which a TreeMap<Long, ?> cannot compare
+        boolean result = baseMapper.deductStoreStockBatch(storeId, new HashMap<>(quantities)) == quantities.size();
+        if (result) {
+            // Product stock moved by the same amounts, so keep product-level hot counters in step
+            quantities.keySet().forEach(productId -> hotStockService.reconcile(null, productId));
+        }
+        return result;
+    }
+
+    /**
+     * 文件内合并到同一记录的行先在内存中累加，已有记录更新后校准热点库存计数器
+     */
+    @Override
+    @Transactional
+    public int mergeBatch(List<StoreProduct> rows) {
+        if (rows == null || rows.isEmpty()) return 0;
+        Set<Long> storeIds = rows.stream().map(StoreProduct::getStoreId).collect(Collectors.toSet());
+        Set<Long> productIds = rows.stream().map(StoreProduct::getProductId).collect(Collectors.toSet());
+        Map<String, StoreProduct> targets = new HashMap<>();
+        for (StoreProduct sp : list(new LambdaQueryWrapper<StoreProduct>()
+                .in(StoreProduct::getStoreId, storeIds)
+                .in(StoreProduct::getProductId, productIds))) {
+            targets.put(sp.getStoreId() + ":" + sp.getProductId(), sp);
+        }
+        // Added stock per product, taken before rows merged into one another are mutated
+        Map<Long, Integer> added = new HashMap<>();
+        for (StoreProduct row : rows) {
+            if (row.getProductId() != null) added.merge(row.getProductId(), stockOf(row), Integer::sum);
+        }
+        Set<Long> stocked = stockedProductIds(rows);
+        Map<Long, StoreProduct> updates = new LinkedHashMap<>();
+        List<StoreProduct> inserts = new ArrayList<>();
+        int merged = 0;
+        for (StoreProduct row : rows) {
+            String key = row.getStoreId() + ":" + row.getProductId();
+            StoreProduct target = targets.get(key);
+            if (target == null) {
+                if (row.getStoreStock() == null) row.setStoreStock(0);
+                if (row.getSafetyStock() == null) row.setSafetyStock(10);
+                if (row.getStatus() == null) row.setStatus(STATUS_ON_SHELF);
+                targets.put(key, row);
+                inserts.add(row);
+                continue;
+            }
+            int addedStock = row.getStoreStock() != null ? row.getStoreStock() : 0;
+            target.setStoreStock((target.getStoreStock() != null ? target.getStoreStock() : 0) + addedStock);
+            if (row.getStorePrice() != null) target.setStorePrice(row.getStorePrice());
+            if (row.getSafetyStock() != null) target.setSafetyStock(row.getSafetyStock());
+            if (row.getStatus() != null) target.setStatus(row.getStatus());
+            if (target.getId() != null) updates.put(target.getId(), target);
+            merged++;
+        }
+        saveBatch(inserts);
+        if (!updates.isEmpty()) {
+            updateBatchById(updates.values());
+            updates.values().forEach(this::reconcileHotStock);
+        }
+        applyAddedStock(added, stocked);
+        return merged;
+    }
+
+    /**
+     * 店铺库存被直接修改后，校准对应的热点库存计数器
+     */
+    private void reconcileHotStock(StoreProduct sp) {
+        if (sp != null && sp.getStoreId() != null && sp.getProductId() != null) {
+            hotStockService.reconcile(sp.getStoreId(), sp.getProductId());
+        }
+    }
 }
@@ -10,6 +10,7 @@ import com.supermarket.enums.UserRole;
 import com.supermarket.mapper.UserMapper;
 import com.supermarket.service.UserService;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -60,6 +61,15 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         return save(user);
     }
 
+    @Override
+    @Transactional
+    public boolean addUsersBatch(List<User> users) {
+        if (users == null || users.isEmpty()) return true;
+        // Each user gets its own salt, even when two plaintexts match
+        users.forEach(u -> u.setPassword(BCrypt.hashpw(u.getPassword())));
+        return saveBatch(users);
+    }
+
     @Override
     public boolean updateUser(User user) {
         // If password is provided, hash it; otherwise, preserve existing password
@@ -0,0 +1,47 @@
+package com.supermarket.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Schema(description = "Excel导入结果")
+public class ImportResultVO {
+
+    /** 错误明细最多返回的条数，超出部分只计入失败数 */
+    public static final int MAX_ERRORS = 1000;
+
+    @Schema(description = "新增行数")
+    private int successCount;
+
+    @Schema(description = "合并到已有记录的行数")
+    private int mergedCount;
+
+    @Schema(description = "失败行数")
+    private int failedCount;
+
+    @Schema(description = "失败行明细（最多1000条）")
+    private List<RowError> errors = new ArrayList<>();
+
+    public void addError(int row, String message) {
+        failedCount++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(new RowError(row, message));
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    @Schema(description = "导入失败行")
+    public static class RowError {
+
+        @Schema(description = "Excel行号")
+        private int row;
+
+        @Schema(description = "失败原因")
+        private String message;
+    }
+}
@@ -1,32 +1,118 @@
 package com.supermarket.websocket;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 /**
  * WebSocket通知处理器
  * 用于向客户端推送消息（订单状态变更、系统通知等）
+ * 多节点部署时每个节点只持有连到本节点的会话：连接建立时在 Redis 登记 用户→节点 路由，
+ * 推送给其他节点上的用户时发布到该节点的频道，由所属节点投递；广播只发布一次，各节点各自推送本地会话
+ * 未配置 Redis 时只推送本节点会话
+ * 会话包装为 ConcurrentWebSocketSessionDecorator：多线程发送时排队由一个线程写出，发送超时的会话被关闭，
+ * 缓冲超限时丢弃最早的消息；本地广播只构造一次 TextMessage，会话较多时分片交给广播线程池并行发送
  */
 @Slf4j
 @Component
 public class NotificationWebSocketHandler extends TextWebSocketHandler {
 
+    /** 广播频道，消息体为推送内容 */
+    public static final String BROADCAST_CHANNEL = "ws:broadcast";
+    /** 节点频道前缀，消息格式: {userId}\n{推送内容} */
+    private static final String NODE_CHANNEL_PREFIX = "ws:node:";
+    private static final String ROUTE_PREFIX = "ws:route:";
+    /** 路由过期时间，由定时任务续期，节点宕机后路由自动过期 */
+    private static final Duration ROUTE_TTL = Duration.ofSeconds(90);
+
+    /**
+     * 只删除仍指向本节点的路由（用户可能已重连到其他节点）：KEYS[1]=路由；ARGV[1]=节点ID
+     */
+    private static final RedisScript<Long> UNROUTE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end\n"
+            + "return 0", Long.class);
+
+    private static final StringRedisSerializer STRING_SERIALIZER = new StringRedisSerializer();
+
+    /** 本地广播每个并行分片的会话数，会话数不超过该值时直接在调用线程发送 */
+    private static final int BROADCAST_CHUNK = 200;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
     // userId -> WebSocketSession
-    private static final Map<String, WebSocketSession> SESSIONS = new ConcurrentHashMap<>();
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${websocket.send-time-limit-ms:5000}")
+    private int sendTimeLimit;
+
+    @Value("${websocket.buffer-size-limit:524288}")
+    private int bufferSizeLimit;
+
+    @Value("${websocket.broadcast-threads:4}")
+    private int broadcastThreads;
+
+    private ThreadPoolExecutor broadcastExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger seq = new AtomicInteger();
+        // Caller runs a chunk itself when the pool is saturated, so broadcasts never queue without bound
+        broadcastExecutor = new ThreadPoolExecutor(broadcastThreads, broadcastThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(broadcastThreads * 4),
+                r -> {
+                    Thread t = new Thread(r, "ws-broadcast-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        broadcastExecutor.shutdown();
+        broadcastExecutor.awaitTermination(10, TimeUnit.SECONDS);
+    }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
         String userId = getUserId(session);
         if (userId != null) {
-            SESSIONS.put(userId, session);
+            sessions.put(userId, new ConcurrentWebSocketSessionDecorator(session, sendTimeLimit, bufferSizeLimit,
+                    ConcurrentWebSocketSessionDecorator.OverflowStrategy.DROP));
+            registerRoute(userId);
             log.info("WebSocket连接建立: userId={}", userId);
         } else {
             log.warn("WebSocket连接建立但未获取到userId，拒绝连接");
@@ -37,8 +123,11 @@ public class NotificationWebSocketHandler extends TextWebSocketHandler {
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
         String userId = getUserId(session);
-        if (userId != null) {
-            SESSIONS.remove(userId);
+        if (userId == null) return;
+        // Only drop the mapping if it still points at this session, not a newer reconnect
+        WebSocketSession current = sessions.get(userId);
+        if (current != null && current.getId().equals(session.getId()) && sessions.remove(userId, current)) {
+            unregisterRoute(userId);
             log.info("WebSocket连接关闭: userId={}", userId);
         }
     }
@@ -50,40 +139,141 @@ public class NotificationWebSocketHandler extends TextWebSocketHandler {
     }
 
     /**
-     * 向指定用户推送消息
+     * 向指定用户推送消息：用户连在本节点时直接推送，否则按路由转发给所属节点
      */
     public void sendToUser(Long userId, String message) {
-        WebSocketSession session = SESSIONS.get(String.valueOf(userId));
-        if (session != null && session.isOpen()) {
-            try {
-                session.sendMessage(new TextMessage(message));
-                log.info("推送消息给用户{}: {}", userId, message);
-            } catch (IOException e) {
-                log.error("推送消息失败: userId={}, error={}", userId, e.getMessage());
-            }
+        String key = String.valueOf(userId);
+        if (sessions.containsKey(key) || redisTemplate == null) {
+            deliverLocal(key, message);
+            return;
+        }
+        byte[] node = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().get(bytes(ROUTE_PREFIX + key)));
+        if (node == null) {
+            return;
+        }
+        String owner = new String(node, StandardCharsets.UTF_8);
+        if (!owner.equals(nodeId)) {
+            publish(nodeChannel(owner), key + "\n" + message);
         }
     }
 
     /**
-     * 向所有在线用户广播消息
+     * 向所有在线用户广播消息：发布一次，各节点（包括本节点）收到后推送本地会话
      */
     public void broadcast(String message) {
-        SESSIONS.values().forEach(session -> {
-            if (session.isOpen()) {
-                try {
-                    session.sendMessage(new TextMessage(message));
-                } catch (IOException e) {
-                    log.error("广播消息失败: {}", e.getMessage());
-                }
+        if (redisTemplate == null) {
+            broadcastLocal(message);
+            return;
+        }
+        publish(BROADCAST_CHANNEL, message);
+    }
+
+    /**
+     * 推送给本节点上的用户会话
+     */
+    public void deliverLocal(String userId, String message) {
+        WebSocketSession session = sessions.get(userId);
+        if (session != null && session.isOpen() && send(session, new TextMessage(message))) {
+            log.info("推送消息给用户{}: {}", userId, message);
+        }
+    }
+
+    /**
+     * 推送给本节点的所有会话
+     */
+    public void broadcastLocal(String message) {
+        TextMessage textMessage = new TextMessage(message);
+        List<WebSocketSession> targets = sessions.values().stream()
+                .filter(WebSocketSession::isOpen)
+                .collect(Collectors.toList());
+        for (int from = 0; from < targets.size(); from += BROADCAST_CHUNK) {
+            List<WebSocketSession> chunk = targets.subList(from, Math.min(from + BROADCAST_CHUNK, targets.size()));
+            Runnable task = () -> chunk.forEach(session -> send(session, textMessage));
+            if (targets.size() <= BROADCAST_CHUNK) {
+                task.run();
+            } else {
+                broadcastExecutor.execute(task);
             }
-        });
+        }
+    }
+
+    /**
+     * 装饰器在其他线程正在写出时只把消息放入缓冲区，不会阻塞调用线程
+     * 发送超时时装饰器只标记并抛出异常，不会关闭会话，由这里关闭并移除会话和路由，客户端重连后恢复推送
+     */
+    private boolean send(WebSocketSession session, TextMessage message) {
+        try {
+            session.sendMessage(message);
+            return true;
+        } catch (SessionLimitExceededException e) {
+            log.warn("会话发送超限，关闭连接: sessionId={}, error={}", session.getId(), e.getMessage());
+            closeSession(session, e.getStatus());
+            return false;
+        } catch (IOException e) {
+            log.error("推送消息失败: sessionId={}, error={}", session.getId(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void closeSession(WebSocketSession session, CloseStatus status) {
+        String userId = getUserId(session);
+        if (userId != null && sessions.remove(userId, session)) {
+            unregisterRoute(userId);
+        }
+        try {
+            session.close(status);
+        } catch (IOException e) {
+            log.debug("关闭会话失败: sessionId={}, error={}", session.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 续期本节点所有在线用户的路由
+     */
+    public void refreshRoutes() {
+        sessions.keySet().forEach(this::registerRoute);
+    }
+
+    /**
+     * 本节点的转发频道
+     */
+    public String getNodeChannel() {
+        return nodeChannel(nodeId);
     }
 
     /**
-     * 获取当前在线用户数
+     * 获取本节点当前在线用户数
      */
     public int getOnlineCount() {
-        return (int) SESSIONS.values().stream().filter(WebSocketSession::isOpen).count();
+        return (int) sessions.values().stream().filter(WebSocketSession::isOpen).count();
+    }
+
+    private void registerRoute(String userId) {
+        if (redisTemplate == null) return;
+        redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.stringCommands().set(
+                bytes(ROUTE_PREFIX + userId), bytes(nodeId), Expiration.from(ROUTE_TTL),
+                RedisStringCommands.SetOption.upsert()));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void unregisterRoute(String userId) {
+        if (redisTemplate == null) return;
+        redisTemplate.execute(UNROUTE_SCRIPT, STRING_SERIALIZER, (RedisSerializer) STRING_SERIALIZER,
+                List.of(ROUTE_PREFIX + userId), nodeId);
+    }
+
+    private void publish(String channel, String message) {
+        // Send the raw string so listeners on other nodes need no JSON decoding
+        redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(bytes(channel), bytes(message)));
+    }
+
+    private static String nodeChannel(String nodeId) {
+        return NODE_CHANNEL_PREFIX + nodeId;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
     }
 
     private String getUserId(WebSocketSession session) {
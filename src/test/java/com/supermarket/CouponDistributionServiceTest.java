@@ -0,0 +1,162 @@
+package com.supermarket;
+
+import com.supermarket.entity.Coupon;
+import com.supermarket.entity.CouponDistribution;
+import com.supermarket.entity.User;
+import com.supermarket.entity.UserCoupon;
+import com.supermarket.enums.UserRole;
+import com.supermarket.mapper.UserCouponMapper;
+import com.supermarket.service.CouponDistributionService;
+import com.supermarket.service.CouponService;
+import com.supermarket.service.UserCouponService;
+import com.supermarket.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = "coupon.distribution.batch-size=3")
+class CouponDistributionServiceTest {
+
+    @Autowired
+    private CouponDistributionService couponDistributionService;
+
+    @Autowired
+    private CouponService couponService;
+
+    @Autowired
+    private UserCouponService userCouponService;
+
+    @Autowired
+    private UserService userService;
+
+    private Coupon createCoupon(String name) {
+        Coupon coupon = new Coupon();
+        coupon.setName(name);
+        coupon.setDiscount(new BigDecimal("5.00"));
+        coupon.setTotalCount(100);
+        coupon.setRemainingCount(100);
+        coupon.setStartTime(LocalDateTime.now());
+        coupon.setEndTime(LocalDateTime.now().plusDays(30));
+        couponService.addCoupon(coupon);
+        return coupon;
+    }
+
+    private void createUsers(String prefix, int count) {
+        for (int i = 0; i < count; i++) {
+            User user = new User();
+            user.setUsername(prefix + i);
+            user.setPassword("pass");
+            user.setRole(UserRole.CUSTOMER);
+            userService.addUser(user);
+        }
+    }
+
+    private CouponDistribution awaitFinished(Long id) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            CouponDistribution job = couponDistributionService.getProgress(id);
+            if (!CouponDistributionService.STATUS_RUNNING.equals(job.getStatus())) {
+                return job;
+            }
+            Thread.sleep(50);
+        }
+        fail("优惠券发放超时");
+        return null;
+    }
+
+    private long issued(Long couponId) {
+        return userCouponService.lambdaQuery().eq(UserCoupon::getCouponId, couponId).count();
+    }
+
+    @Test
+    void testDistributesOnceToEveryUserInBatches() throws Exception {
+        createUsers("distribute_all_user", 7);
+        Coupon coupon = createCoupon("全员发放券");
+
+        CouponDistribution job = couponDistributionService.start(coupon.getId());
+        CouponDistribution finished = awaitFinished(job.getId());
+
+        long users = userService.count();
+        assertEquals(CouponDistributionService.STATUS_DONE, finished.getStatus());
+        assertNull(finished.getActiveCouponId());
+        assertEquals(users, finished.getDistributedCount());
+        assertEquals(users, issued(coupon.getId()));
+    }
+
+    @Test
+    void testResumesFromCursor() throws Exception {
+        createUsers("distribute_resume_user", 4);
+        Coupon coupon = createCoupon("断点续发券");
+        long users = userService.count();
+        long cursor = userService.lambdaQuery().orderByAsc(User::getId).last("LIMIT 2").list().get(1).getId();
+
+        // A job that crashed after its first committed batch
+        CouponDistribution crashed = new CouponDistribution();
+        crashed.setCouponId(coupon.getId());
+        crashed.setActiveCouponId(coupon.getId());
+        crashed.setStatus(CouponDistributionService.STATUS_FAILED);
+        crashed.setLastUserId(cursor);
+        crashed.setTotalUsers(users);
+        crashed.setDistributedCount(2L);
+        couponDistributionService.save(crashed);
+
+        CouponDistribution job = couponDistributionService.start(coupon.getId());
+        assertEquals(crashed.getId(), job.getId());
+        CouponDistribution finished = awaitFinished(job.getId());
+
+        assertEquals(CouponDistributionService.STATUS_DONE, finished.getStatus());
+        assertEquals(users, finished.getDistributedCount());
+        assertEquals(users - 2, issued(coupon.getId()));
+    }
+
+    @Test
+    void testLostCursorRollsBackBatchWithoutFailingJob() throws Exception {
+        createUsers("distribute_lost_user", 4);
+        Coupon coupon = createCoupon("游标丢失券");
+
+        Object target = AopTestUtils.getTargetObject(couponDistributionService);
+        Object realMapper = ReflectionTestUtils.getField(target, "userCouponMapper");
+        UserCouponMapper racing = mock(UserCouponMapper.class);
+        // Another runner takes over and commits its own cursor while this batch is in flight
+        when(racing.insertForUsers(any(), any(), anyList())).thenAnswer(inv -> {
+            Thread other = new Thread(() -> couponDistributionService.lambdaUpdate()
+                    .eq(CouponDistribution::getCouponId, coupon.getId())
+                    .set(CouponDistribution::getLastUserId, Long.MAX_VALUE)
+                    .update());
+            other.start();
+            other.join();
+            return ((List<?>) inv.getArgument(2)).size();
+        });
+        ReflectionTestUtils.setField(target, "userCouponMapper", racing);
+        CouponDistribution job;
+        try {
+            job = couponDistributionService.start(coupon.getId());
+            @SuppressWarnings("unchecked")
+            Set<Long> submitted = (Set<Long>) ReflectionTestUtils.getField(target, "submitted");
+            for (int i = 0; i < 100 && submitted.contains(job.getId()); i++) {
+                Thread.sleep(50);
+            }
+            assertFalse(submitted.contains(job.getId()));
+        } finally {
+            ReflectionTestUtils.setField(target, "userCouponMapper", realMapper);
+        }
+
+        CouponDistribution after = couponDistributionService.getProgress(job.getId());
+        assertEquals(CouponDistributionService.STATUS_RUNNING, after.getStatus());
+        assertNull(after.getError());
+        assertEquals(0L, after.getDistributedCount());
+        assertEquals(Long.MAX_VALUE, after.getLastUserId());
+    }
+}
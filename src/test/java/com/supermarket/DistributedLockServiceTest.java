@@ -0,0 +1,109 @@
+package com.supermarket;
+
+import com.supermarket.service.DistributedLockService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class DistributedLockServiceTest {
+
+    private static EmbeddedRedisSupport redis;
+    private static StringRedisTemplate strings;
+
+    @Autowired
+    private DistributedLockService distributedLockService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeAll
+    static void startRedis() {
+        redis = EmbeddedRedisSupport.start();
+        strings = new StringRedisTemplate(redis.redisTemplate().getConnectionFactory());
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        redis.stop();
+    }
+
+    @BeforeEach
+    void enableRedis() {
+        ReflectionTestUtils.setField(distributedLockService, "redisTemplate", redis.redisTemplate());
+    }
+
+    @AfterEach
+    void disableRedis() {
+        ReflectionTestUtils.setField(distributedLockService, "redisTemplate", null);
+        ReflectionTestUtils.setField(distributedLockService, "leaseMillis", 10_000L);
+        redis.flushAll();
+    }
+
+    @Test
+    void testReleaseNeverDeletesAnotherOwnersLock() {
+        DistributedLockService.Lock lock = distributedLockService.tryLock("lock:test:owner", Duration.ZERO);
+        assertNotNull(lock);
+        assertNull(distributedLockService.tryLock("lock:test:owner", Duration.ZERO));
+
+        // Lease expired and another node took the lock
+        strings.opsForValue().set("lock:test:owner", "other-node");
+        lock.close();
+        assertEquals("other-node", strings.opsForValue().get("lock:test:owner"));
+    }
+
+    @Test
+    void testContendedCallerWaitsForRelease() throws Exception {
+        DistributedLockService.Lock first = distributedLockService.tryLock("lock:test:wait", Duration.ZERO);
+        CompletableFuture<DistributedLockService.Lock> second = CompletableFuture.supplyAsync(
+                () -> distributedLockService.tryLock("lock:test:wait", Duration.ofSeconds(5)));
+
+        Thread.sleep(200);
+        assertFalse(second.isDone());
+        first.close();
+
+        DistributedLockService.Lock acquired = second.get(2, TimeUnit.SECONDS);
+        assertNotNull(acquired);
+        acquired.close();
+        assertTrue(meterRegistry.timer("lock.wait", "name", "lock:test:wait", "outcome", "acquired").count() >= 2);
+    }
+
+    @Test
+    void testMultiKeyLockIsAllOrNothing() {
+        try (DistributedLockService.Lock held = distributedLockService.tryLock("lock:test:multi:2", Duration.ZERO)) {
+            assertNull(distributedLockService.tryLockAll(List.of("lock:test:multi:1", "lock:test:multi:2"), Duration.ZERO));
+            assertNull(strings.opsForValue().get("lock:test:multi:1"));
+        }
+        try (DistributedLockService.Lock both = distributedLockService.tryLockAll(
+                List.of("lock:test:multi:1", "lock:test:multi:2"), Duration.ZERO)) {
+            assertNotNull(both);
+            assertNotNull(strings.opsForValue().get("lock:test:multi:1"));
+        }
+        assertNull(strings.opsForValue().get("lock:test:multi:2"));
+    }
+
+    @Test
+    void testWatchdogRenewsLeaseForLongHolders() throws Exception {
+        ReflectionTestUtils.setField(distributedLockService, "leaseMillis", 300L);
+        try (DistributedLockService.Lock lock = distributedLockService.tryLock("lock:test:renew", Duration.ZERO)) {
+            Thread.sleep(1000);
+            assertTrue(lock.isHeld());
+            assertNotNull(strings.opsForValue().get("lock:test:renew"));
+        }
+        assertNull(strings.opsForValue().get("lock:test:renew"));
+    }
+}
@@ -0,0 +1,69 @@
+package com.supermarket;
+
+import com.supermarket.config.RedisConfig;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+
+/**
+ * 测试用嵌入式 Redis：测试上下文默认不启用 Redis，需要验证 Redis 逻辑的测试
+ * 启动一个本地实例，并用 RedisConfig 构建同样配置的 RedisTemplate
+ */
+final class EmbeddedRedisSupport {
+
+    private final RedisServer redisServer;
+    private final LettuceConnectionFactory connectionFactory;
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private EmbeddedRedisSupport(RedisServer redisServer, LettuceConnectionFactory connectionFactory,
+                                 RedisTemplate<String, Object> redisTemplate) {
+        this.redisServer = redisServer;
+        this.connectionFactory = connectionFactory;
+        this.redisTemplate = redisTemplate;
+    }
+
+    static EmbeddedRedisSupport start() {
+        try {
+            int port;
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+            }
+            RedisServer server = new RedisServer(port);
+            server.start();
+
+            LettuceConnectionFactory factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+            factory.afterPropertiesSet();
+            RedisTemplate<String, Object> template = new RedisConfig().redisTemplate(factory);
+            template.afterPropertiesSet();
+            return new EmbeddedRedisSupport(server, factory, template);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    RedisTemplate<String, Object> redisTemplate() {
+        return redisTemplate;
+    }
+
+    void flushAll() {
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+    }
+
+    void stop() {
+        connectionFactory.destroy();
+        try {
+            redisServer.stop();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.supermarket;
+
+import com.alibaba.excel.EasyExcel;
+import com.alibaba.excel.read.listener.PageReadListener;
+import com.supermarket.entity.Product;
+import com.supermarket.service.ExcelExportService;
+import com.supermarket.service.ProductService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "excel.export.batch-size=2")
+class ExcelExportServiceTest {
+
+    @Autowired
+    private ExcelExportService excelExportService;
+
+    @Autowired
+    private ProductService productService;
+
+    private List<Product> readProducts(byte[] bytes) {
+        List<Product> rows = new ArrayList<>();
+        EasyExcel.read(new ByteArrayInputStream(bytes), Product.class, new PageReadListener<Product>(rows::addAll))
+                .sheet().doRead();
+        return rows;
+    }
+
+    @Test
+    void testExportProductsWritesEveryBatch() {
+        for (int i = 0; i < 5; i++) {
+            Product p = new Product();
+            p.setName("流式导出商品" + i);
+            p.setPrice(new BigDecimal("1.00"));
+            p.setStock(10);
+            productService.addProduct(p);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        excelExportService.exportProducts(out, null, null);
+
+        List<Product> rows = readProducts(out.toByteArray());
+        assertEquals(productService.count(), rows.size());
+        for (int i = 0; i < 5; i++) {
+            String name = "流式导出商品" + i;
+            assertTrue(rows.stream().anyMatch(r -> name.equals(r.getName())));
+        }
+    }
+
+    @Test
+    void testExportProductsFiltersByDateRange() {
+        Product p = new Product();
+        p.setName("日期筛选导出商品");
+        p.setPrice(new BigDecimal("1.00"));
+        p.setStock(10);
+        productService.addProduct(p);
+
+        ByteArrayOutputStream past = new ByteArrayOutputStream();
+        LocalDate lastYear = LocalDate.now().minusYears(1);
+        excelExportService.exportProducts(past, lastYear, lastYear);
+        assertTrue(readProducts(past.toByteArray()).isEmpty());
+
+        ByteArrayOutputStream today = new ByteArrayOutputStream();
+        excelExportService.exportProducts(today, LocalDate.now().minusDays(1), LocalDate.now().plusDays(1));
+        assertTrue(readProducts(today.toByteArray()).stream().anyMatch(r -> "日期筛选导出商品".equals(r.getName())));
+    }
+}
@@ -0,0 +1,173 @@
+package com.supermarket;
+
+import cn.hutool.crypto.digest.BCrypt;
+import com.alibaba.excel.EasyExcel;
+import com.supermarket.entity.Product;
+import com.supermarket.entity.Store;
+import com.supermarket.entity.StoreProduct;
+import com.supermarket.entity.StoreProductExcelDTO;
+import com.supermarket.entity.User;
+import com.supermarket.service.ExcelImportService;
+import com.supermarket.service.ProductService;
+import com.supermarket.service.StoreProductService;
+import com.supermarket.service.StoreService;
+import com.supermarket.service.UserService;
+import com.supermarket.vo.ImportResultVO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "excel.import.chunk-size=2")
+class ExcelImportServiceTest {
+
+    @Autowired
+    private ExcelImportService excelImportService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private StoreService storeService;
+
+    @Autowired
+    private StoreProductService storeProductService;
+
+    private <T> ByteArrayInputStream toExcel(Class<T> head, List<T> rows) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EasyExcel.write(out, head).sheet().doWrite(rows);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    private Product product(String name, String price, String barcode) {
+        Product p = new Product();
+        p.setName(name);
+        p.setPrice(price != null ? new BigDecimal(price) : null);
+        p.setStock(5);
+        p.setBarcode(barcode);
+        return p;
+    }
+
+    @Test
+    void testImportProductsReportsInvalidRows() {
+        List<Product> rows = List.of(
+                product("分块导入商品1", "1.00", "IMP-001"),
+                product("分块导入商品2", null, "IMP-002"),
+                product("分块导入商品3", "3.00", "IMP-001"),
+                product("分块导入商品4", "4.00", null),
+                product(" ", "5.00", null));
+
+        ImportResultVO result = excelImportService.importProducts(toExcel(Product.class, rows));
+
+        assertEquals(2, result.getSuccessCount());
+        assertEquals(3, result.getFailedCount());
+        assertEquals(List.of(3, 4, 6), result.getErrors().stream().map(ImportResultVO.RowError::getRow).toList());
+        assertNotNull(productService.getProductByBarcode("IMP-001"));
+        assertNotNull(productService.getProductByName("分块导入商品4"));
+        assertNull(productService.getProductByName("分块导入商品3"));
+    }
+
+    @Test
+    void testImportUsersSkipsExistingUsernames() {
+        User existing = new User();
+        existing.setUsername("import_existing_user");
+        existing.setPassword("pass");
+        userService.addUser(existing);
+
+        User fresh = new User();
+        fresh.setUsername("import_new_user");
+        User another = new User();
+        another.setUsername("import_new_user2");
+        User duplicate = new User();
+        duplicate.setUsername("import_existing_user");
+
+        ImportResultVO result = excelImportService.importUsers(toExcel(User.class, List.of(fresh, another, duplicate)));
+
+        assertEquals(2, result.getSuccessCount());
+        assertEquals(1, result.getFailedCount());
+        User saved = userService.getUserByUsername("import_new_user");
+        User saved2 = userService.getUserByUsername("import_new_user2");
+        assertNotNull(saved);
+        assertFalse(BCrypt.checkpw("123456", saved.getPassword()));
+        // Random password per user, each hashed with its own salt
+        assertNotEquals(saved.getPassword(), saved2.getPassword());
+    }
+
+    @Test
+    void testImportStoreProductsMergesAndSyncsTotalStock() {
+        Store store = new Store();
+        store.setName("分块导入店铺");
+        storeService.addStore(store);
+
+        StoreProductExcelDTO first = new StoreProductExcelDTO();
+        first.setStoreId(store.getId());
+        first.setBarcode("IMP-SP-001");
+        first.setProductName("分块导入店铺商品");
+        first.setStorePrice(new BigDecimal("9.90"));
+        first.setStoreStock(10);
+
+        StoreProductExcelDTO second = new StoreProductExcelDTO();
+        second.setStoreId(store.getId());
+        second.setBarcode("IMP-SP-001");
+        second.setStoreStock(5);
+
+        StoreProductExcelDTO third = new StoreProductExcelDTO();
+        third.setStoreId(store.getId());
+        third.setBarcode("IMP-SP-001");
+        third.setStoreStock(7);
+
+        StoreProductExcelDTO noStore = new StoreProductExcelDTO();
+        noStore.setStoreId(-1L);
+        noStore.setBarcode("IMP-SP-001");
+
+        ImportResultVO result = excelImportService.importStoreProducts(
+                toExcel(StoreProductExcelDTO.class, List.of(first, second, third, noStore)));
+
+        assertEquals(1, result.getSuccessCount());
+        assertEquals(2, result.getMergedCount());
+        assertEquals(1, result.getFailedCount());
+
+        Product product = productService.getProductByBarcode("IMP-SP-001");
+        assertNotNull(product);
+        StoreProduct sp = storeProductService.getByStoreIdAndProductId(store.getId(), product.getId());
+        assertEquals(22, sp.getStoreStock());
+        assertEquals(22, productService.getById(product.getId()).getStock());
+    }
+
+    @Test
+    void testImportStoreProductsCreatesOneProductPerBarcodeOrName() {
+        Store store = new Store();
+        store.setName("分块导入去重店铺");
+        storeService.addStore(store);
+
+        StoreProductExcelDTO withBarcode = new StoreProductExcelDTO();
+        withBarcode.setStoreId(store.getId());
+        withBarcode.setBarcode("IMP-SP-002");
+        withBarcode.setProductName("分块导入可乐");
+        withBarcode.setStorePrice(new BigDecimal("3.50"));
+        withBarcode.setStoreStock(4);
+
+        StoreProductExcelDTO nameOnly = new StoreProductExcelDTO();
+        nameOnly.setStoreId(store.getId());
+        nameOnly.setProductName("分块导入可乐");
+        nameOnly.setStorePrice(new BigDecimal("3.50"));
+        nameOnly.setStoreStock(6);
+
+        ImportResultVO result = excelImportService.importStoreProducts(
+                toExcel(StoreProductExcelDTO.class, List.of(withBarcode, nameOnly)));
+
+        assertEquals(0, result.getFailedCount());
+        assertEquals(1, productService.lambdaQuery().eq(Product::getName, "分块导入可乐").count());
+        Product product = productService.getProductByBarcode("IMP-SP-002");
+        assertEquals(10, storeProductService.getByStoreIdAndProductId(store.getId(), product.getId()).getStoreStock());
+    }
+}
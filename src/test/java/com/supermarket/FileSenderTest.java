@@ -0,0 +1,85 @@
+package com.supermarket;
+
+import com.supermarket.common.FileSender;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.CacheControl;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSenderTest {
+
+    @TempDir
+    Path dir;
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        file = dir.resolve("0123456789abcdef0123456789abcdef.jpg");
+        Files.writeString(file, "0123456789");
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FileSender.send(request, response, file, "image/jpeg", null, CacheControl.noCache());
+        return response;
+    }
+
+    @Test
+    void testFullResponseAndNotModified() throws Exception {
+        MockHttpServletResponse first = send(new MockHttpServletRequest("GET", "/api/file/x"));
+        assertEquals(200, first.getStatus());
+        assertEquals("0123456789", first.getContentAsString(StandardCharsets.UTF_8));
+        assertEquals("\"0123456789abcdef0123456789abcdef.jpg\"", first.getHeader("ETag"));
+        assertEquals("bytes", first.getHeader("Accept-Ranges"));
+
+        MockHttpServletRequest revalidate = new MockHttpServletRequest("GET", "/api/file/x");
+        revalidate.addHeader("If-None-Match", first.getHeader("ETag"));
+        MockHttpServletResponse second = send(revalidate);
+        assertEquals(304, second.getStatus());
+        assertEquals(0, second.getContentAsByteArray().length);
+    }
+
+    @Test
+    void testRangeRequests() throws Exception {
+        MockHttpServletRequest partial = new MockHttpServletRequest("GET", "/api/file/x");
+        partial.addHeader("Range", "bytes=2-5");
+        MockHttpServletResponse response = send(partial);
+        assertEquals(206, response.getStatus());
+        assertEquals("2345", response.getContentAsString(StandardCharsets.UTF_8));
+        assertEquals("bytes 2-5/10", response.getHeader("Content-Range"));
+
+        MockHttpServletRequest staleIfRange = new MockHttpServletRequest("GET", "/api/file/x");
+        staleIfRange.addHeader("Range", "bytes=2-5");
+        staleIfRange.addHeader("If-Range", "\"other.jpg\"");
+        assertEquals(200, send(staleIfRange).getStatus());
+
+        MockHttpServletRequest unsatisfiable = new MockHttpServletRequest("GET", "/api/file/x");
+        unsatisfiable.addHeader("Range", "bytes=20-");
+        MockHttpServletResponse rejected = send(unsatisfiable);
+        assertEquals(416, rejected.getStatus());
+        assertEquals("bytes */10", rejected.getHeader("Content-Range"));
+    }
+
+    @Test
+    void testSendfileHandsBodyToContainer() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/file/x");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader("Range", "bytes=-3");
+        MockHttpServletResponse response = send(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(3, response.getContentLengthLong());
+        assertEquals(7L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(10L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+}
@@ -0,0 +1,233 @@
+package com.supermarket;
+
+import com.supermarket.entity.Order;
+import com.supermarket.entity.Product;
+import com.supermarket.entity.User;
+import com.supermarket.enums.OrderStatus;
+import com.supermarket.enums.UserRole;
+import com.supermarket.mapper.StoreProductMapper;
+import com.supermarket.service.HotStockService;
+import com.supermarket.service.OrderService;
+import com.supermarket.service.ProductService;
+import com.supermarket.service.UserService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = "stock.hot.flush-interval-ms=3600000")
+class HotStockServiceTest {
+
+    private static EmbeddedRedisSupport redis;
+    private static RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private HotStockService hotStockService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private UserService userService;
+
+    @BeforeAll
+    static void startRedis() {
+        redis = EmbeddedRedisSupport.start();
+        redisTemplate = redis.redisTemplate();
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        redis.stop();
+    }
+
+    @BeforeEach
+    void enableRedis() {
+        ReflectionTestUtils.setField(hotStockService, "redisTemplate", redisTemplate);
+    }
+
+    @AfterEach
+    void disableRedis() {
+        ReflectionTestUtils.setField(hotStockService, "redisTemplate", null);
+    }
+
+    private User createTestUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("pass");
+        user.setRole(UserRole.CUSTOMER);
+        userService.addUser(user);
+        return user;
+    }
+
+    private Product createTestProduct(String name, int stock) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(new BigDecimal("9.90"));
+        product.setStock(stock);
+        productService.addProduct(product);
+        return product;
+    }
+
+    private Object hotStock(Long productId) {
+        return redisTemplate.opsForValue().get("stock:hot:0:" + productId);
+    }
+
+    @Test
+    void testReserveInRedisAndFlushToDatabase() {
+        User user = createTestUser("hot_stock_user1");
+        Product product = createTestProduct("秒杀商品1", 100);
+        assertTrue(hotStockService.enableHotSku(null, product.getId()));
+
+        orderService.addOrder(user.getId(), product.getId(), 30, null, null);
+
+        // Reserved in Redis only until the flush job writes it back
+        assertEquals(70, hotStock(product.getId()));
+        assertEquals(100, productService.getById(product.getId()).getStock());
+
+        hotStockService.flushPending();
+        assertEquals(70, productService.getById(product.getId()).getStock());
+        assertEquals(70, hotStock(product.getId()));
+    }
+
+    @Test
+    void testReserveInsufficientStock() {
+        User user = createTestUser("hot_stock_user2");
+        Product product = createTestProduct("秒杀商品2", 10);
+        hotStockService.enableHotSku(null, product.getId());
+
+        orderService.addOrder(user.getId(), product.getId(), 8, null, null);
+
+        // The database still shows 10 until write-back, so only the Redis counter can reject this
+        assertThrows(RuntimeException.class,
+                () -> orderService.addOrder(user.getId(), product.getId(), 5, null, null));
+        assertEquals(2, hotStock(product.getId()));
+    }
+
+    @Test
+    void testReleaseOnRollback() {
+        User user = createTestUser("hot_stock_user3");
+        Product hot = createTestProduct("秒杀商品3", 50);
+        Product normal = createTestProduct("普通商品3", 5);
+        hotStockService.enableHotSku(null, hot.getId());
+
+        Map<String, Object> hotItem = Map.of("productId", hot.getId(), "quantity", 20);
+        Map<String, Object> normalItem = Map.of("productId", normal.getId(), "quantity", 3);
+        Map<String, Object> normalAgain = Map.of("productId", normal.getId(), "quantity", 3);
+
+        // The hot item is reserved in Redis, then the SQL reservation of the normal item fails
+        assertThrows(RuntimeException.class, () -> orderService.addMultiItemOrder(
+                user.getId(), null, List.of(hotItem, normalItem, normalAgain), null));
+
+        assertEquals(50, hotStock(hot.getId()));
+        assertEquals(5, productService.getById(normal.getId()).getStock());
+    }
+
+    @Test
+    void testReleaseOnCancel() {
+        User user = createTestUser("hot_stock_user4");
+        Product product = createTestProduct("秒杀商品4", 40);
+        hotStockService.enableHotSku(null, product.getId());
+
+        Order order = orderService.addOrder(user.getId(), product.getId(), 15, null, null);
+        assertEquals(25, hotStock(product.getId()));
+
+        order.setStatus(OrderStatus.CANCELLED);
+        assertTrue(orderService.updateOrder(order));
+        assertEquals(40, hotStock(product.getId()));
+
+        // A second cancel must not give the stock back twice
+        orderService.updateOrder(order);
+        assertEquals(40, hotStock(product.getId()));
+
+        hotStockService.flushPending();
+        assertEquals(40, productService.getById(product.getId()).getStock());
+    }
+
+    @Test
+    void testReconcileAndDisable() {
+        User user = createTestUser("hot_stock_user5");
+        Product product = createTestProduct("秒杀商品5", 60);
+        hotStockService.enableHotSku(null, product.getId());
+        orderService.addOrder(user.getId(), product.getId(), 10, null, null);
+
+        // Restocked directly in the database while 10 units are still pending write-back
+        Product restock = productService.getById(product.getId());
+        restock.setStock(200);
+        productService.updateProduct(restock);
+        hotStockService.reconcile(null, product.getId());
+        assertEquals(190, hotStock(product.getId()));
+
+        hotStockService.disableHotSku(null, product.getId());
+        assertNull(hotStock(product.getId()));
+        assertEquals(190, productService.getById(product.getId()).getStock());
+        assertTrue(hotStockService.listHotSkus().stream()
+                .noneMatch(sku -> product.getId().equals(sku.get("productId"))));
+    }
+
+    @Test
+    void testFailedStoreWriteRollsBackProductWrite() {
+        Product product = createTestProduct("秒杀商品6", 100);
+        String sku = "999:" + product.getId();
+        redisTemplate.opsForHash().increment("stock:hot:pending", sku, 5);
+
+        Object target = AopTestUtils.getTargetObject(hotStockService);
+        Object realMapper = ReflectionTestUtils.getField(target, "storeProductMapper");
+        StoreProductMapper failing = mock(StoreProductMapper.class);
+        when(failing.adjustStoreStock(any(), any(), anyInt())).thenThrow(new RuntimeException("store write failed"));
+        ReflectionTestUtils.setField(target, "storeProductMapper", failing);
+        try {
+            hotStockService.flushPending();
+        } finally {
+            ReflectionTestUtils.setField(target, "storeProductMapper", realMapper);
+        }
+
+        // Product write rolled back with the store write; the delta is pending again, not in flight
+        assertEquals(100, productService.getById(product.getId()).getStock());
+        assertEquals(5, redisTemplate.opsForHash().get("stock:hot:pending", sku));
+        assertNull(redisTemplate.opsForHash().get("stock:hot:inflight", sku));
+
+        hotStockService.flushPending();
+        assertEquals(95, productService.getById(product.getId()).getStock());
+    }
+
+    @Test
+    void testInterruptedFlushIsReplayed() {
+        Product product = createTestProduct("秒杀商品7", 80);
+        hotStockService.enableHotSku(null, product.getId());
+        String sku = "0:" + product.getId();
+
+        // A flush drained 7 units and died before writing MySQL
+        redisTemplate.opsForValue().decrement("stock:hot:" + sku, 7);
+        redisTemplate.opsForHash().increment("stock:hot:inflight", sku, 7);
+
+        // Reconcile still counts the in-flight units as deducted
+        hotStockService.reconcile(null, product.getId());
+        assertEquals(73, hotStock(product.getId()));
+
+        hotStockService.flushPending();
+        assertEquals(73, productService.getById(product.getId()).getStock());
+        assertNull(redisTemplate.opsForHash().get("stock:hot:inflight", sku));
+        hotStockService.reconcile(null, product.getId());
+        assertEquals(73, hotStock(product.getId()));
+    }
+}
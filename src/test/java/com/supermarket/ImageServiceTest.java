@@ -0,0 +1,125 @@
+package com.supermarket;
+
+import com.supermarket.entity.ImageFile;
+import com.supermarket.service.ImageService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"file.upload-dir=target/test-upload", "file.image.thumbnail-sizes=100,50"})
+class ImageServiceTest {
+
+    @Autowired
+    private ImageService imageService;
+
+    private final Path uploadPath = Paths.get("target/test-upload");
+
+    private ByteArrayInputStream png(int width, int height) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", out);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    private Map<String, Object> awaitFinished(String id) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            Map<String, Object> status = imageService.getStatus(id);
+            if (ImageService.STATUS_DONE.equals(status.get("status"))
+                    || ImageService.STATUS_FAILED.equals(status.get("status"))) {
+                return status;
+            }
+            Thread.sleep(50);
+        }
+        fail("图片处理超时");
+        return null;
+    }
+
+    @Test
+    void testUploadProcessesInBackground() throws Exception {
+        Map<String, Object> result = imageService.upload(png(300, 150), ".png");
+        String id = (String) result.get("id");
+
+        assertEquals(64, id.length());
+        assertEquals("/file/" + id + ".jpg", result.get("path"));
+        assertTrue(result.get("thumbnail").toString().endsWith(id + "_thumb_50.jpg"));
+
+        Map<String, Object> status = awaitFinished(id);
+        assertEquals(ImageService.STATUS_DONE, status.get("status"));
+        Path shard = uploadPath.resolve(id.substring(0, 2)).resolve(id.substring(2, 4));
+        assertTrue(Files.exists(shard.resolve(id + ".jpg")));
+        assertTrue(Files.exists(shard.resolve(id + "_thumb_50.jpg")));
+        assertTrue(Files.exists(shard.resolve(id + "_thumb_100.jpg")));
+        assertEquals(shard.resolve(id + ".jpg").toAbsolutePath().normalize(), imageService.locate(id + ".jpg"));
+        assertNull(imageService.resolvePendingOriginal(id + ".jpg"));
+    }
+
+    @Test
+    void testUndecodableUploadFallsBackToOriginal() throws Exception {
+        Map<String, Object> result = imageService.upload(
+                new ByteArrayInputStream("not an image".getBytes()), ".webp");
+        String id = (String) result.get("id");
+
+        Map<String, Object> status = awaitFinished(id);
+        assertEquals(ImageService.STATUS_DONE, status.get("status"));
+        assertNotNull(status.get("error"));
+        Path shard = uploadPath.resolve(id.substring(0, 2)).resolve(id.substring(2, 4));
+        assertEquals(shard.resolve(id + "_orig.webp").toAbsolutePath().normalize(),
+                imageService.resolvePendingOriginal(id + "_thumb_50.jpg"));
+        assertNull(imageService.getStatus("unknown"));
+    }
+
+    @Test
+    void testDuplicateContentIsStoredOnce() throws Exception {
+        String first = (String) imageService.upload(png(123, 45), ".png").get("id");
+        awaitFinished(first);
+        Map<String, Object> second = imageService.upload(png(123, 45), ".png");
+
+        assertEquals(first, second.get("id"));
+        assertEquals(ImageService.STATUS_DONE, second.get("status"));
+        assertEquals(1, imageService.lambdaQuery().eq(ImageFile::getHash, first).count());
+        assertTrue(imageService.listFileNames(10).contains(first + ".jpg"));
+    }
+
+    @Test
+    void testRejectedRetryLeavesImageFailed() throws Exception {
+        String id = (String) imageService.upload(png(77, 33), ".png").get("id");
+        awaitFinished(id);
+        imageService.lambdaUpdate().eq(ImageFile::getHash, id)
+                .set(ImageFile::getStatus, ImageService.STATUS_FAILED)
+                .set(ImageFile::getError, "处理失败")
+                .update();
+
+        Object target = AopTestUtils.getTargetObject(imageService);
+        Object realExecutor = ReflectionTestUtils.getField(target, "executor");
+        ThreadPoolExecutor saturated = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        saturated.shutdown();
+        ReflectionTestUtils.setField(target, "executor", saturated);
+        try {
+            assertThrows(RejectedExecutionException.class, () -> imageService.upload(png(77, 33), ".png"));
+        } finally {
+            ReflectionTestUtils.setField(target, "executor", realExecutor);
+        }
+        Map<String, Object> status = imageService.getStatus(id);
+        assertEquals(ImageService.STATUS_FAILED, status.get("status"));
+        assertEquals("处理失败", status.get("error"));
+
+        imageService.upload(png(77, 33), ".png");
+        assertEquals(ImageService.STATUS_DONE, awaitFinished(id).get("status"));
+    }
+}
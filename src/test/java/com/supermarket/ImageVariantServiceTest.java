@@ -0,0 +1,62 @@
+package com.supermarket;
+
+import com.supermarket.service.ImageVariantService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"file.upload-dir=target/test-variants", "file.image.variant-widths=200,100",
+        "file.image.variant-cache-max-bytes=1"})
+class ImageVariantServiceTest {
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    private Path source(String name, int width) throws Exception {
+        Path dir = Paths.get("target/test-variants");
+        Files.createDirectories(dir);
+        Path path = dir.resolve(name);
+        ImageIO.write(new BufferedImage(width, width / 2, BufferedImage.TYPE_INT_RGB), "png", path.toFile());
+        return path;
+    }
+
+    @Test
+    void testWidthIsSnappedToBucketAndCached() throws Exception {
+        Path source = source("aa11variant.png", 400);
+
+        ImageVariantService.Variant variant = imageVariantService.resolve(source, 150, "image/webp,*/*");
+        assertEquals("aa11variant_w200.jpg", variant.path().getFileName().toString());
+        assertEquals("image/jpeg", variant.contentType());
+        assertEquals(200, ImageIO.read(variant.path().toFile()).getWidth());
+
+        assertEquals(variant, imageVariantService.resolve(source, 180, null));
+        assertEquals("aa11variant_w200.jpg",
+                imageVariantService.resolve(source, 5000, null).path().getFileName().toString());
+    }
+
+    @Test
+    void testNarrowSourceIsServedAsIs() throws Exception {
+        Path source = source("bb22narrow.png", 80);
+        ImageVariantService.Variant variant = imageVariantService.resolve(source, 100, null);
+        assertEquals(source, variant.path());
+        assertNull(variant.contentType());
+    }
+
+    @Test
+    void testLeastRecentlyUsedVariantIsEvicted() throws Exception {
+        Path source = source("cc33evict.png", 400);
+        Path small = imageVariantService.resolve(source, 100, null).path();
+        Path large = imageVariantService.resolve(source, 200, null).path();
+
+        assertFalse(Files.exists(small));
+        assertTrue(Files.exists(large));
+    }
+}
@@ -0,0 +1,83 @@
+package com.supermarket;
+
+import com.supermarket.entity.Product;
+import com.supermarket.listener.CacheInvalidationListener;
+import com.supermarket.service.LocalCacheService;
+import com.supermarket.service.ProductService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.DefaultMessage;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class LocalCacheServiceTest {
+
+    @Autowired
+    private LocalCacheService localCacheService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Product createTestProduct(String name) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(new BigDecimal("3.00"));
+        product.setStock(10);
+        productService.addProduct(product);
+        return product;
+    }
+
+    @Test
+    void testProductServedFromLocalCache() {
+        Product product = createTestProduct("本地缓存商品");
+
+        Product first = productService.getProductById(product.getId());
+        Product second = productService.getProductById(product.getId());
+        assertSame(first, second);
+        assertSame(first, localCacheService.get(LocalCacheService.PRODUCT, product.getId()));
+    }
+
+    @Test
+    void testUpdateEvictsLocalCache() {
+        Product product = createTestProduct("本地缓存失效商品");
+        productService.getProductById(product.getId());
+
+        product.setPrice(new BigDecimal("4.50"));
+        productService.updateProduct(product);
+
+        assertNull(localCacheService.get(LocalCacheService.PRODUCT, product.getId()));
+        assertEquals(0, new BigDecimal("4.50").compareTo(productService.getProductById(product.getId()).getPrice()));
+    }
+
+    @Test
+    void testInvalidationMessageFromOtherNode() {
+        localCacheService.put(LocalCacheService.CATEGORY, 42L, "cached");
+        localCacheService.put(LocalCacheService.CATEGORY, 43L, "cached");
+
+        // Listener bean only exists with Redis, so drive it directly with a broadcast payload
+        CacheInvalidationListener listener = new CacheInvalidationListener(localCacheService);
+        listener.onMessage(new DefaultMessage("cache:invalidate".getBytes(StandardCharsets.UTF_8),
+                "category:42".getBytes(StandardCharsets.UTF_8)), null);
+        assertNull(localCacheService.get(LocalCacheService.CATEGORY, 42L));
+        assertEquals("cached", localCacheService.get(LocalCacheService.CATEGORY, 43L));
+
+        listener.onMessage(new DefaultMessage("cache:invalidate".getBytes(StandardCharsets.UTF_8),
+                "category:*".getBytes(StandardCharsets.UTF_8)), null);
+        assertNull(localCacheService.get(LocalCacheService.CATEGORY, 43L));
+    }
+
+    @Test
+    void testMetricsRegistered() {
+        localCacheService.get(LocalCacheService.PRODUCT, -1L);
+        assertNotNull(meterRegistry.find("cache.gets").tag("cache", "local.product").meter());
+    }
+}
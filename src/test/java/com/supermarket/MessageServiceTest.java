@@ -0,0 +1,204 @@
+package com.supermarket;
+
+import com.supermarket.entity.Message;
+import com.supermarket.entity.User;
+import com.supermarket.enums.UserRole;
+import com.supermarket.service.MessageService;
+import com.supermarket.service.UserService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+@SpringBootTest
+class MessageServiceTest {
+
+    private static EmbeddedRedisSupport redis;
+    private static RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private UserService userService;
+
+    @BeforeAll
+    static void startRedis() {
+        redis = EmbeddedRedisSupport.start();
+        redisTemplate = redis.redisTemplate();
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        redis.stop();
+    }
+
+    @AfterEach
+    void disableRedis() {
+        ReflectionTestUtils.setField(messageService, "redisTemplate", null);
+        redis.flushAll();
+    }
+
+    private User createUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("pass");
+        user.setRole(UserRole.CUSTOMER);
+        userService.addUser(user);
+        return user;
+    }
+
+    private Message find(List<Message> messages, String title) {
+        return messages.stream().filter(m -> title.equals(m.getTitle())).findFirst().orElseThrow();
+    }
+
+    @Test
+    void testSharedBroadcastIsStoredOnceWithPerUserReadState() {
+        User alice = createUser("broadcast_alice");
+        User bob = createUser("broadcast_bob");
+        long before = messageService.count();
+        int aliceUnread = messageService.getUnreadCount(alice.getId());
+        int bobUnread = messageService.getUnreadCount(bob.getId());
+
+        assertTrue(messageService.broadcastMessage("共享广播", "全场九折", null));
+        assertEquals(before + 1, messageService.count());
+
+        Message broadcast = find(messageService.getMessagesByUserId(alice.getId()), "共享广播");
+        assertNull(broadcast.getUserId());
+        assertEquals(0, broadcast.getIsRead());
+        assertEquals(aliceUnread + 1, messageService.getUnreadCount(alice.getId()));
+
+        assertFalse(messageService.markAsRead(broadcast.getId(), null));
+        assertTrue(messageService.markAsRead(broadcast.getId(), alice.getId()));
+        assertTrue(messageService.markAsRead(broadcast.getId(), alice.getId()));
+
+        assertEquals(1, find(messageService.getMessagesByUserId(alice.getId()), "共享广播").getIsRead());
+        assertEquals(aliceUnread, messageService.getUnreadCount(alice.getId()));
+        assertEquals(0, find(messageService.getMessagesByUserId(bob.getId()), "共享广播").getIsRead());
+        assertEquals(bobUnread + 1, messageService.getUnreadCount(bob.getId()));
+    }
+
+    @Test
+    void testMarkAllAsReadCoversPersonalAndBroadcastMessages() {
+        User user = createUser("broadcast_read_all");
+        Message personal = new Message();
+        personal.setUserId(user.getId());
+        personal.setTitle("个人消息");
+        personal.setContent("订单已发货");
+        messageService.sendMessage(personal);
+        messageService.broadcastMessage("全部已读广播", "新品上架", "SYSTEM");
+        assertTrue(messageService.getUnreadCount(user.getId()) >= 2);
+
+        assertTrue(messageService.markAllAsRead(user.getId()));
+
+        assertEquals(0, messageService.getUnreadCount(user.getId()));
+        assertTrue(messageService.getMessagesByUserId(user.getId()).stream().allMatch(m -> m.getIsRead() == 1));
+        assertFalse(messageService.markAllAsRead(user.getId()));
+    }
+
+    @Test
+    void testUnreadCounterIsMaintainedInRedis() {
+        ReflectionTestUtils.setField(messageService, "redisTemplate", redisTemplate);
+        User user = createUser("unread_counter_user");
+        Message first = new Message();
+        first.setUserId(user.getId());
+        first.setTitle("计数消息1");
+        first.setContent("订单已支付");
+        messageService.sendMessage(first);
+        int base = messageService.getUnreadCount(user.getId());
+        assertTrue(redisTemplate.hasKey("msg:unread:" + user.getId()));
+
+        Message second = new Message();
+        second.setUserId(user.getId());
+        second.setTitle("计数消息2");
+        second.setContent("订单已发货");
+        messageService.sendMessage(second);
+        messageService.broadcastMessage("计数广播", "周末特价", null);
+        assertEquals(base + 2, messageService.getUnreadCount(user.getId()));
+
+        // Served from Redis: a change made behind the service is not seen
+        messageService.lambdaUpdate().eq(Message::getId, second.getId()).set(Message::getIsRead, 1).update();
+        assertEquals(base + 2, messageService.getUnreadCount(user.getId()));
+        messageService.lambdaUpdate().eq(Message::getId, second.getId()).set(Message::getIsRead, 0).update();
+
+        messageService.markAsRead(first.getId(), user.getId());
+        messageService.markAsRead(first.getId(), user.getId());
+        Message broadcast = find(messageService.getMessagesByUserId(user.getId()), "计数广播");
+        messageService.markAsRead(broadcast.getId(), user.getId());
+        assertEquals(base, messageService.getUnreadCount(user.getId()));
+        assertEquals(messageService.getUnreadCount(user.getId()), countFromDatabase(user.getId()));
+
+        messageService.deleteMessage(second.getId());
+        assertEquals(base - 1, messageService.getUnreadCount(user.getId()));
+
+        messageService.broadcastMessage("删除广播", "活动取消", null);
+        Message deleted = find(messageService.getMessagesByUserId(user.getId()), "删除广播");
+        assertEquals(base, messageService.getUnreadCount(user.getId()));
+        messageService.deleteMessage(deleted.getId());
+        assertEquals(base - 1, messageService.getUnreadCount(user.getId()));
+
+        messageService.markAllAsRead(user.getId());
+        assertEquals(0, messageService.getUnreadCount(user.getId()));
+        assertEquals(0, countFromDatabase(user.getId()));
+    }
+
+    @Test
+    void testBroadcastSentBeforeRegistrationCannotBeMarkedRead() {
+        ReflectionTestUtils.setField(messageService, "redisTemplate", redisTemplate);
+        messageService.broadcastMessage("注册前广播", "老用户专享", null);
+        Message old = find(messageService.listAll(), "注册前广播");
+        messageService.lambdaUpdate().eq(Message::getId, old.getId())
+                .set(Message::getCreateTime, LocalDateTime.now().minusDays(1)).update();
+        User user = createUser("late_registered_user");
+        int unread = messageService.getUnreadCount(user.getId());
+
+        assertFalse(messageService.markAsRead(old.getId(), user.getId()));
+
+        assertEquals(unread, messageService.getUnreadCount(user.getId()));
+        assertEquals(unread, countFromDatabase(user.getId()));
+    }
+
+    @Test
+    void testRedisFailureAfterDatabaseWriteFailsOpen() {
+        @SuppressWarnings("unchecked")
+        RedisTemplate<String, Object> broken = mock(RedisTemplate.class, withSettings().defaultAnswer(inv -> {
+            throw new RedisConnectionFailureException("redis down");
+        }));
+        ReflectionTestUtils.setField(messageService, "redisTemplate", broken);
+        User user = createUser("redis_down_user");
+        Message message = new Message();
+        message.setUserId(user.getId());
+        message.setTitle("故障消息");
+        message.setContent("Redis 不可用");
+
+        assertTrue(messageService.sendMessage(message));
+        assertTrue(messageService.broadcastMessage("故障广播", "Redis 不可用", null));
+        assertEquals(countFromDatabase(user.getId()), messageService.getUnreadCount(user.getId()));
+        assertTrue(messageService.markAsRead(message.getId(), user.getId()));
+        assertTrue(messageService.markAllAsRead(user.getId()));
+        assertTrue(messageService.deleteMessage(message.getId()));
+        assertEquals(0, messageService.getUnreadCount(user.getId()));
+    }
+
+    private int countFromDatabase(Long userId) {
+        Object template = ReflectionTestUtils.getField(messageService, "redisTemplate");
+        ReflectionTestUtils.setField(messageService, "redisTemplate", null);
+        try {
+            return messageService.getUnreadCount(userId);
+        } finally {
+            ReflectionTestUtils.setField(messageService, "redisTemplate", template);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.supermarket;
+
+import com.supermarket.entity.Order;
+import com.supermarket.entity.Product;
+import com.supermarket.entity.User;
+import com.supermarket.enums.OrderStatus;
+import com.supermarket.enums.UserRole;
+import com.supermarket.service.NotificationService;
+import com.supermarket.service.OrderService;
+import com.supermarket.service.ProductService;
+import com.supermarket.service.UserService;
+import com.supermarket.websocket.NotificationWebSocketHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+class NotificationServiceTest {
+
+    private static final long USER_ID = 987654L;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private NotificationWebSocketHandler webSocketHandler;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ProductService productService;
+
+    private WebSocketSession session;
+    private final List<String> received = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void connect() throws Exception {
+        session = mock(WebSocketSession.class);
+        when(session.getAttributes()).thenReturn(Map.of("userId", USER_ID));
+        when(session.getId()).thenReturn("session-" + USER_ID);
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(inv -> received.add(((TextMessage) inv.getArgument(0)).getPayload()))
+                .when(session).sendMessage(any(WebSocketMessage.class));
+        webSocketHandler.afterConnectionEstablished(session);
+    }
+
+    @AfterEach
+    void disconnect() {
+        webSocketHandler.afterConnectionClosed(session, CloseStatus.NORMAL);
+    }
+
+    private void awaitReceived(int count) throws InterruptedException {
+        for (int i = 0; i < 100 && received.size() < count; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(count, received.size());
+    }
+
+    @Test
+    void testOrderUpdatesAreSentAfterCommitAndCoalesced() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> {
+            notificationService.notifyOrderStatusChange(USER_ID, 1L, OrderStatus.PENDING);
+            notificationService.notifyOrderStatusChange(USER_ID, 1L, OrderStatus.PAID);
+            notificationService.notifyOrderStatusChange(USER_ID, 2L, OrderStatus.PENDING);
+            sleep();
+            assertTrue(received.isEmpty());
+        });
+
+        awaitReceived(2);
+        assertTrue(received.get(0).contains("\"orderId\":1") && received.get(0).contains("\"status\":\"PAID\""));
+        assertTrue(received.get(1).contains("\"orderId\":2"));
+    }
+
+    @Test
+    void testRolledBackTransactionSendsNothing() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> {
+            notificationService.notifyOrderStatusChange(USER_ID, 3L, OrderStatus.CANCELLED);
+            status.setRollbackOnly();
+        });
+        notificationService.notifyUser(USER_ID, "系统通知", "无事务时直接入队");
+
+        awaitReceived(1);
+        assertTrue(received.get(0).contains("\"type\":\"SYSTEM\""));
+    }
+
+    @Test
+    void testLosingStatusUpdateSendsNoNotification() throws Exception {
+        User user = new User();
+        user.setUsername("notify_race_user");
+        user.setPassword("pass");
+        user.setRole(UserRole.CUSTOMER);
+        userService.addUser(user);
+        Product product = new Product();
+        product.setName("通知竞争商品");
+        product.setPrice(new BigDecimal("3.00"));
+        product.setStock(10);
+        productService.addProduct(product);
+        Order order = orderService.addOrder(user.getId(), product.getId(), 1, null, null);
+
+        Object target = AopTestUtils.getTargetObject(orderService);
+        Object realService = ReflectionTestUtils.getField(target, "notificationService");
+        NotificationService recorder = mock(NotificationService.class);
+        ReflectionTestUtils.setField(target, "notificationService", recorder);
+        try {
+            CountDownLatch firstUpdated = new CountDownLatch(1);
+            CountDownLatch releaseFirst = new CountDownLatch(1);
+            // First caller marks the order PAID and keeps its transaction open
+            Thread first = new Thread(() -> transactionTemplate.executeWithoutResult(status -> {
+                assertTrue(orderService.updateOrder(paid(order.getId())));
+                firstUpdated.countDown();
+                try {
+                    releaseFirst.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            first.start();
+            assertTrue(firstUpdated.await(10, TimeUnit.SECONDS));
+
+            // Second caller read PENDING, then loses the conditional update
+            Thread second = new Thread(() -> assertFalse(orderService.updateOrder(paid(order.getId()))));
+            second.start();
+            Thread.sleep(200);
+            releaseFirst.countDown();
+            first.join();
+            second.join();
+
+            verify(recorder, times(1)).notifyOrderStatusChange(eq(user.getId()), eq(order.getId()), eq(OrderStatus.PAID));
+        } finally {
+            ReflectionTestUtils.setField(target, "notificationService", realService);
+        }
+    }
+
+    private static Order paid(Long orderId) {
+        Order update = new Order();
+        update.setId(orderId);
+        update.setStatus(OrderStatus.PAID);
+        return update;
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.supermarket;
+
+import com.supermarket.listener.WebSocketRelayListener;
+import com.supermarket.websocket.NotificationWebSocketHandler;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 两个处理器实例模拟两个节点，共用嵌入式 Redis 转发推送
+ */
+class NotificationWebSocketHandlerTest {
+
+    private static EmbeddedRedisSupport redis;
+    private static RedisTemplate<String, Object> redisTemplate;
+
+    private final List<RedisMessageListenerContainer> containers = new ArrayList<>();
+    private final List<NotificationWebSocketHandler> handlers = new ArrayList<>();
+    private NotificationWebSocketHandler nodeA;
+    private NotificationWebSocketHandler nodeB;
+
+    @BeforeAll
+    static void startRedis() {
+        redis = EmbeddedRedisSupport.start();
+        redisTemplate = redis.redisTemplate();
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        redis.stop();
+    }
+
+    @BeforeEach
+    void startNodes() {
+        nodeA = startNode();
+        nodeB = startNode();
+    }
+
+    @AfterEach
+    void stopNodes() throws Exception {
+        for (RedisMessageListenerContainer container : containers) {
+            container.destroy();
+        }
+        for (NotificationWebSocketHandler handler : handlers) {
+            handler.shutdown();
+        }
+        redis.flushAll();
+    }
+
+    private NotificationWebSocketHandler startNode() {
+        NotificationWebSocketHandler handler = new NotificationWebSocketHandler();
+        ReflectionTestUtils.setField(handler, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(handler, "sendTimeLimit", 5000);
+        ReflectionTestUtils.setField(handler, "bufferSizeLimit", 512 * 1024);
+        ReflectionTestUtils.setField(handler, "broadcastThreads", 4);
+        handler.init();
+        handlers.add(handler);
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisTemplate.getConnectionFactory());
+        container.addMessageListener(new WebSocketRelayListener(handler), List.of(
+                new ChannelTopic(NotificationWebSocketHandler.BROADCAST_CHANNEL),
+                new ChannelTopic(handler.getNodeChannel())));
+        container.afterPropertiesSet();
+        container.start();
+        containers.add(container);
+        return handler;
+    }
+
+    private WebSocketSession connect(NotificationWebSocketHandler node, long userId, List<String> received) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getAttributes()).thenReturn(Map.of("userId", userId));
+        when(session.getId()).thenReturn("session-" + userId);
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(inv -> received.add(((TextMessage) inv.getArgument(0)).getPayload()))
+                .when(session).sendMessage(any(WebSocketMessage.class));
+        node.afterConnectionEstablished(session);
+        return session;
+    }
+
+    private static void await(List<String> received, int count) throws InterruptedException {
+        for (int i = 0; i < 100 && received.size() < count; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(count, received.size());
+    }
+
+    @Test
+    void testSendToUserOnOtherNode() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        WebSocketSession session = connect(nodeB, 1L, received);
+
+        nodeA.sendToUser(1L, "{\"type\":\"SYSTEM\"}");
+        await(received, 1);
+        assertEquals("{\"type\":\"SYSTEM\"}", received.get(0));
+
+        // After disconnecting the route is gone and node A drops the message
+        nodeB.afterConnectionClosed(session, CloseStatus.NORMAL);
+        assertFalse(redisTemplate.hasKey("ws:route:1"));
+        nodeA.sendToUser(1L, "offline");
+        Thread.sleep(100);
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    void testBroadcastIsDeliveredOncePerSession() throws Exception {
+        List<String> onA = new CopyOnWriteArrayList<>();
+        List<String> onB = new CopyOnWriteArrayList<>();
+        connect(nodeA, 2L, onA);
+        connect(nodeB, 3L, onB);
+
+        nodeA.broadcast("hello");
+        await(onA, 1);
+        await(onB, 1);
+        Thread.sleep(100);
+        assertEquals(List.of("hello"), onA);
+        assertEquals(List.of("hello"), onB);
+        assertEquals(1, nodeA.getOnlineCount());
+    }
+
+    @Test
+    void testLocalBroadcastSharesOneMessageAcrossParallelChunks() throws Exception {
+        int count = 450;
+        Set<TextMessage> instances = ConcurrentHashMap.newKeySet();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        AtomicInteger delivered = new AtomicInteger();
+        for (long userId = 100; userId < 100 + count; userId++) {
+            WebSocketSession session = mock(WebSocketSession.class);
+            when(session.getId()).thenReturn("session-" + userId);
+            when(session.getAttributes()).thenReturn(Map.of("userId", userId));
+            when(session.isOpen()).thenReturn(true);
+            doAnswer(inv -> {
+                instances.add(inv.getArgument(0));
+                threads.add(Thread.currentThread().getName());
+                delivered.incrementAndGet();
+                return null;
+            }).when(session).sendMessage(any(WebSocketMessage.class));
+            nodeA.afterConnectionEstablished(session);
+        }
+
+        nodeA.broadcastLocal("sale");
+        for (int i = 0; i < 100 && delivered.get() < count; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(count, delivered.get());
+        assertEquals(1, instances.size());
+        assertTrue(threads.stream().anyMatch(name -> name.startsWith("ws-broadcast-")));
+    }
+
+    @Test
+    void testSessionOverSendTimeLimitIsClosedAndUnrouted() throws Exception {
+        ReflectionTestUtils.setField(nodeA, "sendTimeLimit", 100);
+        List<String> received = new CopyOnWriteArrayList<>();
+        WebSocketSession session = connect(nodeA, 6L, received);
+        // The client stops reading: the first write hangs
+        doAnswer(inv -> {
+            Thread.sleep(500);
+            return null;
+        }).when(session).sendMessage(any(WebSocketMessage.class));
+        Thread stuck = new Thread(() -> nodeA.sendToUser(6L, "first"));
+        stuck.start();
+        Thread.sleep(200);
+
+        nodeA.sendToUser(6L, "second");
+        stuck.join();
+
+        verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(0, nodeA.getOnlineCount());
+        assertFalse(redisTemplate.hasKey("ws:route:6"));
+    }
+}
@@ -1,19 +1,38 @@
 package com.supermarket;
 
+import com.supermarket.common.CursorPage;
+import com.supermarket.entity.Coupon;
 import com.supermarket.entity.Order;
+import com.supermarket.entity.OrderItem;
 import com.supermarket.entity.Product;
+import com.supermarket.entity.Store;
+import com.supermarket.entity.StoreProduct;
 import com.supermarket.entity.User;
+import com.supermarket.entity.UserCoupon;
+import com.supermarket.enums.CouponStatus;
 import com.supermarket.enums.OrderStatus;
 import com.supermarket.enums.UserRole;
+import com.supermarket.service.CouponService;
+import com.supermarket.service.OrderItemService;
 import com.supermarket.service.OrderService;
 import com.supermarket.service.ProductService;
+import com.supermarket.service.StoreProductService;
+import com.supermarket.service.StoreService;
+import com.supermarket.service.UserCouponService;
 import com.supermarket.service.UserService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -29,6 +48,24 @@ class OrderServiceTest {
     @Autowired
     private ProductService productService;
 
+    @Autowired
+    private OrderItemService orderItemService;
+
+    @Autowired
+    private StoreService storeService;
+
+    @Autowired
+    private StoreProductService storeProductService;
+
+    @Autowired
+    private CouponService couponService;
+
+    @Autowired
+    private UserCouponService userCouponService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     private User createTestUser(String username) {
         User user = new User();
         user.setUsername(username);
@@ -226,4 +263,149 @@ class OrderServiceTest {
         assertNull(orderService.getOrderById(ids.get(0)));
         assertNull(orderService.getOrderById(ids.get(1)));
     }
+
+    @Test
+    void testAddOrderDeductsStock() {
+        User user = createTestUser("stock_deduct_user");
+        Product product = createTestProduct("库存扣减商品", new BigDecimal("5.00"), null);
+
+        orderService.addOrder(user.getId(), product.getId(), 30, null, null);
+
+        assertEquals(70, productService.getById(product.getId()).getStock());
+    }
+
+    @Test
+    void testAddOrderInsufficientStockRollsBack() {
+        User user = createTestUser("stock_short_user");
+        Product product = createTestProduct("库存不足商品", new BigDecimal("5.00"), null);
+
+        Map<String, Object> ok = Map.of("productId", product.getId(), "quantity", 60);
+        Map<String, Object> tooMany = Map.of("productId", product.getId(), "quantity", 60);
+
+        // Each line passes the pre-check, but the second conditional UPDATE finds only 40 left
+        assertThrows(RuntimeException.class,
+                () -> orderService.addMultiItemOrder(user.getId(), null, List.of(ok, tooMany), null));
+
+        assertEquals(100, productService.getById(product.getId()).getStock());
+        assertTrue(orderService.getOrdersByUserId(user.getId()).isEmpty());
+    }
+
+    @Test
+    void testAddMultiItemOrderBatchesItemsAndStock() {
+        User user = createTestUser("multi_item_user");
+        Product listed = createTestProduct("多商品店铺商品", new BigDecimal("2.50"), null);
+        Product unlisted = createTestProduct("多商品未上架商品", new BigDecimal("10.00"), null);
+        Store store = new Store();
+        store.setName("多商品下单店铺");
+        storeService.addStore(store);
+        StoreProduct storeProduct = new StoreProduct();
+        storeProduct.setStoreId(store.getId());
+        storeProduct.setProductId(listed.getId());
+        storeProduct.setStoreStock(20);
+        storeProductService.addStoreProduct(storeProduct);
+
+        List<Map<String, Object>> items = List.of(
+                Map.of("productId", listed.getId(), "quantity", 2),
+                Map.of("productId", unlisted.getId(), "quantity", 4),
+                Map.of("productId", listed.getId(), "quantity", 3));
+        Order order = orderService.addMultiItemOrder(user.getId(), store.getId(), items, null);
+
+        assertEquals(0, new BigDecimal("52.50").compareTo(order.getTotalAmount()));
+        assertEquals(listed.getId(), order.getProductId());
+        List<OrderItem> saved = orderItemService.getOrderItemsByOrderId(order.getId());
+        assertEquals(3, saved.size());
+        assertEquals(15, storeProductService.getByStoreIdAndProductId(store.getId(), listed.getId()).getStoreStock());
+        assertEquals(15, productService.getById(listed.getId()).getStock());
+        assertEquals(96, productService.getById(unlisted.getId()).getStock());
+
+        Map<String, Object> tooMany = Map.of("productId", listed.getId(), "quantity", 16);
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> orderService.addMultiItemOrder(user.getId(), store.getId(), List.of(tooMany), null));
+        assertTrue(e.getMessage().contains("库存不足"));
+    }
+
+    @Test
+    void testListByCursorWalksAllOrdersOnce() {
+        User user = createTestUser("cursor_order_user");
+        Product product = createTestProduct("游标分页商品", new BigDecimal("1.00"), null);
+        for (int i = 0; i < 5; i++) {
+            orderService.addOrder(user.getId(), product.getId(), 1, null, null);
+        }
+
+        Set<Long> seen = new HashSet<>();
+        Order previous = null;
+        String cursor = null;
+        do {
+            CursorPage<Order> page = orderService.listByCursor(null, cursor, 2);
+            assertTrue(page.getRecords().size() <= 2);
+            for (Order order : page.getRecords()) {
+                assertTrue(seen.add(order.getId()), "同一订单不应出现在两页中");
+                if (previous != null) {
+                    int cmp = previous.getCreateTime().compareTo(order.getCreateTime());
+                    assertTrue(cmp > 0 || (cmp == 0 && previous.getId() > order.getId()));
+                }
+                previous = order;
+            }
+            cursor = page.isHasMore() ? page.getNextCursor() : null;
+        } while (cursor != null);
+
+        assertEquals(orderService.count(), seen.size());
+        orderService.getOrdersByUserId(user.getId()).forEach(o -> assertTrue(seen.contains(o.getId())));
+    }
+
+    @Test
+    void testListByCursorRejectsInvalidCursor() {
+        assertThrows(IllegalArgumentException.class, () -> orderService.listByCursor(null, "not-a-cursor", 10));
+    }
+
+    @Test
+    void testCouponCannotBeLockedByTwoConcurrentOrders() throws Exception {
+        User user = createTestUser("order_coupon_race_user");
+        Product product = createTestProduct("优惠券竞争商品", new BigDecimal("80.00"), null);
+        Coupon coupon = new Coupon();
+        coupon.setName("竞争券");
+        coupon.setDiscount(new BigDecimal("10.00"));
+        coupon.setTotalCount(10);
+        coupon.setRemainingCount(10);
+        couponService.addCoupon(coupon);
+        UserCoupon uc = new UserCoupon();
+        uc.setUserId(user.getId());
+        uc.setCouponId(coupon.getId());
+        uc.setStatus(CouponStatus.AVAILABLE);
+        userCouponService.addUserCoupon(uc);
+
+        CountDownLatch firstPlaced = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        // First order locks the coupon and keeps its transaction open
+        Thread first = new Thread(() -> transactionTemplate.executeWithoutResult(status -> {
+            assertNotNull(orderService.addOrder(user.getId(), product.getId(), 1, uc.getId(), null));
+            firstPlaced.countDown();
+            try {
+                releaseFirst.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        first.start();
+        assertTrue(firstPlaced.await(10, TimeUnit.SECONDS));
+
+        // Second order still reads AVAILABLE, waits on the row and must be rejected after the first commits
+        AtomicReference<Throwable> secondError = new AtomicReference<>();
+        Thread second = new Thread(() -> {
+            try {
+                orderService.addOrder(user.getId(), product.getId(), 1, uc.getId(), null);
+            } catch (Throwable e) {
+                secondError.set(e);
+            }
+        });
+        second.start();
+        Thread.sleep(200);
+        releaseFirst.countDown();
+        first.join();
+        second.join();
+
+        assertNotNull(secondError.get());
+        assertEquals(CouponStatus.LOCKED, userCouponService.getUserCouponById(uc.getId()).getStatus());
+        assertEquals(1, orderService.lambdaQuery().eq(Order::getUserCouponId, uc.getId()).count());
+    }
 }
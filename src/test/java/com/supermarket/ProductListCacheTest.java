@@ -0,0 +1,169 @@
+package com.supermarket;
+
+import com.supermarket.entity.Product;
+import com.supermarket.service.ProductService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ProductListCacheTest {
+
+    private static EmbeddedRedisSupport redis;
+
+    @Autowired
+    private ProductService productService;
+
+    @BeforeAll
+    static void startRedis() {
+        redis = EmbeddedRedisSupport.start();
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        redis.stop();
+    }
+
+    @BeforeEach
+    void enableRedis() {
+        ReflectionTestUtils.setField(target(), "redisTemplate", redis.redisTemplate());
+        // Redis is flushed between tests; let the first read write its marker again
+        ReflectionTestUtils.setField(ReflectionTestUtils.getField(target(), "listReadMarker"), "markedAt", 0L);
+    }
+
+    @AfterEach
+    void disableRedis() {
+        ReflectionTestUtils.setField(target(), "redisTemplate", null);
+        redis.flushAll();
+    }
+
+    // ProductServiceImpl is proxied for the inherited @Transactional batch methods
+    private Object target() {
+        return AopTestUtils.getTargetObject(productService);
+    }
+
+    private Product createTestProduct(String name, int stock) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(new BigDecimal("6.00"));
+        product.setStock(stock);
+        product.setStatus(1);
+        productService.addProduct(product);
+        return product;
+    }
+
+    private Product find(List<Product> products, Long id) {
+        return products.stream().filter(p -> p.getId().equals(id)).findFirst().orElse(null);
+    }
+
+    @Test
+    void testStockChangePatchesListCache() {
+        Product product = createTestProduct("列表缓存商品1", 50);
+        productService.listAll();
+        assertTrue(redis.redisTemplate().hasKey("cache:product:list:ready"));
+
+        assertTrue(productService.deductStock(product.getId(), 5));
+
+        // The list stays warm and carries the new stock
+        assertTrue(redis.redisTemplate().hasKey("cache:product:list:ready"));
+        assertEquals(45, find(productService.listAll(), product.getId()).getStock());
+        assertEquals(45, find(productService.getOnShelfProducts(), product.getId()).getStock());
+    }
+
+    @Test
+    void testAddUpdateDeletePatchListCache() {
+        Product first = createTestProduct("列表缓存商品2", 10);
+        int size = productService.listAll().size();
+
+        Product second = createTestProduct("列表缓存商品3", 10);
+        List<Product> all = productService.listAll();
+        assertEquals(size + 1, all.size());
+        assertNotNull(find(all, second.getId()));
+
+        second.setStatus(0);
+        productService.updateProduct(second);
+        assertNull(find(productService.getOnShelfProducts(), second.getId()));
+        assertNotNull(find(productService.listAll(), second.getId()));
+
+        productService.deleteProduct(first.getId());
+        assertNull(find(productService.listAll(), first.getId()));
+        assertEquals(size, productService.listAll().size());
+    }
+
+    @Test
+    void testRefreshAheadOnlyWhenNearExpiry() {
+        createTestProduct("列表缓存商品4", 10);
+        assertFalse(productService.refreshListCacheAhead());
+
+        productService.listAll();
+        assertFalse(productService.refreshListCacheAhead());
+
+        redis.redisTemplate().expire("cache:product:list:ready", 30, TimeUnit.SECONDS);
+        assertTrue(productService.refreshListCacheAhead());
+        assertTrue(redis.redisTemplate().getExpire("cache:product:list:ready", TimeUnit.SECONDS) > 90);
+    }
+
+    @Test
+    void testRefreshAheadSkipsListNobodyRead() {
+        createTestProduct("列表缓存商品6", 10);
+        productService.listAll();
+        redis.redisTemplate().expire("cache:product:list:ready", 30, TimeUnit.SECONDS);
+        assertTrue(productService.refreshListCacheAhead());
+
+        // No reads for a whole TTL: the marker is gone and the list is left to expire
+        redis.redisTemplate().delete("cache:product:list:read");
+        redis.redisTemplate().expire("cache:product:list:ready", 30, TimeUnit.SECONDS);
+        assertFalse(productService.refreshListCacheAhead());
+    }
+
+    @Test
+    void testReadersNeverSeeEmptyListDuringRefreshAhead() throws Exception {
+        createTestProduct("列表缓存商品5", 10);
+        createTestProduct("列表缓存商品6", 10);
+        int size = productService.listAll().size();
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger reads = new AtomicInteger();
+        List<Integer> badSizes = new CopyOnWriteArrayList<>();
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                int all = productService.listAll().size();
+                int onShelf = productService.getOnShelfProducts().size();
+                if (all != size || onShelf == 0) badSizes.add(all);
+                reads.incrementAndGet();
+            }
+        });
+        reader.start();
+        try {
+            for (int i = 0; i < 30; i++) {
+                redis.redisTemplate().expire("cache:product:list:ready", 30, TimeUnit.SECONDS);
+                assertTrue(productService.refreshListCacheAhead());
+            }
+        } finally {
+            running.set(false);
+            reader.join();
+        }
+
+        assertTrue(reads.get() > 0);
+        assertEquals(List.of(), badSizes);
+        assertEquals(Set.of("cache:product:list:data", "cache:product:list:index",
+                "cache:product:list:onShelf", "cache:product:list:ready", "cache:product:list:read"),
+                redis.redisTemplate().keys("cache:product:list:*"));
+    }
+}
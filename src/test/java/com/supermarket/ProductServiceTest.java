@@ -6,9 +6,13 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -18,6 +22,9 @@ class ProductServiceTest {
     @Autowired
     private ProductService productService;
 
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     @Test
     void testAddAndGetProduct() {
         Product product = new Product();
@@ -147,4 +154,50 @@ class ProductServiceTest {
         assertEquals(2, page.getSize());
         assertTrue(page.getTotal() >= 3);
     }
+
+    @Test
+    void testGetProductMapByIds() {
+        Product p1 = new Product();
+        p1.setName("批量查询商品1");
+        p1.setPrice(new BigDecimal("1.00"));
+        p1.setStock(10);
+        productService.addProduct(p1);
+
+        Product p2 = new Product();
+        p2.setName("批量查询商品2");
+        p2.setPrice(new BigDecimal("2.00"));
+        p2.setStock(20);
+        productService.addProduct(p2);
+
+        Map<Long, Product> map = productService.getProductMapByIds(Arrays.asList(p1.getId(), p2.getId(), p1.getId(), -1L));
+        assertEquals(2, map.size());
+        assertEquals("批量查询商品2", map.get(p2.getId()).getName());
+        assertTrue(productService.getProductMapByIds(List.of()).isEmpty());
+    }
+
+    @Test
+    void testDetailCacheEvictedAfterStockCommit() throws Exception {
+        Product product = new Product();
+        product.setName("提交后失效商品");
+        product.setPrice(new BigDecimal("6.00"));
+        product.setStock(50);
+        productService.addProduct(product);
+        Long id = product.getId();
+
+        AtomicInteger seenDuringTransaction = new AtomicInteger();
+        transactionTemplate.executeWithoutResult(status -> {
+            assertTrue(productService.deductStock(id, 5));
+            // A concurrent reader sees the committed row and caches it
+            Thread reader = new Thread(() -> seenDuringTransaction.set(productService.getProductById(id).getStock()));
+            reader.start();
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        assertEquals(50, seenDuringTransaction.get());
+        assertEquals(45, productService.getProductById(id).getStock());
+    }
 }
@@ -0,0 +1,134 @@
+package com.supermarket;
+
+import com.supermarket.annotation.RateLimit;
+import com.supermarket.service.RateLimitService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class RateLimitServiceTest {
+
+    private static EmbeddedRedisSupport redis;
+
+    @Autowired
+    private RateLimitService rateLimitService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeAll
+    static void startRedis() {
+        redis = EmbeddedRedisSupport.start();
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        redis.stop();
+    }
+
+    @BeforeEach
+    void enableRedis() {
+        ReflectionTestUtils.setField(rateLimitService, "redisTemplate", redis.redisTemplate());
+        // Exercise the Redis scripts directly; the local tier has its own tests
+        ReflectionTestUtils.setField(rateLimitService, "localEnabled", false);
+    }
+
+    @AfterEach
+    void disableRedis() {
+        ReflectionTestUtils.setField(rateLimitService, "redisTemplate", null);
+        ReflectionTestUtils.setField(rateLimitService, "localEnabled", true);
+        redis.flushAll();
+    }
+
+    @RateLimit(maxRequests = 3, windowSeconds = 60)
+    private void slidingWindow() {
+    }
+
+    @RateLimit(maxRequests = 1, windowSeconds = 60, burst = 2, algorithm = RateLimit.Algorithm.TOKEN_BUCKET)
+    private void tokenBucket() {
+    }
+
+    private RateLimit rule(String method) throws NoSuchMethodException {
+        return getClass().getDeclaredMethod(method).getAnnotation(RateLimit.class);
+    }
+
+    @Test
+    void testSlidingWindowRejectsOverLimit() throws Exception {
+        RateLimit rule = rule("slidingWindow");
+        for (int i = 2; i >= 0; i--) {
+            RateLimitService.Decision decision = rateLimitService.tryAcquire("test:sw", "ip:1", rule);
+            assertTrue(decision.allowed());
+            assertEquals(i, decision.remaining());
+        }
+        RateLimitService.Decision rejected = rateLimitService.tryAcquire("test:sw", "ip:1", rule);
+        assertFalse(rejected.allowed());
+        assertTrue(rejected.retryAfterMillis() > 0 && rejected.retryAfterMillis() <= 60_000);
+
+        // Other clients have their own window
+        assertTrue(rateLimitService.tryAcquire("test:sw", "ip:2", rule).allowed());
+        assertTrue(redis.redisTemplate().getExpire("rate_limit:sw:test:sw:ip:1") > 0);
+        assertEquals(1.0, meterRegistry.counter("rate_limit.decisions", "name", "test:sw", "outcome", "rejected").count());
+    }
+
+    @Test
+    void testTokenBucketAllowsBurstThenRefillRate() throws Exception {
+        RateLimit rule = rule("tokenBucket");
+        assertTrue(rateLimitService.tryAcquire("test:tb", "user:1", rule).allowed());
+        assertTrue(rateLimitService.tryAcquire("test:tb", "user:1", rule).allowed());
+
+        RateLimitService.Decision rejected = rateLimitService.tryAcquire("test:tb", "user:1", rule);
+        assertFalse(rejected.allowed());
+        // One token per 60 seconds
+        assertTrue(rejected.retryAfterMillis() > 50_000 && rejected.retryAfterMillis() <= 60_000);
+        assertTrue(redis.redisTemplate().getExpire("rate_limit:tb:test:tb:user:1") > 0);
+    }
+
+    @Test
+    void testLocalTierRejectsWithoutCallingRedis() throws Exception {
+        ReflectionTestUtils.setField(rateLimitService, "localEnabled", true);
+        RateLimit rule = rule("slidingWindow");
+        for (int i = 0; i < 3; i++) {
+            assertTrue(rateLimitService.tryAcquire("test:local", "ip:1", rule).allowed());
+        }
+        for (int i = 0; i < 5; i++) {
+            assertFalse(rateLimitService.tryAcquire("test:local", "ip:1", rule).allowed());
+        }
+        assertEquals(3L, redis.redisTemplate().opsForZSet().zCard("rate_limit:sw:test:local:ip:1"));
+        assertEquals(5.0, meterRegistry.counter("rate_limit.decisions", "name", "test:local", "outcome", "rejected_local").count());
+    }
+
+    @Test
+    void testRedisRejectionIsSyncedToLocalTier() throws Exception {
+        RateLimit rule = rule("tokenBucket");
+        // Budget spent through another node
+        rateLimitService.tryAcquire("test:sync", "user:1", rule);
+        rateLimitService.tryAcquire("test:sync", "user:1", rule);
+
+        ReflectionTestUtils.setField(rateLimitService, "localEnabled", true);
+        assertFalse(rateLimitService.tryAcquire("test:sync", "user:1", rule).allowed());
+        redis.flushAll();
+
+        RateLimitService.Decision decision = rateLimitService.tryAcquire("test:sync", "user:1", rule);
+        assertFalse(decision.allowed());
+        assertTrue(decision.retryAfterMillis() > 50_000);
+        assertEquals(1.0, meterRegistry.counter("rate_limit.decisions", "name", "test:sync", "outcome", "rejected_local").count());
+    }
+
+    @Test
+    void testWithoutRedisAllRequestsPass() throws Exception {
+        ReflectionTestUtils.setField(rateLimitService, "redisTemplate", null);
+        RateLimit rule = rule("slidingWindow");
+        for (int i = 0; i < 5; i++) {
+            assertTrue(rateLimitService.tryAcquire("test:none", "ip:1", rule).allowed());
+        }
+    }
+}
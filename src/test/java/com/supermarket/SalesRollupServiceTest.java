@@ -0,0 +1,166 @@
+package com.supermarket;
+
+import com.supermarket.entity.Order;
+import com.supermarket.entity.Product;
+import com.supermarket.entity.SalesDailyRollup;
+import com.supermarket.entity.User;
+import com.supermarket.enums.OrderStatus;
+import com.supermarket.enums.UserRole;
+import com.supermarket.service.DistributedLockService;
+import com.supermarket.service.OrderService;
+import com.supermarket.service.ProductService;
+import com.supermarket.service.SalesRollupService;
+import com.supermarket.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class SalesRollupServiceTest {
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private DistributedLockService distributedLockService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Order createPendingOrder(String username, BigDecimal price) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("pass");
+        user.setRole(UserRole.CUSTOMER);
+        userService.addUser(user);
+
+        Product product = new Product();
+        product.setName(username + "_商品");
+        product.setPrice(price);
+        product.setStock(100);
+        productService.addProduct(product);
+
+        return orderService.addOrder(user.getId(), product.getId(), 1, null, null);
+    }
+
+    private void setStatus(Order order, OrderStatus status) {
+        Order update = new Order();
+        update.setId(order.getId());
+        update.setStatus(status);
+        assertTrue(orderService.updateOrder(update));
+    }
+
+    @Test
+    void testPaidCompletedCancelledTransitions() {
+        Order order = createPendingOrder("rollup_user1", new BigDecimal("12.50"));
+        SalesDailyRollup before = salesRollupService.getGrandTotal(null);
+
+        setStatus(order, OrderStatus.PAID);
+        SalesDailyRollup afterPaid = salesRollupService.getGrandTotal(null);
+        assertEquals(before.getOrderCount() + 1, afterPaid.getOrderCount());
+        assertEquals(0, before.getTotalAmount().add(new BigDecimal("12.50")).compareTo(afterPaid.getTotalAmount()));
+
+        // PAID -> COMPLETED stays counted once
+        setStatus(order, OrderStatus.COMPLETED);
+        assertEquals(afterPaid.getOrderCount(), salesRollupService.getGrandTotal(null).getOrderCount());
+
+        setStatus(order, OrderStatus.CANCELLED);
+        SalesDailyRollup afterCancel = salesRollupService.getGrandTotal(null);
+        assertEquals(before.getOrderCount(), afterCancel.getOrderCount());
+        assertEquals(0, before.getTotalAmount().compareTo(afterCancel.getTotalAmount()));
+    }
+
+    @Test
+    void testDeletePaidOrderIsSubtracted() {
+        Order order = createPendingOrder("rollup_user2", new BigDecimal("8.00"));
+        setStatus(order, OrderStatus.PAID);
+        SalesDailyRollup before = salesRollupService.getGrandTotal(null);
+
+        assertTrue(orderService.deleteOrder(order.getId()));
+        assertEquals(before.getOrderCount() - 1, salesRollupService.getGrandTotal(null).getOrderCount());
+    }
+
+    @Test
+    void testRebuildMatchesIncremental() {
+        Order order = createPendingOrder("rollup_user3", new BigDecimal("20.00"));
+        setStatus(order, OrderStatus.PAID);
+
+        SalesDailyRollup incremental = salesRollupService.getGrandTotal(null);
+        assertTrue(salesRollupService.rebuild() > 0);
+        SalesDailyRollup rebuilt = salesRollupService.getGrandTotal(null);
+
+        assertEquals(incremental.getOrderCount(), rebuilt.getOrderCount());
+        assertEquals(0, incremental.getTotalAmount().compareTo(rebuilt.getTotalAmount()));
+
+        List<SalesDailyRollup> today = salesRollupService.getDailyTotals(null, LocalDate.now(), LocalDate.now());
+        assertEquals(1, today.size());
+        assertEquals(LocalDate.now(), today.get(0).getSaleDate());
+    }
+
+    @Test
+    void testConcurrentPaidTransitionCountsOnce() throws Exception {
+        Order order = createPendingOrder("rollup_user4", new BigDecimal("5.00"));
+        SalesDailyRollup before = salesRollupService.getGrandTotal(null);
+        CountDownLatch firstUpdated = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        AtomicBoolean secondResult = new AtomicBoolean(true);
+
+        // First caller marks the order PAID and keeps its transaction open
+        Thread first = new Thread(() -> transactionTemplate.executeWithoutResult(status -> {
+            setStatus(order, OrderStatus.PAID);
+            firstUpdated.countDown();
+            try {
+                releaseFirst.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        first.start();
+        assertTrue(firstUpdated.await(10, TimeUnit.SECONDS));
+
+        // Second caller still reads PENDING and blocks on the row until the first commits
+        Thread second = new Thread(() -> {
+            Order update = new Order();
+            update.setId(order.getId());
+            update.setStatus(OrderStatus.PAID);
+            secondResult.set(orderService.updateOrder(update));
+        });
+        second.start();
+        Thread.sleep(200);
+        releaseFirst.countDown();
+        first.join();
+        second.join();
+
+        assertFalse(secondResult.get());
+        assertEquals(before.getOrderCount() + 1, salesRollupService.getGrandTotal(null).getOrderCount());
+    }
+
+    @Test
+    void testRebuildRejectedWhileAnotherRebuildRuns() {
+        try (DistributedLockService.Lock lock = distributedLockService.tryLock("lock:sales-rollup:rebuild", Duration.ZERO)) {
+            assertNotNull(lock);
+            assertThrows(RuntimeException.class, () -> salesRollupService.rebuild());
+        }
+        assertTrue(salesRollupService.rebuild() >= 0);
+    }
+}
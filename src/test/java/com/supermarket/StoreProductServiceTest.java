@@ -0,0 +1,88 @@
+package com.supermarket;
+
+import com.supermarket.entity.Product;
+import com.supermarket.entity.Store;
+import com.supermarket.entity.StoreProduct;
+import com.supermarket.service.ProductService;
+import com.supermarket.service.StoreProductService;
+import com.supermarket.service.StoreService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class StoreProductServiceTest {
+
+    @Autowired
+    private StoreProductService storeProductService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private StoreService storeService;
+
+    private Product createProduct(String name, int stock) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(new BigDecimal("3.00"));
+        product.setStock(stock);
+        productService.addProduct(product);
+        return product;
+    }
+
+    private StoreProduct stock(String storeName, Long productId, int storeStock) {
+        Store store = new Store();
+        store.setName(storeName);
+        storeService.addStore(store);
+        StoreProduct sp = new StoreProduct();
+        sp.setStoreId(store.getId());
+        sp.setProductId(productId);
+        sp.setStoreStock(storeStock);
+        storeProductService.addStoreProduct(sp);
+        return sp;
+    }
+
+    private int totalStock(Long productId) {
+        return productService.getById(productId).getStock();
+    }
+
+    @Test
+    void testStoreStockChangesApplyDeltaToTotalStock() {
+        Product product = createProduct("增量总库存商品", 100);
+
+        // First store row replaces the store-less stock with the store sum
+        StoreProduct first = stock("增量总库存店铺A", product.getId(), 20);
+        assertEquals(20, totalStock(product.getId()));
+
+        StoreProduct second = stock("增量总库存店铺B", product.getId(), 5);
+        assertEquals(25, totalStock(product.getId()));
+
+        StoreProduct update = new StoreProduct();
+        update.setId(first.getId());
+        update.setStoreStock(30);
+        assertTrue(storeProductService.updateStoreProduct(update));
+        assertEquals(35, totalStock(product.getId()));
+
+        assertTrue(storeProductService.deleteStoreProduct(second.getId()));
+        assertEquals(30, totalStock(product.getId()));
+    }
+
+    @Test
+    void testReconcileRepairsDrift() {
+        Product product = createProduct("对账总库存商品", 0);
+        stock("对账总库存店铺A", product.getId(), 8);
+        stock("对账总库存店铺B", product.getId(), 4);
+        Product standalone = createProduct("对账无店铺商品", 50);
+
+        productService.lambdaUpdate().eq(Product::getId, product.getId()).set(Product::getStock, 99).update();
+
+        assertTrue(storeProductService.reconcileTotalStock() >= 1);
+        assertEquals(12, totalStock(product.getId()));
+        assertEquals(50, totalStock(standalone.getId()));
+    }
+}
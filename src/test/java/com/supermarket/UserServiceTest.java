@@ -180,4 +180,23 @@ class UserServiceTest {
         assertTrue(page.getTotal() >= 3);
         assertTrue(page.getRecords().size() <= 2);
     }
+
+    @Test
+    void testAddUsersBatchSaltsEachUser() {
+        User first = new User();
+        first.setUsername("batch_salt_user1");
+        first.setPassword("same_pass");
+        first.setRole(UserRole.CUSTOMER);
+        User second = new User();
+        second.setUsername("batch_salt_user2");
+        second.setPassword("same_pass");
+        second.setRole(UserRole.CUSTOMER);
+
+        assertTrue(userService.addUsersBatch(List.of(first, second)));
+
+        assertNotEquals(userService.getUserByUsername("batch_salt_user1").getPassword(),
+                userService.getUserByUsername("batch_salt_user2").getPassword());
+        assertNotNull(userService.login("batch_salt_user1", "same_pass"));
+        assertNotNull(userService.login("batch_salt_user2", "same_pass"));
+    }
 }
@@ -174,4 +174,69 @@ CREATE TABLE IF NOT EXISTS `payment` (
     CONSTRAINT `fk_payment_order` FOREIGN KEY (`order_id`) REFERENCES `order` (`id`),
     CONSTRAINT `uk_transaction_no` UNIQUE (`transaction_no`),
     CONSTRAINT `chk_payment_amount` CHECK (`amount` > 0)
-);
\ No newline at end of file
+);
+CREATE TABLE IF NOT EXISTS `message` (
+    `id`          BIGINT       NOT NULL AUTO_INCREMENT,
+    `user_id`     BIGINT       DEFAULT NULL,
+    `title`       VARCHAR(200) NOT NULL,
+    `content`     TEXT         NOT NULL,
+    `type`        VARCHAR(20)  DEFAULT 'SYSTEM',
+    `is_read`     INT          DEFAULT 0,
+    `create_time` TIMESTAMP    DEFAULT CURRENT_TIMESTAMP,
+    `deleted`     INT          DEFAULT 0,
+    PRIMARY KEY (`id`)
+);
+CREATE TABLE IF NOT EXISTS `message_read` (
+    `id`          BIGINT    NOT NULL AUTO_INCREMENT,
+    `message_id`  BIGINT    NOT NULL,
+    `user_id`     BIGINT    NOT NULL,
+    `create_time` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (`id`),
+    CONSTRAINT `uk_message_read_user` UNIQUE (`user_id`, `message_id`)
+);
+CREATE TABLE IF NOT EXISTS `sales_daily_rollup` (
+    `id`           BIGINT         NOT NULL AUTO_INCREMENT,
+    `store_id`     BIGINT         NOT NULL DEFAULT 0,
+    `sale_date`    DATE           NOT NULL,
+    `order_count`  INT            NOT NULL DEFAULT 0,
+    `total_amount` DECIMAL(14,2)  NOT NULL DEFAULT 0,
+    `update_time`  TIMESTAMP      DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (`id`),
+    CONSTRAINT `uk_rollup_store_date` UNIQUE (`store_id`, `sale_date`)
+);
+
+CREATE TABLE IF NOT EXISTS `image_file` (
+    `id`          BIGINT       NOT NULL AUTO_INCREMENT,
+    `hash`        CHAR(64)     NOT NULL,
+    `extension`   VARCHAR(10)  NOT NULL,
+    `size`        BIGINT       NOT NULL DEFAULT 0,
+    `status`      VARCHAR(20)  NOT NULL DEFAULT 'PENDING',
+    `error`       VARCHAR(255) DEFAULT NULL,
+    `create_time` TIMESTAMP    DEFAULT CURRENT_TIMESTAMP,
+    `update_time` TIMESTAMP    DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (`id`),
+    CONSTRAINT `uk_image_hash` UNIQUE (`hash`)
+);
+
+CREATE TABLE IF NOT EXISTS `coupon_distribution` (
+    `id`                BIGINT       NOT NULL AUTO_INCREMENT,
+    `coupon_id`         BIGINT       NOT NULL,
+    `active_coupon_id`  BIGINT       DEFAULT NULL,
+    `status`            VARCHAR(20)  NOT NULL DEFAULT 'RUNNING',
+    `last_user_id`      BIGINT       NOT NULL DEFAULT 0,
+    `total_users`       BIGINT       NOT NULL DEFAULT 0,
+    `distributed_count` BIGINT       NOT NULL DEFAULT 0,
+    `error`             VARCHAR(255) DEFAULT NULL,
+    `create_time`       TIMESTAMP    DEFAULT CURRENT_TIMESTAMP,
+    `update_time`       TIMESTAMP    DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (`id`),
+    CONSTRAINT `uk_distribution_active_coupon` UNIQUE (`active_coupon_id`),
+    CONSTRAINT `fk_distribution_coupon` FOREIGN KEY (`coupon_id`) REFERENCES `coupon` (`id`)
+);
+
+CREATE INDEX IF NOT EXISTS `idx_order_store_time` ON `order` (`store_id`, `create_time`, `id`);
+CREATE INDEX IF NOT EXISTS `idx_order_create_time` ON `order` (`create_time`, `id`);
+CREATE INDEX IF NOT EXISTS `idx_msg_user_id` ON `message` (`user_id`);
+CREATE INDEX IF NOT EXISTS `idx_sp_store_time` ON `store_product` (`store_id`, `create_time`, `id`);
+CREATE INDEX IF NOT EXISTS `idx_sp_create_time` ON `store_product` (`create_time`, `id`);
+CREATE INDEX IF NOT EXISTS `idx_payment_create_time` ON `payment` (`create_time`, `id`);
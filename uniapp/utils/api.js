@@ -196,8 +196,8 @@ export function getUnreadCount(userId) {
   return request({ url: '/messages/unread/' + userId, method: 'GET' })
 }
 
-export function markMessageAsRead(id) {
-  return request({ url: '/messages/read/' + id, method: 'PUT' })
+export function markMessageAsRead(id, userId) {
+  return request({ url: '/messages/read/' + id + (userId ? '?userId=' + userId : ''), method: 'PUT' })
 }
 
 export function markAllMessagesAsRead(userId) {